@@ -0,0 +1,8 @@
+#!/bin/bash
+# Runs the master and 20 workers on loopback ports of this machine, see mc.server.LocalCluster
+# System properties are passed on, e.g. ./local_cluster.sh -Dmc.iterations=300 -Dmc.resultsDir=/tmp/local_cluster
+cd "$(dirname "$0")/../.."
+(cd worker_setup && mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt) || exit 1
+(cd master_setup && mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt) || exit 1
+java -Dmc.workerClasspath="$PWD/worker_setup/target/classes:$(cat worker_setup/target/classpath.txt)" "$@" \
+    -cp "master_setup/target/classes:$(cat master_setup/target/classpath.txt)" mc.server.LocalCluster
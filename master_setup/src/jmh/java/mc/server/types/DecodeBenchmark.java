@@ -0,0 +1,87 @@
+package mc.server.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the decoding step on the master, at the production shapes. <P> One group is decoded by multiplying
+ * its 10 x 10 decoding matrix with the 10 x elastic_size sub-rows received from its workers, and the decoding matrix
+ * is the inverse of a 10 x 10 generator submatrix.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private static final int RecThreshold = 10;
+    private static final int CodedSamplePerWorker = 10500;
+
+    @Param({"20", "10"})
+    public int numWorkers;
+
+    private TypeMatrixDouble generatorSubmatrix;
+    private TypeMatrixDouble decodingMatrix;
+    private TypeMatrixDouble rearranged;
+    private TypeVectorDouble decodingRow;
+    private TypeDenseMatrixDouble received;
+    private DecodingEngine engine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int elastic_size = CodedSamplePerWorker / numWorkers;
+
+        generatorSubmatrix = new TypeMatrixDouble(RecThreshold, RecThreshold, -1, 1);
+        decodingMatrix = generatorSubmatrix.matInv();
+        rearranged = new TypeMatrixDouble(RecThreshold, elastic_size, 0, 1000);
+        decodingRow = new TypeVectorDouble(RecThreshold, -1, 1);
+
+        received = new TypeDenseMatrixDouble(numWorkers, RecThreshold * elastic_size,
+                new TypeVectorDouble(numWorkers * RecThreshold * elastic_size, 0, 1000).GetVect());
+        engine = new DecodingEngine(numWorkers, RecThreshold, elastic_size);
+    }
+
+    @Benchmark
+    public TypeMatrixDouble matInv() {
+        return generatorSubmatrix.matInv();
+    }
+
+    @Benchmark
+    public TypeMatrixDouble matMatMultGiveMat() {
+        return decodingMatrix.matMatMultGiveMat(rearranged);
+    }
+
+    @Benchmark
+    public double[][] matMatMult() {
+        return decodingMatrix.matMatMult(rearranged);
+    }
+
+    @Benchmark
+    public double[] vectMatMult() {
+        return decodingRow.vectMatMult(rearranged);
+    }
+
+    @Benchmark
+    public TypeDenseMatrixDouble decodeGroup() {
+        engine.decodeGroup(0, decodingMatrix, received);
+        return engine.getDecoded();
+    }
+}
@@ -0,0 +1,46 @@
+package mc.server.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of TypeMatrixDouble#matVectMult on the master copy of the types, at the shape of a full coded shard of
+ * 10,500 x 10,000. The worker kernels on the same shape are benchmarked by ShardKernelBenchmark in worker_setup.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class ShardMultBenchmark {
+
+    private TypeMatrixDouble mat;
+    private TypeVectorDouble vectIn;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mat = new TypeMatrixDouble(10500, 10000, 0, 1);
+        vectIn = new TypeVectorDouble(10000, 0, 100);
+    }
+
+    @Benchmark
+    public double[] matVectMult() {
+        return mat.matVectMult(vectIn);
+    }
+}
@@ -0,0 +1,103 @@
+package mc.server.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the vector and matrix codecs used on the master side of a round. <P> The master serializes the
+ * 10,001-element input vector with its control information, parses the 5,250 products a worker sends back when 20
+ * workers are running, and serializes the 20 x 10 generator matrix once per run.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VectorCodecBenchmark {
+
+    private static final int SendSize = 10000;
+    private static final int ReceiveSize = 5250;
+
+    private TypeVectorDouble vect;
+    private TypeVectorDouble finVect;
+    private String finVectText;
+    private byte[] finVectBinary;
+    private TypeMatrixDouble generator;
+    private String generatorText;
+    private byte[] generatorBinary;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        vect = new TypeVectorDouble(SendSize + 1, 0, 100);
+        vect.SetValue(20, SendSize);
+
+        TypeVectorDouble prodVect = new TypeVectorDouble(ReceiveSize, 0, 1000);
+        finVect = new TypeVectorDouble(ReceiveSize);
+        finVectText = prodVect.serialize(",");
+        finVectBinary = prodVect.serializeBinary();
+
+        generator = new TypeMatrixDouble(20, 10, -1, 1);
+        generatorText = generator.serialize("\n", ",");
+        generatorBinary = generator.serializeBinary();
+    }
+
+    @Benchmark
+    public String serialize() {
+        return vect.serialize(",");
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return vect.serializeBinary();
+    }
+
+    @Benchmark
+    public TypeVectorDouble deserialize() {
+        finVect.deserialize(finVectText, ",");
+        return finVect;
+    }
+
+    @Benchmark
+    public TypeVectorDouble deserializeBinary() {
+        finVect.deserializeBinary(finVectBinary);
+        return finVect;
+    }
+
+    @Benchmark
+    public String serializeMatrix() {
+        return generator.serialize("\n", ",");
+    }
+
+    @Benchmark
+    public TypeMatrixDouble deserializeMatrix() {
+        generator.deserialize(generatorText, "\n", ",");
+        return generator;
+    }
+
+    @Benchmark
+    public byte[] serializeMatrixBinary() {
+        return generator.serializeBinary();
+    }
+
+    @Benchmark
+    public TypeMatrixDouble deserializeMatrixBinary() {
+        generator.deserializeBinary(generatorBinary);
+        return generator;
+    }
+}
@@ -0,0 +1,209 @@
+package mc.server;
+
+import mc.server.comm.CommAPI;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Runs the master and the workers on loopback ports of one machine instead of EC2, for end-to-end benchmarking. <P>
+ * Every worker runs in its own JVM, because the worker keeps its id and its shard in static fields and its classes
+ * have the same names as the classes of the master. The master runs in this JVM. The harness writes the DNS lists of
+ * the local cluster, starts the nodes, sends the startMaster request to the master like in the EC2 deployment and
+ * waits until all iterations are done. The average time per iteration of every configuration in NumWorkersSet is then
+ * in config_latency.txt of the results directory.
+ * <P> The worker classpath is given by the system property mc.workerClasspath, see scripts/local_cluster.sh. Every
+ * other mc.* system property is passed on to the workers as well. The sizes are scaled down by default, so that all
+ * shards fit into the memory of one machine. With -Dmc.elasticity=membership the master follows the workers that are
+ * registered through their heartbeats, so stopping or restarting a worker process changes the ring. Every worker
+ * checkpoints its datasets into its own directory checkpoint/worker_<i> of the results directory, so that a restarted
+ * worker process rejoins without being initialized again, -Dmc.checkpointDir= turns the checkpoints off. With
+ * -Dmc.localJobs=n the harness instead submits n jobs at once through the job API of the master and polls their status
+ * until all of them have ended, the jobs then share the workers round by round.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class LocalCluster {
+
+    // The master sends the first iteration to NumWorkers_initial workers
+    private static final int NumWorkers = 20;
+    private static final String Host = "127.0.0.1";
+    private static final long StartupTimeout = 180000;
+    private static final long PollInterval = 1000;
+
+    public static void main(String[] args) throws Exception {
+
+        String workerClasspath = System.getProperty("mc.workerClasspath");
+        if (workerClasspath == null) {
+            throw new IllegalArgumentException("The system property mc.workerClasspath is not set!");
+        }
+        int basePort = Integer.getInteger("mc.basePort", 18080);
+        Path resultsDir = Paths.get(System.getProperty("mc.resultsDir", "local_cluster")).toAbsolutePath();
+
+        // CodedSamplePerWorker = 1800 rows of 1000 columns per worker, divisible by every value in NumWorkersSet
+        setDefault("mc.overallSize", "18000");
+        setDefault("mc.vectorSize", "1000");
+        // Change the number of machines often enough to time every configuration
+        setDefault("mc.changeProbability", "0.05");
+        setDefault("mc.kernelThreads", "1");
+
+        Files.createDirectories(resultsDir.resolve("data"));
+        Path workerList = resultsDir.resolve("ec2_worker_dns_list");
+        Path masterList = resultsDir.resolve("ec2_master_dns_list");
+        List<String> workerDns = new ArrayList<>(NumWorkers);
+        for (int i = 0; i < NumWorkers; i++) {
+            workerDns.add(Host + ":" + (basePort + 1 + i));
+        }
+        Files.write(workerList, String.join(",", workerDns).getBytes(StandardCharsets.UTF_8));
+        Files.write(masterList, (Host + ":" + basePort).getBytes(StandardCharsets.UTF_8));
+
+        System.setProperty("mc.port", Integer.toString(basePort));
+        System.setProperty("mc.workerDnsList", workerList.toString());
+        System.setProperty("mc.masterDnsList", masterList.toString());
+        System.setProperty("mc.resultsDir", resultsDir.toString());
+        System.setProperty("mc.logDir", resultsDir.resolve("logs/master").toString());
+        System.setProperty("mc.dataDir", resultsDir.resolve("data").toString());
+
+        // The log directory is only known now, so the logger is created after the properties are set
+        Logger logger = LogManager.getLogger(LocalCluster.class);
+
+        List<Process> workers = new ArrayList<>(NumWorkers);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> workers.forEach(Process::destroy)));
+        try {
+            for (int i = 0; i < NumWorkers; i++) {
+                workers.add(startWorker(workerClasspath, basePort + 1 + i, resultsDir.resolve("logs/worker_" + i),
+                        resultsDir.resolve("checkpoint/worker_" + i)));
+            }
+            for (int i = 0; i < NumWorkers; i++) {
+                awaitPort(basePort + 1 + i, workers.get(i));
+            }
+            logger.info("Started " + NumWorkers + " workers on ports " + (basePort + 1) + " to " + (basePort + NumWorkers));
+
+            Server.main(new String[0]);
+
+            CommAPI.setReqTimeout(10000, 0);
+            int localJobs = Integer.getInteger("mc.localJobs", 0);
+            long startTime = System.nanoTime();
+            if (localJobs > 0) {
+                runJobs(Host + ":" + basePort, localJobs, logger);
+                logger.info("The " + localJobs + " jobs took " + (System.nanoTime() - startTime) / 1000000 + " ms");
+            } else {
+                // The master answers the startMaster request once all iterations are done
+                HashMap<String, Object> queryStringMap = new HashMap<>();
+                queryStringMap.put("startMaster", 1);
+                CommAPI.sendGetRequest("http", Host + ":" + basePort, "/master", queryStringMap);
+                logger.info("The master task took " + (System.nanoTime() - startTime) / 1000000 + " ms");
+
+                Path latency = resultsDir.resolve("config_latency.txt");
+                logger.info("Latency per configuration, from " + latency + ":\n" +
+                        new String(Files.readAllBytes(latency), StandardCharsets.UTF_8));
+            }
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+        System.exit(0);
+    }
+
+    /*
+     * Submits the jobs with the parameters of the system properties and polls their status until all have ended */
+    private static void runJobs(String masterDns, int numJobs, Logger logger) throws IOException, InterruptedException {
+        List<String> ids = new ArrayList<>(numJobs);
+        HashMap<String, Object> queryStringMap = new HashMap<>();
+        queryStringMap.put("submitJob", 1);
+        for (int i = 0; i < numJobs; i++) {
+            ids.add(CommAPI.sendControlRequest("http", masterDns, "/master", queryStringMap));
+        }
+        logger.info("Submitted the jobs " + ids);
+
+        queryStringMap.clear();
+        queryStringMap.put("jobStatus", "all");
+        while (true) {
+            Thread.sleep(PollInterval);
+            JSONArray statuses = new JSONArray(CommAPI.sendControlRequest("http", masterDns, "/master", queryStringMap));
+            boolean running = false;
+            StringBuilder progress = new StringBuilder();
+            for (int i = 0; i < statuses.length(); i++) {
+                JSONObject status = statuses.getJSONObject(i);
+                String state = status.getString("state");
+                running |= state.equals("QUEUED") || state.equals("RUNNING");
+                progress.append(" job ").append(status.getString("id")).append(' ').append(state)
+                        .append(' ').append(status.getLong("completedRounds")).append('/').append(status.getLong("iterations"));
+            }
+            logger.info("Jobs:" + progress);
+            if (!running) {
+                for (int i = 0; i < statuses.length(); i++) {
+                    logger.info(statuses.getJSONObject(i).toString());
+                }
+                return;
+            }
+        }
+    }
+
+    /*
+     * Starts one worker JVM listening on the given port, its output goes to worker.out in its log directory */
+    private static Process startWorker(String workerClasspath, int port, Path logDir, Path checkpointDir) throws IOException {
+        Files.createDirectories(logDir);
+
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + System.getProperty("mc.workerHeap", "256m"));
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("mc.") && !key.equals("mc.logDir") && !key.equals("mc.port") && !key.equals("mc.advertiseAddress")
+                    && !key.equals("mc.checkpointDir")) {
+                command.add("-D" + key + "=" + System.getProperty(key));
+            }
+        }
+        boolean checkpoints = !"".equals(System.getProperty("mc.checkpointDir"));
+        command.add("-Dmc.checkpointDir=" + (checkpoints ? checkpointDir.toString() : ""));
+        command.add("-Dmc.port=" + port);
+        command.add("-Dmc.advertiseAddress=" + Host + ":" + port);
+        command.add("-Dmc.logDir=" + logDir);
+        command.add("-cp");
+        command.add(workerClasspath);
+        command.add("mc.server.Server");
+
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logDir.resolve("worker.out").toFile())
+                .start();
+    }
+
+    /*
+     * Waits until a worker accepts connections on its port */
+    private static void awaitPort(int port, Process worker) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + StartupTimeout;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(Host, port), 1000);
+                return;
+            } catch (IOException e) {
+                if (!worker.isAlive() || System.currentTimeMillis() > deadline) {
+                    throw new IOException("The worker on port " + port + " did not start", e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /*
+     * Keeps a value given on the command line */
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
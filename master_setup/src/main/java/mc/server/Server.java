@@ -10,7 +10,9 @@ import io.undertow.server.HttpHandler;
 import io.undertow.server.handlers.PathHandler;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.DeploymentManager;
+import mc.server.servlets.AppMaster;
 import mc.server.servlets.ServletMaster;
+import mc.server.servlets.ServletMetrics;
 import io.undertow.UndertowOptions;
 import javax.servlet.ServletException;
 
@@ -19,15 +21,27 @@ import static io.undertow.servlet.Servlets.*;
 
 public class Server {
     private static final String PATH = "/";
+    // The port the node listens on, several nodes of a local cluster listen on different loopback ports
+    private static final int PORT = Integer.getInteger("mc.port", 80);
 
     public static void main(String[] args) {
 
+        // Fail before listening if the sizes given through the system properties cannot be split evenly. Loading
+        // AppMaster has started its client threads already, so the node has to exit instead of just returning
+        try {
+            AppMaster.checkSizes();
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+
         try {
             DeploymentInfo servletBuilder = deployment()
                     .setClassLoader(Server.class.getClassLoader())
                     .setContextPath(PATH)
                     .setDeploymentName("handler.war")
-                    .addServlets(servlet("mc.server.servlets.ServletMaster", ServletMaster.class).addMapping("/master"));
+                    .addServlets(servlet("mc.server.servlets.ServletMaster", ServletMaster.class).addMapping("/master"),
+                            servlet("mc.server.servlets.ServletMetrics", ServletMetrics.class).addMapping("/metrics"));
 
             DeploymentManager manager = defaultContainer().addDeployment(servletBuilder);
             manager.deploy();
@@ -38,7 +52,7 @@ public class Server {
                     .addPrefixPath(PATH, servletHandler);
 
             Undertow server = Undertow.builder().setServerOption(UndertowOptions.MAX_HEADER_SIZE, 10485760)
-                    .addHttpListener(80, "0.0.0.0")
+                    .addHttpListener(PORT, "0.0.0.0")
                     .setHandler(path)
                     .build();
             server.start();
@@ -0,0 +1,142 @@
+package mc.server.comm;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.util.EntityUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Non-blocking request dispatcher built on org.apache.http.impl.nio.client.CloseableHttpAsyncClient. <P> All requests
+ * are multiplexed over a small, fixed number of I/O reactor threads, so the number of threads used by the master does
+ * not grow with the number of workers. Every request returns a CompletableFuture that completes on an I/O thread once
+ * the whole response body has arrived. Cancelling the future aborts the request.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class AsyncDispatcher implements Closeable {
+
+    private final CloseableHttpAsyncClient client;
+
+    /**
+     * Constructor for class AsyncDispatcher. Creates and starts the asynchronous client.
+     *
+     * @param ioThreads       Number of I/O reactor threads
+     * @param maxConnPerRoute Connection limit per worker node
+     * @param maxConnTotal    Overall connection limit
+     * @param connTimeout     The timeout until a connection with the node is established (in milliseconds)
+     * @param socketTimeout   The timeout to receive data (in milliseconds)
+     */
+    public AsyncDispatcher(int ioThreads, int maxConnPerRoute, int maxConnTotal, int connTimeout, int socketTimeout) {
+        IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreads)
+                .setConnectTimeout(connTimeout)
+                .setSoTimeout(socketTimeout)
+                .setTcpNoDelay(true)
+                .build();
+
+        this.client = HttpAsyncClients.custom()
+                .setDefaultIOReactorConfig(ioReactorConfig)
+                .setMaxConnPerRoute(maxConnPerRoute)
+                .setMaxConnTotal(maxConnTotal)
+                .build();
+        this.client.start();
+    }
+
+    /**
+     * Sends POST request with the payload in the body without blocking the calling thread. The binary wire format is
+     * offered for the response through the Accept header.
+     *
+     * @param protocol       Application level protocol being used to send the request
+     * @param dns            DNS of the node to which request is being sent
+     * @param mapping        Mapping to the servlet on the node server to which request is being sent
+     * @param queryStringMap Query key:value map for the servlet on the node to which request is being sent
+     * @param body           Body of the request, not copied and must not be modified until the future completes
+     * @param contentType    Media type of the body, CommAPI#BINARY_MEDIA_TYPE or CommAPI#FORM_MEDIA_TYPE
+     * @return Returns a future of the body and the content type of the response. The future completes exceptionally if
+     * the connection fails or the node does not answer with a 2xx status
+     */
+    public CompletableFuture<CommResponse> sendPostRequest(String protocol, String dns, String mapping,
+                                                           Map<String, Object> queryStringMap, byte[] body, String contentType) {
+        final CompletableFuture<CommResponse> result = new CompletableFuture<>();
+
+        HttpPost post;
+        try {
+            URIBuilder uriBuilder = new URIBuilder(protocol + "://" + dns + mapping);
+            for (Map.Entry<String, Object> query : queryStringMap.entrySet()) {
+                uriBuilder.addParameter(query.getKey(), String.valueOf(query.getValue()));
+            }
+            post = new HttpPost(uriBuilder.build());
+        } catch (URISyntaxException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        post.setHeader("Accept", CommAPI.BINARY_MEDIA_TYPE + ", text/plain");
+        post.setEntity(new ByteArrayEntity(body, ContentType.create(contentType)));
+
+        final Future<HttpResponse> request = this.client.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                try {
+                    int status = response.getStatusLine().getStatusCode();
+                    if (status / 100 != 2) {
+                        throw new IOException("Node " + dns + " answered with status " + status);
+                    }
+                    Header contentTypeHeader = response.getFirstHeader("Content-Type");
+                    byte[] responseBody = response.getEntity() == null ? new byte[0] : EntityUtils.toByteArray(response.getEntity());
+                    Map<String, String> headers = new HashMap<>();
+                    for (Header header : response.getAllHeaders()) {
+                        headers.putIfAbsent(header.getName(), header.getValue());
+                    }
+                    result.complete(new CommResponse(responseBody, contentTypeHeader == null ? null : contentTypeHeader.getValue(), headers));
+                } catch (IOException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+
+        // Propagate a cancellation by the caller to the underlying request
+        result.whenComplete((response, e) -> {
+            if (result.isCancelled()) {
+                request.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Shuts down the I/O reactor threads and closes all connections
+     *
+     * @throws IOException if the client fails to shutdown
+     */
+    @Override
+    public void close() throws IOException {
+        this.client.close();
+    }
+}
@@ -0,0 +1,97 @@
+package mc.server.comm;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Defines the response to a request sent through CommAPI. <P> Holds the raw body together with the content type the
+ * node answered with, so that the caller can pick the binary or the text decoder for the body, and the headers of the
+ * response, e.g. the timings a worker reports with its product vector.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class CommResponse {
+
+    private final byte[] body;
+    private final String contentType;
+    private final Map<String, String> headers;
+
+    /**
+     * Constructor for class CommResponse.
+     *
+     * @param body        Raw body of the response
+     * @param contentType Value of the Content-Type header of the response, null if absent
+     */
+    public CommResponse(byte[] body, String contentType) {
+        this(body, contentType, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Constructor for class CommResponse.
+     *
+     * @param body        Raw body of the response
+     * @param contentType Value of the Content-Type header of the response, null if absent
+     * @param headers     The first value of every header of the response
+     */
+    public CommResponse(byte[] body, String contentType, Map<String, String> headers) {
+        this.body = body;
+        this.contentType = contentType;
+        // Header names are case insensitive
+        this.headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.headers.putAll(headers);
+    }
+
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * Returns the first value of the header with the given name, or null if the response does not have it
+     */
+    public String getHeader(String name) {
+        return this.headers.get(name);
+    }
+
+    /**
+     * Method for reading a header with a long value, such as the timings reported by a worker
+     *
+     * @param name         Name of the header
+     * @param defaultValue The value returned if the header is absent or not a number
+     * @return Returns the value of the header
+     */
+    public long getLongHeader(String name, long defaultValue) {
+        String value = this.headers.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Method for checking whether the node answered in the binary wire format
+     *
+     * @return Returns true if the Content-Type of the response is CommAPI#BINARY_MEDIA_TYPE
+     */
+    public boolean isBinary() {
+        return this.contentType != null && this.contentType.startsWith(CommAPI.BINARY_MEDIA_TYPE);
+    }
+
+    /**
+     * Returns the body of the response decoded as a UTF-8 string
+     */
+    public String getBodyAsString() {
+        return new String(this.body, StandardCharsets.UTF_8);
+    }
+}
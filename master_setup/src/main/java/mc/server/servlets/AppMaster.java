@@ -1,20 +1,43 @@
 package mc.server.servlets;
 
+import mc.server.comm.AsyncDispatcher;
 import mc.server.comm.CommAPI;
+import mc.server.comm.CommResponse;
+import mc.server.types.DecodingEngine;
+import mc.server.types.LatencyHistogram;
+import mc.server.types.SegmentDecodingEngine;
+import mc.server.types.TypeDenseMatrixDouble;
 import mc.server.types.TypeVectorDouble;
+import mc.server.types.TypeVectorDoubleView;
 import mc.server.types.TypeMatrixDouble;
 import mc.server.types.TypeVectorInt;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 import org.apache.commons.lang3.ArrayUtils;
 
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Defines the tasks done at the master nodes
@@ -25,54 +48,230 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class AppMaster {
     final private static int RecThreshold = 10;
-    final private static int OverallSize = 105000;
+    // The sizes can be scaled down together with the workers, e.g. to run a local cluster on one machine.
+    // OverallSize has to be divisible by NumWorkers_initial, see checkSizes
+    final private static int OverallSize = Integer.getInteger("mc.overallSize", 105000);
     final private static int NumWorkers_initial = 20;
-    final private static int SendSize = 10000;
+    final private static int SendSize = Integer.getInteger("mc.vectorSize", 10000);
 
     final private static int SamplePerWorker = OverallSize/NumWorkers_initial;
     final private static int CodedSamplePerWorker = SamplePerWorker*(NumWorkers_initial/RecThreshold);
 
-    private static int[] NumWorkersSet = {10, 12, 15, 18, 20};
-    private static int NumWorkers = NumWorkers_initial; // This number can change over time
-
-    private static int ReceiveSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
-    private static int elastic_size = CodedSamplePerWorker/NumWorkers;
+    // Send the vectors in the binary wire format instead of URL encoded text
+    final private static boolean UseBinaryWire = Boolean.parseBoolean(System.getProperty("mc.binaryWire", "true"));
+    final private static String VectContentType = UseBinaryWire ? CommAPI.BINARY_MEDIA_TYPE : CommAPI.FORM_MEDIA_TYPE;
+
+    // All worker requests are multiplexed over a few I/O threads, independent of the number of workers
+    final private static int IOThreads = Integer.getInteger("mc.ioThreads", Math.min(4, Runtime.getRuntime().availableProcessors()));
+    final private static int MaxConnPerWorker = 4;
+
+    // Number of input vectors sent to the workers in one request, only supported by the binary wire format. The
+    // workers send back the SendSize x BatchSize products in row-major order, so every sub-row of a worker holds
+    // elastic_size x BatchSize values and all vectors of a group are decoded together
+    final private static int BatchSize = UseBinaryWire ? Integer.getInteger("mc.batchSize", 1) : 1;
+
+    // Number of rounds in flight. A round is decoded while the workers already compute the following ones, every
+    // round has its own receive buffer and decoding output
+    final private static int PipelineDepth = Math.max(1, Integer.getInteger("mc.pipelineDepth", 1));
+    // The jobs of the master, see MasterJob. By default the running jobs together have as many rounds in flight as
+    // one job would have
+    final static JobScheduler jobs = new JobScheduler(Math.max(1, Integer.getInteger("mc.maxJobs", 4)),
+            Math.max(1, Integer.getInteger("mc.roundsInFlight", PipelineDepth)), 100);
+    final private static AsyncDispatcher dispatcher = new AsyncDispatcher(IOThreads, MaxConnPerWorker,
+            MaxConnPerWorker * Math.max(NumWorkers_initial, CommAPI.getEC2DNSList("worker", ",").size()), 10000, 60000);
+
+    // Elasticity is either simulated, by changing NumWorkers at random among the first workers of the static DNS list,
+    // or follows the workers that have registered with the master and keep sending heartbeats
+    final private static boolean DynamicMembership = "membership".equals(System.getProperty("mc.elasticity", "simulated"));
+    // How long to wait for enough live workers to form the smallest configuration
+    final private static long MembershipWait = Long.getLong("mc.membershipWait", 60000);
+    // The workers registered through ServletMaster, a worker expires when its heartbeats stop
+    final static Membership membership = new Membership(NumWorkers_initial, Long.getLong("mc.heartbeatTimeout", 3000),
+            CommAPI.getEC2DNSList("worker", ","));
+
+    // The rows are either split evenly with the cyclic shift method, or allocated in proportion to the rows per second
+    // every worker has reached, for a pool of workers of different speeds, see RowAllocation
+    final private static boolean ProportionalAllocation = "proportional".equals(System.getProperty("mc.allocation", "uniform"));
+    // Number of units the rows of a shard are allocated in, 360 splits them evenly for every value in NumWorkersSet
+    final private static int AllocationUnits = Integer.getInteger("mc.allocationUnits", 360);
+    // Number of rounds between two reallocations, and the fraction of the slowest arc time a reallocation has to save
+    final private static int AllocationInterval = Math.max(1, Integer.getInteger("mc.allocationInterval", 20));
+    final private static double AllocationMinGain = Double.parseDouble(System.getProperty("mc.allocationMinGain", "0.05"));
+    final private static ThroughputTracker throughput = new ThroughputTracker(NumWorkers_initial,
+            Double.parseDouble(System.getProperty("mc.throughputWeight", "0.2")));
+
+    // Hedged requests: a worker that has not answered once the round has run for the HedgePercentile of the response
+    // times so far gets its rows computed again by workers that have answered already, and every group uses whichever
+    // rows arrive first. The hedged requests are at most HedgeBudget times all requests, 0 disables hedging
+    final private static double HedgeBudget = Double.parseDouble(System.getProperty("mc.hedgeBudget", "0"));
+    final private static double HedgePercentile = Double.parseDouble(System.getProperty("mc.hedgePercentile", "90"));
+    // Number of hedged requests one round can take the answers of, and of response times measured before the first
+    final private static int HedgeRows = HedgeBudget > 0 ? Integer.getInteger("mc.hedgeRowsPerRound", 4) : 0;
+    final private static long HedgeMinSamples = 200;
+    // The response times the hedge delay is taken from. It is not on /metrics, so resetting the metrics does not
+    // stop the hedging until HedgeMinSamples response times are measured again
+    final private static LatencyHistogram hedgeDelayHistogram = new LatencyHistogram();
+    final private static AtomicLong workerRequests = new AtomicLong();
+    final private static AtomicLong hedgeRequests = new AtomicLong();
+    final private static ScheduledExecutorService hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The groups of a round are decoded in parallel, every group is still decoded by one thread in the same order
+    final private static ForkJoinPool decodePool = new ForkJoinPool(Integer.getInteger("mc.decodeThreads", Runtime.getRuntime().availableProcessors()));
+
+    final private static int[] NumWorkersSet = {10, 12, 15, 18, 20};
+    private int NumWorkers = NumWorkers_initial; // This number can change over time
+
+    private int ReceiveSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
+    private int elastic_size = CodedSamplePerWorker/NumWorkers;
 
     final private static Logger logger = LogManager.getLogger(AppMaster.class);
+    // The phases of a round, exposed on /metrics
+    final private static LatencyHistogram serializeHistogram = ServletMetrics.histogram("master.serialize");
+    final private static LatencyHistogram networkHistogram = ServletMetrics.histogram("master.network");
+    final private static LatencyHistogram[] networkWorkerHistograms = new LatencyHistogram[NumWorkers_initial];
+    final private static LatencyHistogram deserializeHistogram = ServletMetrics.histogram("master.deserialize");
+    final private static LatencyHistogram waitHistogram = ServletMetrics.histogram("master.wait");
+    final private static LatencyHistogram decodeHistogram = ServletMetrics.histogram("master.decode");
+    final private static LatencyHistogram roundHistogram = ServletMetrics.histogram("master.round");
+    final private static LatencyHistogram hedgeHistogram = ServletMetrics.histogram("master.hedge");
+    // The timings the workers report with their responses. The transfer time is the network time minus the parse,
+    // compute and serialize time of the worker, so it separates a slow network from a slow CPU
+    final private static LatencyHistogram workerParseHistogram = ServletMetrics.histogram("master.worker_parse");
+    final private static LatencyHistogram workerComputeHistogram = ServletMetrics.histogram("master.worker_compute");
+    final private static LatencyHistogram workerSerializeHistogram = ServletMetrics.histogram("master.worker_serialize");
+    final private static LatencyHistogram transferHistogram = ServletMetrics.histogram("master.transfer");
+    final private static LatencyHistogram[] workerComputeWorkerHistograms = new LatencyHistogram[NumWorkers_initial];
+    final private static LatencyHistogram[] transferWorkerHistograms = new LatencyHistogram[NumWorkers_initial];
+    static {
+        for (int ind = 0; ind < NumWorkers_initial; ind++) {
+            networkWorkerHistograms[ind] = ServletMetrics.histogram(String.format("master.network.worker_%02d", ind));
+            workerComputeWorkerHistograms[ind] = ServletMetrics.histogram(String.format("master.worker_compute.worker_%02d", ind));
+            transferWorkerHistograms[ind] = ServletMetrics.histogram(String.format("master.transfer.worker_%02d", ind));
+        }
+    }
     private List<String> dns_arr_workers = CommAPI.getEC2DNSList("worker", ",");
-    private static AtomicReference<String> shared = new AtomicReference<>();
-    private volatile TypeMatrixDouble xt_receive = new TypeMatrixDouble(NumWorkers,ReceiveSize,0,0);
     private static TypeMatrixDouble Decoding_matrix = new TypeMatrixDouble(NumWorkers_initial,RecThreshold,-1,1);
+    // A worker that reports this fingerprint for a dataset has restored it from its checkpoint and is not initialized again
+    final private static long GeneratorFingerprint = Decoding_matrix.fingerprint();
+    // The decoding matrices of every configuration in NumWorkersSet, computed once
+    final private static DecodingMatrixCache decodingCache = new DecodingMatrixCache(RecThreshold, NumWorkersSet.length);
     private TypeMatrixDouble[] Decoding_matrix_collections;
+    // The rows of every worker of the ring, with the proportional allocation or when the coded rows do not split
+    // into NumWorkers equal sub-rows
+    private RowAllocation Allocation;
+    // The ids and the DNS of the workers in ring order, the worker at position p fills row p of the receive buffer
+    private int[] MemberIds;
+    private String[] MemberDns;
+    // The live members the ring is made of, only with dynamic membership
+    private Membership.Member[] MemberView;
     private Random rand = new Random();
     private boolean ChangeNumMachinesCall = false; // Indicate a change on the number of machines
+    private double MaxDecodingError = 0; // Shows the precision lost when the workers store their shards in float32
+
+    // The job this object runs, with the parameters of the run
+    final private MasterJob job;
+    final private long iter_num_all;
+    final private long iter_num_not_count;
+    // Probability that the number of machines changes before an iteration
+    final private double ChangeProbability;
+    // Directory of the result files
+    final private String ResultsDir;
+    // Number of round permits of the JobScheduler this job holds, one per round in flight
+    private int RoundPermits = 0;
+    // The time_ave is for logging the average time for different configurations
+    private long[] time_ave;
+    // The time_length is for logging the number of queries from different configurations
+    private long[] time_length;
+    // The time_log is for logging the time for each iteration
+    private long[] time_log;
+
+    /**
+     * Constructor for class AppMaster.
+     *
+     * @param job The job to run, with the parameters of the run
+     */
+    AppMaster(MasterJob job) {
+        this.job = job;
+        this.iter_num_all = job.iterations;
+        this.iter_num_not_count = job.warmupIterations;
+        this.ChangeProbability = job.changeProbability;
+        this.ResultsDir = job.resultsDir;
+    }
+
+    /**
+     * Method for checking the sizes set through the system properties before the master starts. The data is split
+     * into NumWorkers_initial equal shards. A configuration in NumWorkersSet that does not split the coded rows of a
+     * worker into equal sub-rows uses the uniform RowAllocation, see UpdateSettingsWhenNumMachinesChange.
+     *
+     * @throws IllegalArgumentException if OverallSize is not divisible by NumWorkers_initial
+     */
+    public static void checkSizes() {
+        if (OverallSize % NumWorkers_initial != 0) {
+            throw new IllegalArgumentException("mc.overallSize = " + OverallSize + " is not divisible by " + NumWorkers_initial + "!");
+        }
+    }
 
-    public void initTask() {
+    /**
+     * Method for running the job: sends the generator matrix and the ids to the workers, runs the rounds and writes
+     * the result files. Every round waits for a round permit of the JobScheduler, so that the jobs running at the same
+     * time take turns.
+     *
+     * @throws InterruptedException if the job is cancelled
+     * @throws IOException          if the result files cannot be written
+     */
+    void runJob() throws InterruptedException, IOException {
+
+        // The buffers of the rounds in flight, round iter_num uses slot iter_num % PipelineDepth
+        RoundState[] slots = new RoundState[PipelineDepth];
+        Deque<RoundState> inFlight = new ArrayDeque<>(PipelineDepth);
 
         try {
 
-            logger.info("------------------- Start the master task -------------------");
+            logger.info("------------------- Start the master task of job " + job.id + " -------------------");
+            Files.createDirectories(Paths.get(ResultsDir));
+
+            // Invert the generator submatrices of every configuration in the background
+            for (int numWorkers : NumWorkersSet) {
+                decodingCache.prefetch(Decoding_matrix, DecodingMatrixCache.firstWorkers(numWorkers));
+            }
+            if (DynamicMembership) {
+                planMembers();
+            } else {
+                UpdateSettingsWhenNumMachinesChange();
+            }
 
-            Decoding_matrix_collections = select_encoding_matrix(Decoding_matrix);
-            TypeMatrixDouble[] Received_rearranged = new TypeMatrixDouble[NumWorkers];
-            long iter_num_all = 1000;
-            long iter_num_not_count = 100;
+            time_ave = new long[NumWorkersSet.length];
+            time_length = new long[NumWorkersSet.length];
+            time_log = new long[(int) (iter_num_all-iter_num_not_count)];
 
-            // The time_ave is for logging the average time for different configurations
-            long[] time_ave = new long[NumWorkersSet.length];
-            java.util.Arrays.fill(time_ave, 0);
-            // The time_length is for logging the number of queries from different configurations
-            long[] time_length = new long[NumWorkersSet.length];
-            java.util.Arrays.fill(time_length, 0);
-            // The time_log is for logging the time for each iteration
-            long[] time_log = new long[(int) (iter_num_all-iter_num_not_count)];
-            java.util.Arrays.fill(time_log, 0);
+            long PipelineTimeStart = 0;
 
             for (long iter_num = 0; iter_num < iter_num_all + 1; iter_num++) {
 
-                logger.info("------------------- This is the " + iter_num + "-th iteration -------------------");
+                if (job.isCancelled() || Thread.interrupted()) {
+                    throw new InterruptedException("Job " + job.id + " is cancelled");
+                }
+                logger.info("------------------- This is the " + iter_num + "-th iteration of job " + job.id + " -------------------");
 
-                if (iter_num > 0 && Math.random() < 0.02) {
+                if (iter_num == 0) {
+                    // the first iteration is only for sending the worker id
+                    long InitTimeStart = System.nanoTime();
+                    initWorkers();
+                    logger.info("Time taken to complete all communication round is " + (System.nanoTime() - InitTimeStart) / 1000000);
+                    continue;
+                }
+
+                if (DynamicMembership) {
+
+                    // Follow the live members, a new ring is broadcast like a change of the number of machines
+                    ChangeNumMachinesCall = planMembers();
+
+                }
+                else if (Math.random() < ChangeProbability) {
 
                     int NumWorkers_old = NumWorkers;
                     while (NumWorkers_old == NumWorkers) {
@@ -86,105 +285,96 @@ public class AppMaster {
 
                 }
 
-                // Generate a random input vector
-                TypeVectorDouble vect = new TypeVectorDouble(SendSize + 1, 0, 100);
-                vect.SetValue((double) NumWorkers, SendSize);
+                if (ProportionalAllocation && !ChangeNumMachinesCall && iter_num % AllocationInterval == 0) {
 
-                // Serialize
-                // Set the input vector to the atomic reference for different threads to access
-                shared.set(CommAPI.stringURLEncode(vect.serialize(",")));
-
-                // Start the threads
-
-                long ThreadTimeStart = System.nanoTime();
-                ExecutorService executor = Executors.newFixedThreadPool(NumWorkers);
-                int count = 0;
-
-                for (String dns : dns_arr_workers) {
-
-                    // Only send data to the remaining workers
-                    count++;
-                    if (count > NumWorkers) {
-                        break;
-                    }
-                    int ind = dns_arr_workers.indexOf(dns);
-                    Runnable worker = new MyRunnable(dns, ind, ReceiveSize, ThreadTimeStart, iter_num);
-                    executor.execute(worker);
+                    // The workers need no notice, every request carries the rows to compute
+                    UpdateAllocation();
 
                 }
-                // Shut down threads
-                executor.shutdown();
-                while (!executor.isTerminated()) {
 
+                // when NumWorkers changes, broadcast the NumWorkers
+                // these rounds are not pipelined, the rounds before them are finished first
+                boolean broadcast = ChangeNumMachinesCall;
+                while (!inFlight.isEmpty() && (broadcast || inFlight.size() >= PipelineDepth)) {
+                    finishOldest(inFlight);
+                }
+                if (broadcast && DynamicMembership) {
+                    // Members that joined since the last ring get the generator matrix and their id first
+                    initWorkers();
                 }
-                logger.info("Time taken to complete all communication round is " + (System.nanoTime() - ThreadTimeStart) / 1000000);
-
-                if (iter_num == 0 || ChangeNumMachinesCall) {
-                    // the first iteration is only for sending the worker id
-                    // when NumWorkers changes, broadcast the NumWorkers
-                    // no need to decode in these two situations
-
-                    // Also skip the logging phase to show a verticle line in the plot
-
-                    ChangeNumMachinesCall = false;
-                    continue;
 
-                } else {
+                // Generate BatchSize random input vectors, each with the number of workers as control information
+                TypeMatrixDouble vects = new TypeMatrixDouble(BatchSize, SendSize + 1, 0, 100);
+                for (int batch_ind = 0; batch_ind < BatchSize; batch_ind++) {
+                    vects.GetMat()[batch_ind][SendSize] = NumWorkers;
+                }
 
-                    // Decoding
-                    long DecodingTimeStart = System.nanoTime();
+                // Serialize
+                long SerializeTimeStart = System.nanoTime();
+                byte[] payload = BatchSize == 1 ? encodeVect(new TypeVectorDouble(SendSize + 1, vects.GetMat()[0])) : vects.serializeBinary();
+                serializeHistogram.record(System.nanoTime() - SerializeTimeStart);
+
+                // The slot was last used by round iter_num - PipelineDepth, which is finished
+                int slot = (int) (iter_num % PipelineDepth);
+                if (slots[slot] == null || slots[slot].numWorkers != NumWorkers) {
+                    slots[slot] = Allocation != null ? RoundState.forAllocation(NumWorkers, RecThreshold, CodedSamplePerWorker, BatchSize, HedgeRows)
+                            : new RoundState(NumWorkers, RecThreshold, elastic_size, BatchSize, HedgeRows);
+                }
+                acquireRound(inFlight);
+                RoundState round = slots[slot];
+                round.start(iter_num, vects, payload, MemberIds, MemberDns, Decoding_matrix_collections, Allocation);
 
-                    // rearrange the received vectors
+                // Send the requests without blocking, only to the workers of the ring
 
-                    for (int group_ind = 0; group_ind < NumWorkers; group_ind++) {
+                for (int ind = 0; ind < NumWorkers; ind++) {
 
-                        Received_rearranged[group_ind] = new TypeMatrixDouble(RecThreshold, elastic_size);
+                    round.requests.add(sendToWorker(MemberDns[ind], ind, payload, round));
 
-                        int start_block_in_node = (1 + group_ind) % NumWorkers;
-                        for (int node_in_this_group = 0; node_in_this_group < RecThreshold; node_in_this_group++) {
-                            int node_id = (start_block_in_node + node_in_this_group) % NumWorkers;
-                            int row_id = (NumWorkers - 1 - node_in_this_group) % RecThreshold;
-                            Received_rearranged[group_ind].set_row(node_in_this_group, xt_receive.sub_row(node_id, row_id * elastic_size, elastic_size));
-                        }
-                        TypeMatrixDouble prodMatrix = Decoding_matrix_collections[group_ind].matMatMultGiveMat(Received_rearranged[group_ind]);
+                }
 
-                        if (iter_num == 1 && group_ind == 0) {
-                            try {
-                                prodMatrix.writeMatToFile("/home/ubuntu/result.txt", " ", "\n");
-                                double vectSum = vect.vecSum();
+                if (broadcast) {
+                    // no need to decode in this situation
 
-                                TypeVectorDouble vectSum0 = new TypeVectorDouble(1, new double[]{vectSum});
-                                vectSum0.writeVectToFile("/home/ubuntu/vector_sum.txt", " ");
+                    // Also skip the logging phase to show a verticle line in the plot
 
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                    logger.info("Time taken to complete decoding is " + (System.nanoTime() - DecodingTimeStart) / 1000000);
+                    // Park until every worker has answered
+                    CompletableFuture.allOf(round.requests.toArray(new CompletableFuture<?>[0])).join();
+                    logger.info("Time taken to complete all communication round is " + (System.nanoTime() - round.startTime) / 1000000);
+                    round.finish();
+                    releaseRound();
 
-                    // Update the timing statistics
+                    ChangeNumMachinesCall = false;
+                    continue;
 
-                    if (iter_num > iter_num_not_count) {
+                }
 
-                        // Log the timing information
-                        long timeSpent = (System.nanoTime() - ThreadTimeStart) / 1000000;
-                        time_log[(int) (iter_num - 1 - iter_num_not_count)] = timeSpent;
+                if (HedgeBudget > 0) {
+                    scheduleHedges(round);
+                }
 
-                        int configureInd = ArrayUtils.indexOf(NumWorkersSet, NumWorkers);
-                        if (configureInd == -1) {
-                            throw new ArithmeticException("Number of workers is not properly updated!!");
-                        }
-                        time_length[configureInd] += 1;
-                        time_ave[configureInd] += timeSpent;
-                    }
+                if (iter_num == iter_num_not_count + 1) {
+                    PipelineTimeStart = round.startTime;
                 }
+                inFlight.add(round);
             }
 
+            while (!inFlight.isEmpty()) {
+                finishOldest(inFlight);
+            }
+            logger.info("Sustained rounds per second with " + PipelineDepth + " rounds in flight is " +
+                    (iter_num_all - iter_num_not_count) * 1e9 / (System.nanoTime() - PipelineTimeStart));
+
             for (int i = 0; i < time_ave.length; i++) {
+                if (time_length[i] == 0) {
+                    logger.info("No iteration was timed when NumWorkers = " + NumWorkersSet[i]);
+                    continue;
+                }
                 logger.info("Average time per iteration when NumWorkers = " + NumWorkersSet[i] +
                         " is " + time_ave[i] / time_length[i] + " and the number of iterations is " + time_length[i]);
             }
+            writeConfigLatency(ResultsDir + "/config_latency.txt");
+
+            logger.info("Maximum relative decoding error over all iterations is " + MaxDecodingError);
 
             logger.info("The following is the log of the per-iteration time:\n");
             String u = "";
@@ -196,100 +386,763 @@ public class AppMaster {
             logger.info(u + "\n");
 
             TypeVectorInt time_log_to_file = new TypeVectorInt((int) (iter_num_all - iter_num_not_count), time_log);
-            time_log_to_file.writeVectToFile("/home/ubuntu/time_log.txt", " ");
+            time_log_to_file.writeVectToFile(ResultsDir + "/time_log.txt", " ");
 
-        } catch (Exception e) {
-            logger.error(e.toString());
-            e.printStackTrace();
+        } finally {
+            // A cancelled or failed job aborts the rounds it still has in flight
+            for (RoundState round : inFlight) {
+                round.finish();
+            }
+            while (RoundPermits > 0) {
+                releaseRound();
+            }
         }
     }
 
-    private void UpdateSettingsWhenNumMachinesChange() {
+    /**
+     * Method for getting the round permit of the next round from the JobScheduler. While the other jobs hold the
+     * permits, the rounds this job has in flight are finished first, so that the jobs cannot wait for each other's
+     * permits.
+     *
+     * @param inFlight The rounds this job has in flight, oldest first
+     * @throws InterruptedException if the job is cancelled
+     */
+    private void acquireRound(Deque<RoundState> inFlight) throws InterruptedException {
+        while (!jobs.tryAcquireRound()) {
+            if (inFlight.isEmpty()) {
+                jobs.acquireRound();
+                break;
+            }
+            finishOldest(inFlight);
+        }
+        RoundPermits++;
+    }
 
-        // Randomly generate the number of machines
-        ReceiveSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
-        elastic_size = CodedSamplePerWorker/NumWorkers;
-        xt_receive = new TypeMatrixDouble(NumWorkers,ReceiveSize,0,0);
-        Decoding_matrix_collections = select_encoding_matrix(Decoding_matrix);
+    /*
+     * The oldest round stays in flight until it is finished, so that a cancelled job still aborts it */
+    private void finishOldest(Deque<RoundState> inFlight) throws InterruptedException {
+        finishRound(inFlight.peek());
+        inFlight.poll();
+    }
 
+    private void releaseRound() {
+        RoundPermits--;
+        jobs.releaseRound();
     }
-    private TypeMatrixDouble[] select_encoding_matrix(TypeMatrixDouble Decoding_matrix) {
 
-        TypeMatrixDouble[] Generator_matrix_collections = new TypeMatrixDouble[NumWorkers];
-        TypeMatrixDouble[] Decoding_matrix_collections = new TypeMatrixDouble[NumWorkers];
-        
-        int start_ind;
+    /**
+     * Decodes a round and updates the timing statistics. Each group is decoded as soon as its RecThreshold workers have
+     * filled their rows of the receive buffer of the round, while the requests to the slower workers, and the later
+     * rounds, are still in flight. A round with a group that misses the rows of a failed worker is not decoded, see
+     * failRound.
+     *
+     * @param round The oldest round in flight
+     * @throws InterruptedException if interrupted while waiting for a group
+     */
+    private void finishRound(RoundState round) throws InterruptedException {
+
+        long iter_num = round.iter_num;
+        int numWorkers = round.numWorkers;
+        int numGroups = round.numGroups();
+
+        // Decoding
+        // The groups are decoded on decodePool, every group writes its own rows of the output buffer
+        AtomicLong DecodingTime = new AtomicLong();
+        long WaitingTime = 0;
+        double DecodingError = 0;
+
+        // The coded data is generated from all-one data, so every decoded value should be the sum of its
+        // input vector without the control information
+        double[] expected = new double[BatchSize];
+        for (int batch_ind = 0; batch_ind < BatchSize; batch_ind++) {
+            for (int i = 0; i < SendSize; i++) {
+                expected[batch_ind] += round.vects.GetMat()[batch_ind][i];
+            }
+        }
+
+        DecodingEngine engine = round.decodingEngine;
+        SegmentDecodingEngine segmentEngine = round.segmentEngine;
+        RowAllocation allocation = round.allocation;
+        List<ForkJoinTask<?>> decodeTasks = new ArrayList<>(numGroups);
 
-        int ind;
+        for (int num_decoded = 0; num_decoded < numGroups; num_decoded++) {
+
+            long WaitingTimeStart = System.nanoTime();
+            int group_ind;
+            try {
+                group_ind = round.collector.takeReadyGroup();
+            } catch (IllegalStateException e) {
+                failRound(round, decodeTasks, e.getMessage());
+                return;
+            }
+            WaitingTime += System.nanoTime() - WaitingTimeStart;
+
+            // Read the received sub-rows in place and write the decoded values into the output buffer
+            decodeTasks.add(decodePool.submit(() -> {
+                long DecodingTimeStart = System.nanoTime();
+                // The sources of a group may have been switched to the answer of a hedged request
+                if (allocation == null) {
+                    engine.decodeGroup(group_ind, round.groupMatrices[group_ind], round.xt_receive,
+                            round.groupNodes[group_ind], round.groupOffsets[group_ind]);
+                } else {
+                    segmentEngine.decodeSegment(allocation.segmentStart[group_ind], allocation.segmentRows[group_ind],
+                            round.groupNodes[group_ind], round.groupOffsets[group_ind],
+                            round.groupMatrices[group_ind], round.xt_receive);
+                }
+                long GroupDecodingTime = System.nanoTime() - DecodingTimeStart;
+                decodeHistogram.record(GroupDecodingTime);
+                DecodingTime.addAndGet(GroupDecodingTime);
+            }));
+        }
 
-        for (int i=0; i<NumWorkers; i++) {
+        long DrainingTimeStart = System.nanoTime();
+        for (ForkJoinTask<?> decodeTask : decodeTasks) {
+            decodeTask.join();
+        }
+        long DrainingTime = System.nanoTime() - DrainingTimeStart;
+        waitHistogram.record(WaitingTime);
+        roundHistogram.record(System.nanoTime() - round.startTime);
+        logger.info("Time taken to complete all communication round " + iter_num + " is " + (System.nanoTime() - round.startTime) / 1000000);
+
+        // Every group is decoded, the answers of the workers still in flight are not needed any more
+        round.finish();
+        releaseRound();
+
+        long CheckingTimeStart = System.nanoTime();
+        for (int group_ind = 0; group_ind < numGroups; group_ind++) {
+            DecodingError = Math.max(DecodingError, allocation == null ? engine.maxRelativeError(group_ind, expected)
+                    : segmentEngine.maxRelativeError(allocation.segmentStart[group_ind], allocation.segmentRows[group_ind], expected));
+        }
+        long CheckingTime = System.nanoTime() - CheckingTimeStart;
 
-            Generator_matrix_collections[i] = new TypeMatrixDouble(RecThreshold,RecThreshold,0,100);
-            Decoding_matrix_collections[i] = new TypeMatrixDouble(RecThreshold,RecThreshold,0,100);
-            
-            start_ind = i+1;
-            for (int j=0; j<RecThreshold; j++) {
+        if (iter_num == 1) {
+            try {
+                (allocation == null ? engine.getDecoded() : segmentEngine.getDecoded()).sub_rows(0, RecThreshold).writeMatToFile(ResultsDir + "/result.txt", " ", "\n");
+                double vectSum = new TypeVectorDouble(SendSize + 1, round.vects.GetMat()[0]).vecSum();
 
-                // The ind is calculated using the cyclic shift method
-                ind = (start_ind + j)%NumWorkers;
-                Generator_matrix_collections[i].set_row(j,Decoding_matrix,ind);
+                TypeVectorDouble vectSum0 = new TypeVectorDouble(1, new double[]{vectSum});
+                vectSum0.writeVectToFile(ResultsDir + "/vector_sum.txt", " ");
 
+            } catch (IOException e) {
+                e.printStackTrace();
             }
+        }
+
+        logger.info("Time taken to complete decoding is " + DecodingTime.get() / 1000000);
+        logger.info("Decoding phases: waiting for groups " + WaitingTime / 1000000 +
+                ", decoding summed over " + decodePool.getParallelism() + " threads " + DecodingTime.get() / 1000000 +
+                ", draining after the last group " + DrainingTime / 1000000 +
+                ", checking " + CheckingTime / 1000000);
+        logger.info("Maximum relative decoding error is " + DecodingError);
+        MaxDecodingError = Math.max(MaxDecodingError, DecodingError);
+        logWorkerTimes(round);
+
+        // Update the timing statistics
 
-            Decoding_matrix_collections[i] = Generator_matrix_collections[i].matInv();
+        long timeSpent = (System.nanoTime() - round.startTime) / 1000000;
+        job.recordRound(iter_num, numWorkers, timeSpent, DecodingError);
+        if (iter_num > iter_num_not_count) {
 
+            // Log the timing information
+            time_log[(int) (iter_num - 1 - iter_num_not_count)] = timeSpent;
+
+            int configureInd = ArrayUtils.indexOf(NumWorkersSet, numWorkers);
+            if (configureInd == -1) {
+                throw new ArithmeticException("Number of workers is not properly updated!!");
+            }
+            time_length[configureInd] += 1;
+            time_ave[configureInd] += timeSpent;
         }
+    }
 
-        return Decoding_matrix_collections;
+    /**
+     * Method for ending a round that cannot be decoded. The groups that are decoded already are dropped, and the round
+     * is neither timed nor written to the result files. The job counts the failed rounds in its status.
+     *
+     * @param round       The round
+     * @param decodeTasks The decoding of the groups handed out so far, which still read the buffers of the round
+     * @param reason      Why the round cannot be decoded
+     */
+    private void failRound(RoundState round, List<ForkJoinTask<?>> decodeTasks, String reason) {
+        for (ForkJoinTask<?> decodeTask : decodeTasks) {
+            decodeTask.join();
+        }
+        round.finish();
+        releaseRound();
+        logger.error("Round " + round.iter_num + " cannot be decoded: " + reason);
+        job.recordFailedRound(round.iter_num, reason);
     }
 
-    public class MyRunnable implements Runnable {
-        private final String dns;
-        private final int ind;
-        private final int length;
-        private final long iter_num;
+    /*
+     * Updates the histograms of the timings a worker reported, workers that do not report timings are skipped */
+    private static void recordWorkerTimes(int ind, long network, long parse, long compute, long serialize) {
+        if (parse < 0 || compute < 0 || serialize < 0) {
+            return;
+        }
+        long transfer = network - parse - compute - serialize;
+        workerParseHistogram.record(parse);
+        workerComputeHistogram.record(compute);
+        workerSerializeHistogram.record(serialize);
+        transferHistogram.record(transfer);
+        workerComputeWorkerHistograms[ind].record(compute);
+        transferWorkerHistograms[ind].record(transfer);
+    }
 
-        MyRunnable(String dns, int ind, int length, long multithreading_time_start, long iter_num) {
-            this.dns = dns;
-            this.ind = ind;
-            this.length = length;
-            this.iter_num = iter_num;
+    /**
+     * Method for logging where the time of a round went at the workers that answered before it was decoded: the
+     * slowest and the mean compute and transfer time, and the worker they belong to
+     *
+     * @param round The decoded round
+     */
+    private void logWorkerTimes(RoundState round) {
+        int answered = 0;
+        long computeSum = 0, transferSum = 0, computeMax = -1, transferMax = -1;
+        int computeMaxInd = -1, transferMaxInd = -1;
+        for (int ind = 0; ind < round.numWorkers; ind++) {
+            long compute = round.workerComputeTime[ind];
+            if (compute < 0 || round.workerParseTime[ind] < 0 || round.workerSerializeTime[ind] < 0) {
+                continue;
+            }
+            long transfer = round.networkTime[ind] - round.workerParseTime[ind] - compute - round.workerSerializeTime[ind];
+            answered++;
+            computeSum += compute;
+            transferSum += transfer;
+            if (compute > computeMax) {
+                computeMax = compute;
+                computeMaxInd = ind;
+            }
+            if (transfer > transferMax) {
+                transferMax = transfer;
+                transferMaxInd = ind;
+            }
         }
+        if (answered == 0) {
+            return;
+        }
+        logger.info("Worker times of round " + round.iter_num + " over " + answered + " answered workers in us: compute mean " +
+                computeSum / answered / 1000 + ", max " + computeMax / 1000 + " at worker " + round.memberIds[computeMaxInd] +
+                "; transfer mean " + transferSum / answered / 1000 + ", max " + transferMax / 1000 + " at worker " + round.memberIds[transferMaxInd]);
+    }
 
-         @Override
-        public void run() {
-            try {
+    /**
+     * Method for writing the average time per iteration of every configuration, one line with NumWorkers, the number
+     * of timed iterations and the average time in milliseconds per configuration in NumWorkersSet
+     *
+     * @param fpath Path of the output file
+     * @throws IOException if the file cannot be written
+     */
+    private void writeConfigLatency(String fpath) throws IOException {
+        PrintWriter latencyWriter = new PrintWriter(new FileWriter(fpath));
+        latencyWriter.println("NumWorkers iterations average_ms");
+        for (int i = 0; i < NumWorkersSet.length; i++) {
+            double average = time_length[i] == 0 ? Double.NaN : (double) time_ave[i] / time_length[i];
+            latencyWriter.println(NumWorkersSet[i] + " " + time_length[i] + " " + average);
+        }
+        latencyWriter.close();
+    }
 
-                if (this.iter_num==0) {
+    /**
+     * Method for planning the ring from the live members. The ring is made of the live members with the lowest ids,
+     * as many as the largest value in NumWorkersSet there are live members for. Waits for more members if there are
+     * not enough for the smallest configuration.
+     *
+     * @return Returns true if the ring has changed
+     * @throws InterruptedException if interrupted while waiting for members
+     */
+    private boolean planMembers() throws InterruptedException {
+        int minWorkers = Arrays.stream(NumWorkersSet).min().getAsInt();
+        List<Membership.Member> live = membership.live();
+        long deadline = System.currentTimeMillis() + MembershipWait;
+        while (live.size() < minWorkers) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Only " + live.size() + " workers are live, at least " + minWorkers + " are needed!");
+            }
+            Thread.sleep(100);
+            live = membership.live();
+        }
 
-                    double[] vectInd = new double[1];
-                    vectInd[0] = this.ind;
+        int numWorkers = 0;
+        for (int n : NumWorkersSet) {
+            if (n <= live.size()) {
+                numWorkers = Math.max(numWorkers, n);
+            }
+        }
+        Membership.Member[] view = live.subList(0, numWorkers).toArray(new Membership.Member[0]);
+        if (Arrays.equals(view, MemberView)) {
+            return false;
+        }
 
-                    double[] vectG = Decoding_matrix.toVect();
+        MemberView = view;
+        NumWorkers = numWorkers;
+        MemberIds = new int[numWorkers];
+        MemberDns = new String[numWorkers];
+        for (int ind = 0; ind < numWorkers; ind++) {
+            MemberIds[ind] = view[ind].id;
+            MemberDns[ind] = view[ind].address;
+        }
+        logger.info("The ring changes to " + NumWorkers + " of " + live.size() + " live workers with ids " + Arrays.toString(MemberIds));
+        UpdateSettingsWhenNumMachinesChange();
+        return true;
+    }
 
-                    TypeVectorDouble vectConcat = new TypeVectorDouble(1+NumWorkers_initial*RecThreshold);
-                    vectConcat.Concate(vectG, vectInd);
+    /**
+     * Method for sending the generator matrix and their ids to the workers of the ring that have not received them,
+     * which is every worker in the first iteration. With dynamic membership a worker that cannot be initialized is
+     * dropped, and the ring is planned again without it, and a worker whose heartbeats report the dataset of the job
+     * with its id and this generator matrix, see Membership.Member#holds, is not sent them again.
+     *
+     * @throws InterruptedException if interrupted while waiting for members
+     */
+    private void initWorkers() throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            List<CompletableFuture<Boolean>> requests = new ArrayList<>(NumWorkers);
+            for (int ind = 0; ind < NumWorkers; ind++) {
+                if (MemberView == null) {
+                    requests.add(sendInit(MemberDns[ind], MemberIds[ind]));
+                }
+                else if (!MemberView[ind].isInitialized(job.datasetId())) {
+                    Membership.Member member = MemberView[ind];
+                    if (member.holds(job.datasetId(), GeneratorFingerprint)) {
+                        logger.info("Worker " + member.id + " has restored the dataset " + job.datasetId() + " from its checkpoint");
+                        member.setInitialized(job.datasetId());
+                        continue;
+                    }
+                    requests.add(sendInit(member.address, member.id).thenApply(ok -> {
+                        if (ok) {
+                            member.setInitialized(job.datasetId());
+                        } else {
+                            membership.deregister(member.address);
+                        }
+                        return ok;
+                    }));
+                }
+            }
 
-                    String vect = CommAPI.stringURLEncode(vectConcat.serialize(","));
-                    String vectResp = CommAPI.sendGetRequest("http", dns, "/worker", new HashMap<String, Object>() {{ put("vectIn", vect); }});
-                    logger.info("Send the worker id to worker "+ind);
+            boolean allInitialized = true;
+            for (CompletableFuture<Boolean> request : requests) {
+                allInitialized &= request.join();
+            }
+            if (allInitialized || MemberView == null) {
+                return;
+            }
+            if (attempt >= NumWorkers_initial) {
+                throw new IllegalStateException("The workers of the ring could not be initialized!");
+            }
+            planMembers();
+        }
+    }
 
-                }
-                else {
+    private void UpdateSettingsWhenNumMachinesChange() {
+
+        // Randomly generate the number of machines
+        ReceiveSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
+        elastic_size = CodedSamplePerWorker/NumWorkers;
+
+        if (!DynamicMembership) {
+            // The simulated elasticity uses the first NumWorkers workers of the static DNS list
+            MemberIds = DecodingMatrixCache.firstWorkers(NumWorkers);
+            MemberDns = dns_arr_workers.subList(0, NumWorkers).toArray(new String[0]);
+        }
+
+        long CacheTimeStart = System.nanoTime();
+        if (ProportionalAllocation) {
+            // The new ring starts from the speeds its workers have reached so far
+            Allocation = RowAllocation.proportional(throughput.rates(MemberIds), RecThreshold, CodedSamplePerWorker, AllocationUnits);
+            logger.info("The rows are allocated as " + Allocation);
+            Decoding_matrix_collections = decodingCache.get(Decoding_matrix, MemberIds, Allocation);
+        } else if (CodedSamplePerWorker % NumWorkers != 0) {
+            // The sub-rows of the cyclic shift method would leave the last rows of the shard out, the arcs of the
+            // uniform allocation differ by at most one row and cover every row
+            Allocation = RowAllocation.uniform(NumWorkers, RecThreshold, CodedSamplePerWorker, CodedSamplePerWorker);
+            logger.info("The rows are allocated as " + Allocation);
+            Decoding_matrix_collections = decodingCache.get(Decoding_matrix, MemberIds, Allocation);
+        } else {
+            Allocation = null;
+            Decoding_matrix_collections = decodingCache.get(Decoding_matrix, MemberIds);
+        }
+        logger.info("Time taken to get the decoding matrices is " + (System.nanoTime() - CacheTimeStart) / 1000000);
+
+    }
 
-                    String vect = shared.get();
-                    String vectResp = CommAPI.sendGetRequest("http", dns, "/worker", new HashMap<String, Object>() {{ put("vectIn", vect); }});
-                    TypeVectorDouble finVect = new TypeVectorDouble(length);
-                    finVect.deserialize(CommAPI.stringURLDecode(vectResp), ",");
+    /**
+     * Method for allocating the rows again from the rows per second the workers of the ring have reached. The new
+     * allocation is only used if it shortens the time of the slowest worker by at least AllocationMinGain, so that the
+     * noise of the measurements does not move the rows in every round.
+     */
+    private void UpdateAllocation() {
+        double[] rates = throughput.rates(MemberIds);
+        RowAllocation candidate = RowAllocation.proportional(rates, RecThreshold, CodedSamplePerWorker, AllocationUnits);
+        if (candidate.sameArcs(Allocation) || candidate.makespan(rates) > (1 - AllocationMinGain) * Allocation.makespan(rates)) {
+            return;
+        }
 
-                    xt_receive.set_row(this.ind, finVect);
+        long CacheTimeStart = System.nanoTime();
+        Allocation = candidate;
+        Decoding_matrix_collections = decodingCache.get(Decoding_matrix, MemberIds, Allocation);
+        logger.info("The rows are reallocated as " + Allocation + ", time taken to get the decoding matrices is " +
+                (System.nanoTime() - CacheTimeStart) / 1000000);
+    }
+    /*
+     * Every request to a worker names the dataset of this master */
+    private HashMap<String, Object> workerQuery() {
+        HashMap<String, Object> queryStringMap = new HashMap<>();
+        if (job.dataset != null) {
+            queryStringMap.put("dataset", job.dataset);
+        }
+        return queryStringMap;
+    }
+
+    /*
+     * Builds the body of the request to the workers, either a binary frame or a URL encoded form with the vectIn key */
+    private static byte[] encodeVect(TypeVectorDouble vect) throws IOException {
+        if (UseBinaryWire) {
+            return vect.serializeBinary();
+        }
+        return CommAPI.formBody("vectIn", CommAPI.stringURLEncode(vect.serialize(",")));
+    }
+
+    /**
+     * Sends the generator matrix and the id to one worker, which generates or maps its coded data from them
+     *
+     * @param dns DNS of the worker
+     * @param id  Id of the worker, its row of the generator matrix
+     * @return Returns a future that completes with true once the worker has answered, or with false if the request
+     * fails
+     */
+    private CompletableFuture<Boolean> sendInit(String dns, int id) {
+        try {
+
+            double[] vectInd = new double[1];
+            vectInd[0] = id;
+
+            double[] vectG = Decoding_matrix.toVect();
+
+            TypeVectorDouble vectConcat = new TypeVectorDouble(1+NumWorkers_initial*RecThreshold);
+            vectConcat.Concate(vectG, vectInd);
+
+            byte[] vect = encodeVect(vectConcat);
+            HashMap<String, Object> queryStringMap = workerQuery();
+            queryStringMap.put("init", 1);
+            return dispatcher.sendPostRequest("http", dns, "/worker", queryStringMap, vect, VectContentType)
+                    .thenApply(vectResp -> {
+                        logger.info("Send the worker id to worker " + id);
+                        return true;
+                    })
+                    .exceptionally(e -> {
+                        logFailure(id, e);
+                        return false;
+                    });
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    /**
+     * Sends the request of one round to one worker. The request sends the input vectors of the round and the position
+     * of the worker in the ring, and the response is stored in the row of the receive buffer of the round that belongs
+     * to the position.
+     *
+     * @param dns     DNS of the worker
+     * @param ind     Position of the worker in the ring
+     * @param payload The serialized input vectors of the round
+     * @param round   The round, with its receive buffer and the collector that tracks its filled rows
+     * @return Returns a future that completes once the response has been handled. Failures are logged and do not
+     * complete the future exceptionally
+     */
+    private CompletableFuture<Void> sendToWorker(String dns, int ind, byte[] payload, RoundState round) {
+        GroupCollector collector = round.collector;
+        // The round object is reused by a later round once this one is finished
+        long iter_num = round.iter_num;
+        // The per worker statistics follow the id of the worker, the receive buffer its position in the ring
+        int id = round.memberIds[ind];
+        try {
+
+            TypeDenseMatrixDouble receiveBuffer = round.xt_receive;
+            int length = round.receiveLength(ind);
+            int rows = length / BatchSize;
+            HashMap<String, Object> queryStringMap = workerQuery();
+            queryStringMap.put("position", ind);
+            if (round.allocation != null) {
+                queryStringMap.put("rowStart", round.allocation.arcStart[ind]);
+                queryStringMap.put("rowCount", rows);
+            }
+            if (BatchSize > 1) {
+                queryStringMap.put("batch", BatchSize);
+            }
+            workerRequests.incrementAndGet();
+            long NetworkTimeStart = System.nanoTime();
+            CompletableFuture<CommResponse> request = dispatcher.sendPostRequest("http", dns, "/worker", queryStringMap, payload, VectContentType);
+            return propagateCancel(request, request
+                    .thenAccept(vectResp -> {
+                        // The time until the response has arrived, including the computation at the worker
+                        long DeserializeTimeStart = System.nanoTime();
+                        long NetworkTime = DeserializeTimeStart - NetworkTimeStart;
+                        networkHistogram.record(NetworkTime);
+                        hedgeDelayHistogram.record(NetworkTime);
+                        networkWorkerHistograms[id].record(NetworkTime);
+                        long WorkerParseTime = vectResp.getLongHeader(CommAPI.WORKER_PARSE_HEADER, -1);
+                        long WorkerComputeTime = vectResp.getLongHeader(CommAPI.WORKER_COMPUTE_HEADER, -1);
+                        long WorkerSerializeTime = vectResp.getLongHeader(CommAPI.WORKER_SERIALIZE_HEADER, -1);
+                        recordWorkerTimes(id, NetworkTime, WorkerParseTime, WorkerComputeTime, WorkerSerializeTime);
+                        throughput.record(id, rows, NetworkTime);
+                        round.runIfCurrent(iter_num, () -> {
+                            round.recordWorkerTimes(ind, NetworkTime, WorkerParseTime, WorkerComputeTime, WorkerSerializeTime);
+                            storeResponse(receiveBuffer, ind, vectResp, length);
+                            deserializeHistogram.record(System.nanoTime() - DeserializeTimeStart);
+                            collector.onNodeReceived(ind);
+                            recoverFailedRows(round);
+                        });
+                    })
+                    .exceptionally(e -> {
+                        round.runIfCurrent(iter_num, () -> {
+                            collector.onNodeFailed(ind);
+                            recoverFailedRows(round);
+                        });
+                        dropIfUnreachable(dns, e);
+                        return logFailure(id, e);
+                    }));
+
+        }
+
+        catch (Exception e) {
+            e.printStackTrace();
+            round.runIfCurrent(iter_num, () -> {
+                collector.onNodeFailed(ind);
+                recoverFailedRows(round);
+            });
+            return CompletableFuture.completedFuture(null);
+        }
+    }
 
+    /*
+     * Stores the product vector of a response in a row of the receive buffer */
+    private static void storeResponse(TypeDenseMatrixDouble receiveBuffer, int row_ind, CommResponse vectResp, int length) {
+        if (vectResp.isBinary()) {
+            receiveBuffer.deserializeBinaryRow(row_ind, vectResp.getBody());
+            return;
+        }
+        TypeVectorDouble finVect = new TypeVectorDouble(length);
+        try {
+            finVect.deserialize(CommAPI.stringURLDecode(vectResp.getBodyAsString()), ",");
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+        if (length == receiveBuffer.num_col()) {
+            receiveBuffer.set_row(row_ind, finVect);
+        } else {
+            // A shorter answer only fills the start of its row
+            TypeVectorDoubleView row = receiveBuffer.sub_row(row_ind, 0, length);
+            for (int i = 0; i < length; i++) {
+                row.set(i, finVect.GetVect()[i]);
+            }
+        }
+    }
+
+    /**
+     * Method for hedging the requests of a round that take longer than the HedgePercentile of the response times so
+     * far. Nothing is hedged until HedgeMinSamples response times have been measured.
+     *
+     * @param round The round whose requests have been sent
+     */
+    private void scheduleHedges(RoundState round) {
+        if (hedgeDelayHistogram.getCount() < HedgeMinSamples) {
+            return;
+        }
+        long delay = hedgeDelayHistogram.getValueAtPercentile(HedgePercentile) - (System.nanoTime() - round.startTime);
+        long iter_num = round.iter_num;
+        round.setHedgeTimer(hedgeTimer.schedule(() -> {
+            try {
+                round.runIfCurrent(iter_num, () -> hedgeLateWorkers(round));
+            } catch (RuntimeException e) {
+                logger.error("Hedging round " + iter_num + " failed: " + e);
+            }
+        }, Math.max(0, delay), TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Method for sending hedged requests for the workers of a round that have not answered yet, see hedgeWorker
+     *
+     * @param round The round
+     */
+    private void hedgeLateWorkers(RoundState round) {
+        for (int late = 0; late < round.numWorkers; late++) {
+            if (!round.collector.isAnswered(late) && !hedgeWorker(round, late)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method for sending hedged requests for the rows of a late or failed worker. The rows of the worker are split into
+     * runs of consecutive groups, and every run is computed by one worker that has answered already and is not among
+     * the workers of these groups, so that replacing the late worker keeps every group decodable. The fastest workers
+     * are asked first, every worker gets at most one hedged request per round.
+     *
+     * @param round The round
+     * @param late  Position of the late worker
+     * @return Returns false if the hedge budget or the hedge rows of the round are used up
+     */
+    private boolean hedgeWorker(RoundState round, int late) {
+        int[] helpers = round.collector.answeredInOrder();
+
+        // The groups of the late worker that no hedged request brings the rows for yet, in the order of its rows
+        List<Integer> groups = new ArrayList<>();
+        for (int group_ind = 0; group_ind < round.numGroups(); group_ind++) {
+            if (round.slotOf(group_ind, late) >= 0 && round.collector.needsRows(group_ind, late)) {
+                groups.add(group_ind);
+            }
+        }
+        groups.sort((a, b) -> Integer.compare(round.groupOffsets[a][round.slotOf(a, late)], round.groupOffsets[b][round.slotOf(b, late)]));
+
+        int helper = -1;
+        List<Integer> run = new ArrayList<>();
+        for (int group_ind : groups) {
+            if (helper >= 0 && !canHelp(round, group_ind, helper)) {
+                if (!sendHedge(round, late, helper, run)) {
+                    return false;
+                }
+                run.clear();
+                helper = -1;
+            }
+            if (helper < 0) {
+                for (int candidate : helpers) {
+                    if (!round.isHedging(round.memberIds[candidate]) && canHelp(round, group_ind, candidate)) {
+                        helper = candidate;
+                        break;
+                    }
                 }
             }
+            if (helper >= 0) {
+                run.add(group_ind);
+            }
+        }
+        return helper < 0 || sendHedge(round, late, helper, run);
+    }
 
-            catch (Exception e) {
-                e.printStackTrace();
+    /*
+     * The rows of a failed worker can only come from hedged requests, which the workers that have answered since the
+     * failure may be able to take. The round fails once a group misses rows that no request can bring any more. */
+    private void recoverFailedRows(RoundState round) {
+        if (HedgeBudget > 0) {
+            for (int failed : round.collector.failedNodes()) {
+                if (!hedgeWorker(round, failed)) {
+                    break;
+                }
+            }
+        }
+        round.collector.checkFailedRows();
+    }
+
+    /*
+     * A worker can compute the rows of a group for a late worker unless the group is already decoded from it */
+    private static boolean canHelp(RoundState round, int group_ind, int helper) {
+        return !ArrayUtils.contains(round.groupIds(group_ind, -1, -1), round.memberIds[helper]);
+    }
+
+    /**
+     * Sends one hedged request, for the rows of a run of consecutive groups of a late worker
+     *
+     * @param round  The round
+     * @param late   Position of the late worker
+     * @param helper Position of the worker that computes the rows instead
+     * @param run    The groups, in the order of the rows of the late worker
+     * @return Returns false if the hedge budget or the hedge rows of the round are used up
+     */
+    private boolean sendHedge(RoundState round, int late, int helper, List<Integer> run) {
+        if (run.isEmpty()) {
+            return true;
+        }
+        if (round.hedgesUsed >= round.hedgeRows || hedgeRequests.get() + 1 > HedgeBudget * workerRequests.get()) {
+            return false;
+        }
+
+        long iter_num = round.iter_num;
+        int hedgeNode = round.numWorkers + round.hedgesUsed;
+        int helperId = round.memberIds[helper];
+        int lateId = round.memberIds[late];
+        round.hedgeIds[round.hedgesUsed++] = helperId;
+        hedgeRequests.incrementAndGet();
+
+        // The groups of the run are consecutive rows of the late worker, which may wrap around the end of the shard
+        int[] groups = new int[run.size()];
+        int[] offsets = new int[run.size()];
+        int rowCount = 0;
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = run.get(i);
+            offsets[i] = rowCount / round.offsetRows();
+            rowCount += round.groupRows(groups[i]);
+        }
+        round.collector.onHedgeSent(hedgeNode, groups);
+        int rowStart = round.groupStart(groups[0]);
+        int length = rowCount * round.batchSize;
+
+        HashMap<String, Object> queryStringMap = workerQuery();
+        queryStringMap.put("rowStart", rowStart);
+        queryStringMap.put("rowCount", rowCount);
+        if (BatchSize > 1) {
+            queryStringMap.put("batch", BatchSize);
+        }
+        long HedgeTimeStart = System.nanoTime();
+        CompletableFuture<CommResponse> request = dispatcher.sendPostRequest("http", round.memberDns[helper], "/worker", queryStringMap, round.payload, VectContentType);
+        round.addHedge(propagateCancel(request, request
+                .thenAccept(vectResp -> {
+                    hedgeHistogram.record(System.nanoTime() - HedgeTimeStart);
+                    // The round object is reused by a later round once this one is finished
+                    int[] used = new int[1];
+                    boolean current = round.runIfCurrent(iter_num, () -> {
+                        storeResponse(round.xt_receive, hedgeNode, vectResp, length);
+                        for (int i = 0; i < groups.length; i++) {
+                            TypeMatrixDouble decodingMatrix = decodingCache.getGroup(Decoding_matrix, round.groupIds(groups[i], late, helperId));
+                            if (round.useHedge(groups[i], late, hedgeNode, offsets[i], decodingMatrix)) {
+                                used[0]++;
+                            }
+                        }
+                        round.collector.onHedgeDone(hedgeNode);
+                        recoverFailedRows(round);
+                    });
+                    if (current) {
+                        logger.info("Hedged worker " + lateId + " in round " + iter_num + " with worker " + helperId +
+                                ", " + used[0] + " of " + groups.length + " groups use its rows");
+                    }
+                })
+                .exceptionally(e -> {
+                    round.runIfCurrent(iter_num, () -> {
+                        round.collector.onHedgeDone(hedgeNode);
+                        recoverFailedRows(round);
+                    });
+                    return logFailure(helperId, e);
+                })));
+        return true;
+    }
+
+    /*
+     * Cancelling the handled future aborts the request to the worker as well */
+    private static CompletableFuture<Void> propagateCancel(CompletableFuture<CommResponse> request, CompletableFuture<Void> handled) {
+        handled.whenComplete((v, e) -> {
+            if (handled.isCancelled()) {
+                request.cancel(true);
             }
-       }
+        });
+        return handled;
+    }
+
+    /*
+     * A worker that refuses connections is gone, so it leaves the ring before its heartbeats time out. If it is still
+     * alive, its next heartbeat registers it again. */
+    private static void dropIfUnreachable(String dns, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (DynamicMembership && cause instanceof ConnectException) {
+            membership.deregister(dns);
+        }
+    }
+
+    private static Void logFailure(int id, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (!(cause instanceof CancellationException)) {
+            logger.error("Request to worker " + id + " failed: " + cause.toString());
+        }
+        return null;
     }
 }
@@ -0,0 +1,216 @@
+package mc.server.servlets;
+
+import mc.server.types.TypeMatrixDouble;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bounded cache of the decoding matrices of every worker configuration. <P> A set of decoding matrices only depends on
+ * the generator matrix and on the ids of the workers in the ring, so it is computed once per configuration, in the
+ * background, and an elastic transition to a configuration that has been prefetched costs no inversion. The least
+ * recently used configuration is evicted when the cache is full. <P> When the rows are allocated in proportion to the
+ * speed of the workers, the segments of an allocation are decoded from any RecThreshold workers of the ring, so the
+ * inverse of every generator submatrix is cached on its own, and a new allocation only inverts the submatrices of the
+ * segments that no earlier allocation had.
+ *
+ * @author Yaoqing Yang
+ */
+
+class DecodingMatrixCache {
+
+    // Maximum number of generator submatrices whose inverse is kept for the segments of the allocations and the groups
+    // completed with hedged requests
+    private static final int SegmentCapacity = 4096;
+
+    private final int recThreshold;
+    private final Map<Key, CompletableFuture<TypeMatrixDouble[]>> entries;
+    private final Map<Key, TypeMatrixDouble> segmentEntries;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "decoding-matrix-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for class DecodingMatrixCache.
+     *
+     * @param recThreshold Number of workers needed to decode one group
+     * @param capacity     Maximum number of configurations kept in the cache
+     */
+    DecodingMatrixCache(int recThreshold, int capacity) {
+        this.recThreshold = recThreshold;
+        this.entries = new LinkedHashMap<Key, CompletableFuture<TypeMatrixDouble[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<TypeMatrixDouble[]>> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.segmentEntries = new LinkedHashMap<Key, TypeMatrixDouble>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TypeMatrixDouble> eldest) {
+                return size() > SegmentCapacity;
+            }
+        };
+    }
+
+    /**
+     * Starts computing the decoding matrices of a configuration in the background, unless they are already cached
+     *
+     * @param generator The generator matrix
+     * @param memberIds The ids of the workers in ring order
+     */
+    void prefetch(TypeMatrixDouble generator, int[] memberIds) {
+        lookup(generator, memberIds);
+    }
+
+    /**
+     * Returns the decoding matrices of a configuration, waiting for them if they are still being computed
+     *
+     * @param generator The generator matrix
+     * @param memberIds The ids of the workers in ring order
+     * @return Returns one decoding matrix per group. The matrices are shared and must not be modified
+     */
+    TypeMatrixDouble[] get(TypeMatrixDouble generator, int[] memberIds) {
+        return lookup(generator, memberIds).join();
+    }
+
+    /**
+     * Returns the decoding matrices of the segments of an allocation. The inverses that are not cached yet are computed
+     * by the calling thread.
+     *
+     * @param generator  The generator matrix
+     * @param memberIds  The ids of the workers in ring order
+     * @param allocation The rows of every worker, with the workers every segment is decoded from
+     * @return Returns one decoding matrix per segment. The matrices are shared and must not be modified
+     */
+    synchronized TypeMatrixDouble[] get(TypeMatrixDouble generator, int[] memberIds, RowAllocation allocation) {
+        double[] generatorVect = generator.toVect();
+        TypeMatrixDouble[] Decoding_matrix_collections = new TypeMatrixDouble[allocation.numSegments()];
+
+        for (int s = 0; s < allocation.numSegments(); s++) {
+            int[] nodes = allocation.segmentNodes[s];
+            int[] groupIds = new int[nodes.length];
+            for (int j = 0; j < nodes.length; j++) {
+                groupIds[j] = memberIds[nodes[j]];
+            }
+            Decoding_matrix_collections[s] = inverse(generator, generatorVect, groupIds);
+        }
+
+        return Decoding_matrix_collections;
+    }
+
+    /**
+     * Returns the decoding matrix of one group, e.g. of a group that is completed with the answer of a hedged request.
+     * The inverse is computed by the calling thread unless it is cached.
+     *
+     * @param generator The generator matrix
+     * @param groupIds  The ids of the RecThreshold workers the group is decoded from, in the order of its rows
+     * @return Returns the decoding matrix. The matrix is shared and must not be modified
+     */
+    synchronized TypeMatrixDouble getGroup(TypeMatrixDouble generator, int[] groupIds) {
+        return inverse(generator, generator.toVect(), groupIds.clone());
+    }
+
+    private TypeMatrixDouble inverse(TypeMatrixDouble generator, double[] generatorVect, int[] groupIds) {
+        Key key = new Key(generatorVect, groupIds);
+        TypeMatrixDouble decodingMatrix = this.segmentEntries.get(key);
+        if (decodingMatrix == null) {
+            TypeMatrixDouble Generator_matrix = new TypeMatrixDouble(this.recThreshold, this.recThreshold);
+            for (int j = 0; j < this.recThreshold; j++) {
+                Generator_matrix.set_row(j, generator, groupIds[j]);
+            }
+            decodingMatrix = Generator_matrix.matInv();
+            this.segmentEntries.put(key, decodingMatrix);
+        }
+        return decodingMatrix;
+    }
+
+    private synchronized CompletableFuture<TypeMatrixDouble[]> lookup(TypeMatrixDouble generator, int[] memberIds) {
+        int[] members = memberIds.clone();
+        Key key = new Key(generator.toVect(), members);
+        CompletableFuture<TypeMatrixDouble[]> entry = this.entries.get(key);
+        if (entry == null || entry.isCompletedExceptionally()) {
+            entry = CompletableFuture.supplyAsync(() -> select_encoding_matrix(generator, members, this.recThreshold), this.executor);
+            this.entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the ids 0 to numWorkers - 1, the ring of the first numWorkers workers
+     */
+    static int[] firstWorkers(int numWorkers) {
+        int[] memberIds = new int[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            memberIds[i] = i;
+        }
+        return memberIds;
+    }
+
+    /**
+     * Method for computing the decoding matrices of a configuration. The worker at position p of the ring computes the
+     * sub-rows that the worker p computes when the ids are 0 to numWorkers - 1, but its coded data comes from the row
+     * memberIds[p] of the generator matrix. The generator submatrix of group i is therefore made of the rows
+     * memberIds[(i + 1 + j) % numWorkers] of the generator matrix, following the cyclic shift method, and its inverse
+     * is the decoding matrix of the group.
+     *
+     * @param generator    The generator matrix
+     * @param memberIds    The ids of the workers in ring order
+     * @param recThreshold Number of workers needed to decode one group
+     * @return Returns one decoding matrix per group
+     */
+    static TypeMatrixDouble[] select_encoding_matrix(TypeMatrixDouble generator, int[] memberIds, int recThreshold) {
+
+        int numWorkers = memberIds.length;
+
+        TypeMatrixDouble[] Decoding_matrix_collections = new TypeMatrixDouble[numWorkers];
+
+        for (int i=0; i<numWorkers; i++) {
+
+            TypeMatrixDouble Generator_matrix = new TypeMatrixDouble(recThreshold, recThreshold);
+
+            int start_ind = i+1;
+            for (int j=0; j<recThreshold; j++) {
+
+                // The ind is calculated using the cyclic shift method
+                int ind = (start_ind + j)%numWorkers;
+                Generator_matrix.set_row(j, generator, memberIds[ind]);
+
+            }
+
+            Decoding_matrix_collections[i] = Generator_matrix.matInv();
+
+        }
+
+        return Decoding_matrix_collections;
+    }
+
+    private static final class Key {
+        private final double[] generator;
+        private final int[] memberIds;
+
+        Key(double[] generator, int[] memberIds) {
+            this.generator = generator;
+            this.memberIds = memberIds;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Arrays.equals(this.memberIds, other.memberIds) && Arrays.equals(this.generator, other.generator);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(this.generator) + Arrays.hashCode(this.memberIds);
+        }
+    }
+}
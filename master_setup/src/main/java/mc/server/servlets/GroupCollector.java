@@ -0,0 +1,249 @@
+package mc.server.servlets;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Tracks which workers have filled their rows of the receive buffer during one round. <P> With the cyclic shift
+ * method, group group_ind is decoded from the rows sent by the RecThreshold workers (1 + group_ind + j) % NumWorkers.
+ * A group is handed out for decoding as soon as all of its workers have answered, so that decoding overlaps with
+ * waiting for the slower workers instead of starting after the slowest one. When the rows are allocated in proportion
+ * to the speed of the workers, the groups are the segments of the RowAllocation. The rows of a late worker can also
+ * come from a hedged request, which completes the groups the late worker has not filled yet. <P> A group is only
+ * handed out once all of its rows are filled. The rows of a worker whose request has failed can only come from hedged
+ * requests, so the round fails once a group misses them and no hedged request can bring them any more, see
+ * GroupCollector#checkFailedRows.
+ *
+ * @author Yaoqing Yang
+ */
+
+class GroupCollector {
+
+    // For every node_id, the groups it has rows of, and for every group, the node_ids it is decoded from
+    private final int[][] groupsOfNode;
+    private final int[][] nodesOfGroup;
+    private final int numWorkers;
+    // Whether the rows of a failed worker can come from hedged requests
+    private final boolean hedging;
+
+    // For every group, the node_ids that have filled their rows
+    private final BitSet[] filled;
+    private final int[] missing;
+    // For every group, the number of hedged requests in flight that have rows of it, and the groups of every hedged
+    // request in flight by the row of the receive buffer its answer goes to
+    private final int[] pendingHedges;
+    private final Map<Integer, int[]> openHedges = new HashMap<>();
+    private final BitSet answered;
+    private final BitSet failed;
+    // The node_ids that have answered without failing, in the order of their answers
+    private final int[] answerOrder;
+    private int answerCount;
+    private final BlockingQueue<Integer> readyGroups = new LinkedBlockingQueue<>();
+    // Handed out instead of a group once the round has failed
+    private static final int Failed = -1;
+    private volatile String failure;
+
+    /**
+     * Constructor for class GroupCollector.
+     *
+     * @param numWorkers   The number of workers
+     * @param nodesOfGroup For every group, the node_ids it is decoded from
+     * @param hedging      Whether the rows of a failed worker can come from hedged requests
+     */
+    GroupCollector(int numWorkers, int[][] nodesOfGroup, boolean hedging) {
+        this.numWorkers = numWorkers;
+        this.hedging = hedging;
+        int numGroups = nodesOfGroup.length;
+        int[] groupCount = new int[numWorkers];
+        for (int[] nodes : nodesOfGroup) {
+            for (int node_id : nodes) {
+                groupCount[node_id]++;
+            }
+        }
+        this.groupsOfNode = new int[numWorkers][];
+        for (int node_id = 0; node_id < numWorkers; node_id++) {
+            this.groupsOfNode[node_id] = new int[groupCount[node_id]];
+            groupCount[node_id] = 0;
+        }
+        this.nodesOfGroup = nodesOfGroup.clone();
+        this.filled = new BitSet[numGroups];
+        this.missing = new int[numGroups];
+        this.pendingHedges = new int[numGroups];
+        for (int group_ind = 0; group_ind < numGroups; group_ind++) {
+            this.filled[group_ind] = new BitSet(numWorkers);
+            this.missing[group_ind] = nodesOfGroup[group_ind].length;
+            for (int node_id : nodesOfGroup[group_ind]) {
+                this.groupsOfNode[node_id][groupCount[node_id]++] = group_ind;
+            }
+        }
+        this.answered = new BitSet(numWorkers);
+        this.failed = new BitSet(numWorkers);
+        this.answerOrder = new int[numWorkers];
+    }
+
+    /**
+     * Records that a worker has filled its row of the receive buffer
+     *
+     * @param node_id Index of the worker
+     */
+    synchronized void onNodeReceived(int node_id) {
+        if (this.answered.get(node_id)) {
+            return;
+        }
+        this.answered.set(node_id);
+        this.answerOrder[this.answerCount++] = node_id;
+
+        for (int group_ind : this.groupsOfNode[node_id]) {
+            if (!this.filled[group_ind].get(node_id)) {
+                fill(group_ind, node_id);
+            }
+        }
+    }
+
+    /**
+     * Records that a hedged request has been sent. Until it is done, the groups of the request wait for its answer
+     * instead of failing the round when a worker of theirs has failed.
+     *
+     * @param hedge_node Row of the receive buffer the answer of the hedged request goes to
+     * @param groups     The groups the hedged request has rows of
+     */
+    synchronized void onHedgeSent(int hedge_node, int[] groups) {
+        this.openHedges.put(hedge_node, groups);
+        for (int group_ind : groups) {
+            this.pendingHedges[group_ind]++;
+        }
+    }
+
+    /**
+     * Records that a hedged request is done, after its answer has been used or after it has failed. A request that is
+     * done already is ignored.
+     *
+     * @param hedge_node Row of the receive buffer the answer of the hedged request goes to
+     */
+    synchronized void onHedgeDone(int hedge_node) {
+        int[] groups = this.openHedges.remove(hedge_node);
+        if (groups == null) {
+            return;
+        }
+        for (int group_ind : groups) {
+            this.pendingHedges[group_ind]--;
+        }
+    }
+
+    /**
+     * Method for checking whether a hedged request has to bring the rows of a worker for a group: the worker has not
+     * filled them, and no hedged request for them is in flight
+     *
+     * @param group_ind Index of the group
+     * @param node_id   Index of the worker
+     */
+    synchronized boolean needsRows(int group_ind, int node_id) {
+        return !this.filled[group_ind].get(node_id) && this.pendingHedges[group_ind] == 0;
+    }
+
+    /**
+     * Records that the answer of a hedged request has the rows of a late worker for a group. The group uses them only
+     * if the late worker has not filled its rows of the group yet.
+     *
+     * @param group_ind  Index of the group
+     * @param node_id    Index of the late worker
+     * @param substitute Switches the group to the hedged rows, runs before the group can be handed out
+     * @return Returns true if the group uses the hedged rows
+     */
+    synchronized boolean onHedgeReceived(int group_ind, int node_id, Runnable substitute) {
+        if (this.filled[group_ind].get(node_id)) {
+            return false;
+        }
+        substitute.run();
+        fill(group_ind, node_id);
+        return true;
+    }
+
+    /**
+     * Method for the workers that have answered without failing, fastest first
+     */
+    synchronized int[] answeredInOrder() {
+        return Arrays.copyOf(this.answerOrder, this.answerCount);
+    }
+
+    /**
+     * Method for checking whether a worker has answered or failed
+     *
+     * @param node_id Index of the worker
+     */
+    synchronized boolean isAnswered(int node_id) {
+        return this.answered.get(node_id);
+    }
+
+    /**
+     * Method for the workers whose requests have failed
+     */
+    synchronized int[] failedNodes() {
+        return this.failed.stream().toArray();
+    }
+
+    /**
+     * Records that the request to a worker has failed. The groups of the worker that it has not filled yet can only
+     * be completed by hedged requests.
+     *
+     * @param node_id Index of the worker
+     */
+    synchronized void onNodeFailed(int node_id) {
+        if (this.answered.get(node_id)) {
+            return;
+        }
+        this.answered.set(node_id);
+        this.failed.set(node_id);
+    }
+
+    /**
+     * Fails the round once a group misses the rows of a failed worker that no hedged request can bring any more: no
+     * hedged request for the group is in flight, and either the round is not hedged or every worker has answered, so
+     * no worker can answer a new hedged request. To be called after the hedged requests for the failed workers have
+     * been sent.
+     */
+    synchronized void checkFailedRows() {
+        if (this.failure != null || this.failed.isEmpty() || (this.hedging && this.answered.cardinality() < this.numWorkers)) {
+            return;
+        }
+        for (int group_ind = 0; group_ind < this.nodesOfGroup.length; group_ind++) {
+            if (this.pendingHedges[group_ind] > 0) {
+                continue;
+            }
+            for (int node_id : this.nodesOfGroup[group_ind]) {
+                if (this.failed.get(node_id) && !this.filled[group_ind].get(node_id)) {
+                    this.failure = "Group " + group_ind + " misses the rows of the failed worker at position " + node_id;
+                    this.readyGroups.add(Failed);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks until the next group has all of its rows
+     *
+     * @return Returns the index of a group that can be decoded
+     * @throws InterruptedException  if interrupted while waiting
+     * @throws IllegalStateException if the round has failed, a group has lost the rows of a failed worker
+     */
+    int takeReadyGroup() throws InterruptedException {
+        int group_ind = this.readyGroups.take();
+        if (group_ind == Failed) {
+            throw new IllegalStateException(this.failure);
+        }
+        return group_ind;
+    }
+
+    private void fill(int group_ind, int node_id) {
+        this.filled[group_ind].set(node_id);
+        this.missing[group_ind] -= 1;
+        if (this.missing[group_ind] == 0) {
+            this.readyGroups.add(group_ind);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package mc.server.servlets;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the jobs of the master over the shared workers. <P> Up to maxJobs jobs run at the same time, the others wait in
+ * the order they were submitted. The running jobs share a number of round permits: a job holds one permit for every
+ * round it has in flight, and the permits are handed out in the order the jobs ask for them, so that the jobs take
+ * turns round by round and a long job cannot starve a short one. A job that cannot get a permit first finishes the
+ * rounds it has in flight, see AppMaster, so the jobs cannot block each other while holding permits.
+ *
+ * @author Yaoqing Yang
+ */
+
+class JobScheduler {
+
+    final private static Logger logger = LogManager.getLogger(JobScheduler.class);
+
+    private final ExecutorService runner;
+    private final Semaphore rounds;
+    // Number of ended jobs whose status is kept
+    private final int retainedJobs;
+    private final AtomicLong nextId = new AtomicLong(1);
+    // The jobs in the order they were submitted
+    private final Map<String, MasterJob> jobs = new LinkedHashMap<>();
+
+    /**
+     * Constructor for class JobScheduler.
+     *
+     * @param maxJobs      Number of jobs that run at the same time
+     * @param roundPermits Number of rounds all running jobs together have in flight
+     * @param retainedJobs Number of ended jobs whose status is kept
+     */
+    JobScheduler(int maxJobs, int roundPermits, int retainedJobs) {
+        this.runner = new ThreadPoolExecutor(maxJobs, maxJobs, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "master-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rounds = new Semaphore(roundPermits, true);
+        this.retainedJobs = retainedJobs;
+    }
+
+    /**
+     * Returns a new job id
+     */
+    String nextId() {
+        return Long.toString(this.nextId.getAndIncrement());
+    }
+
+    /**
+     * Method for submitting a job, it runs as soon as fewer than maxJobs jobs are running
+     *
+     * @param job The job
+     * @return Returns the job
+     */
+    MasterJob submit(MasterJob job) {
+        synchronized (this.jobs) {
+            this.jobs.put(job.id, job);
+            forgetEndedJobs();
+        }
+        job.setFuture(this.runner.submit(() -> run(job)));
+        logger.info("Submitted job " + job.id + " with " + job.iterations + " rounds");
+        return job;
+    }
+
+    /**
+     * Returns the job with the given id, or null if there is none
+     */
+    MasterJob get(String id) {
+        synchronized (this.jobs) {
+            return this.jobs.get(id);
+        }
+    }
+
+    /**
+     * Returns all jobs whose status is kept, in the order they were submitted
+     */
+    List<MasterJob> list() {
+        synchronized (this.jobs) {
+            return new ArrayList<>(this.jobs.values());
+        }
+    }
+
+    /**
+     * Method for getting a round permit without waiting behind the jobs that already wait for one
+     *
+     * @return Returns true if the permit was granted
+     * @throws InterruptedException if the job is cancelled
+     */
+    boolean tryAcquireRound() throws InterruptedException {
+        return this.rounds.tryAcquire(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Method for waiting for a round permit, only called by a job that has no round in flight
+     *
+     * @throws InterruptedException if the job is cancelled
+     */
+    void acquireRound() throws InterruptedException {
+        this.rounds.acquire();
+    }
+
+    /**
+     * Method for returning the permit of a round that is finished
+     */
+    void releaseRound() {
+        this.rounds.release();
+    }
+
+    private void run(MasterJob job) {
+        job.started();
+        if (job.getState() != MasterJob.State.RUNNING) {
+            return;
+        }
+        logger.info("Job " + job.id + " starts");
+        Throwable failure = null;
+        try {
+            new AppMaster(job).runJob();
+        } catch (InterruptedException e) {
+            // The job was cancelled
+        } catch (Exception e) {
+            logger.error("Job " + job.id + " failed: " + e);
+            failure = e;
+        }
+        job.ended(failure);
+        logger.info("Job " + job.id + " ends as " + job.getState());
+    }
+
+    /*
+     * Only the latest retainedJobs ended jobs are kept */
+    private void forgetEndedJobs() {
+        int ended = 0;
+        for (MasterJob job : this.jobs.values()) {
+            if (isEnded(job)) {
+                ended++;
+            }
+        }
+        Iterator<MasterJob> iterator = this.jobs.values().iterator();
+        while (ended > this.retainedJobs && iterator.hasNext()) {
+            if (isEnded(iterator.next())) {
+                iterator.remove();
+                ended--;
+            }
+        }
+    }
+
+    private static boolean isEnded(MasterJob job) {
+        MasterJob.State state = job.getState();
+        return state != MasterJob.State.QUEUED && state != MasterJob.State.RUNNING;
+    }
+}
@@ -0,0 +1,270 @@
+package mc.server.servlets;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * One run of the master, i.e. a number of rounds of coded matrix-vector products over the workers, submitted through
+ * ServletMaster and run by the JobScheduler. <P> The parameters of a job default to the system properties a single run
+ * of the master was configured with before. The job keeps its state and the statistics of its rounds, so that the
+ * client can poll them while the job runs, and can be cancelled at any time.
+ *
+ * @author Yaoqing Yang
+ */
+
+class MasterJob {
+
+    enum State { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    final private static long DefaultIterations = Long.getLong("mc.iterations", 1000);
+    final private static long DefaultWarmupIterations = Long.getLong("mc.warmupIterations", 100);
+    final private static double DefaultChangeProbability = Double.parseDouble(System.getProperty("mc.changeProbability", "0.02"));
+    final private static String DefaultDataset = System.getProperty("mc.dataset");
+    // Directory of the result files, every job submitted through the API writes into its own sub-directory
+    final static String ResultsDir = System.getProperty("mc.resultsDir", "/home/ubuntu");
+    // Number of the latest rounds whose statistics are kept for the status of the job
+    final private static int RecentRounds = 100;
+
+    final String id;
+    final long iterations;
+    final long warmupIterations;
+    // Probability that the number of machines changes before an iteration
+    final double changeProbability;
+    // The dataset of the job on the workers, null for the default dataset
+    final String dataset;
+    // The id the workers give to the dataset of the requests without a dataset parameter
+    final static String DefaultDatasetId = "default";
+    final String resultsDir;
+
+    private volatile State state = State.QUEUED;
+    private volatile String failure;
+    private volatile Future<?> future;
+    private final long submitTime = System.currentTimeMillis();
+    private long startTime = -1;
+    private long endTime = -1;
+    private long completedRounds;
+    // The rounds that could not be decoded because a worker failed, and why the latest of them failed
+    private long failedRounds;
+    private String roundFailure;
+    private long timedRounds;
+    private long timedSum;
+    private double maxDecodingError;
+    // Per round the iteration, the number of workers, the milliseconds and the decoding error
+    private final Deque<double[]> recent = new ArrayDeque<>(RecentRounds);
+
+    /**
+     * Constructor for class MasterJob.
+     *
+     * @param id                The id of the job
+     * @param iterations        Number of rounds
+     * @param warmupIterations  Number of rounds at the start that are not timed
+     * @param changeProbability Probability that the number of machines changes before a round
+     * @param dataset           The dataset of the job on the workers, or null for the default dataset
+     * @param resultsDir        Directory of the result files of the job
+     */
+    MasterJob(String id, long iterations, long warmupIterations, double changeProbability, String dataset, String resultsDir) {
+        if (iterations < 1 || warmupIterations < 0 || warmupIterations >= iterations) {
+            throw new IllegalArgumentException("A job needs at least one round and fewer warmup rounds than rounds!");
+        }
+        if (changeProbability < 0 || changeProbability > 1) {
+            throw new IllegalArgumentException("The change probability " + changeProbability + " is not between 0 and 1!");
+        }
+        if (dataset != null && !dataset.matches("[A-Za-z0-9_-]{1,64}")) {
+            throw new IllegalArgumentException("The dataset id " + dataset + " is not 1 to 64 letters, digits, _ or -!");
+        }
+        this.id = id;
+        this.iterations = iterations;
+        this.warmupIterations = warmupIterations;
+        this.changeProbability = changeProbability;
+        this.dataset = dataset;
+        this.resultsDir = resultsDir;
+    }
+
+    /**
+     * Method for the job that the startMaster request runs, configured by the system properties alone
+     *
+     * @param id The id of the job
+     * @return Returns the job, which writes its results into the results directory itself
+     */
+    static MasterJob fromProperties(String id) {
+        return new MasterJob(id, DefaultIterations, DefaultWarmupIterations, DefaultChangeProbability, DefaultDataset, ResultsDir);
+    }
+
+    /**
+     * Method for a job with the parameters of a submit request, the iterations, warmupIterations, changeProbability and
+     * dataset query parameters. Missing parameters take the values of the system properties.
+     *
+     * @param id       The id of the job
+     * @param paramMap The query parameters of the request
+     * @return Returns the job, which writes its results into the sub-directory job_<id> of the results directory
+     */
+    static MasterJob fromRequest(String id, Map<String, String[]> paramMap) {
+        long iterations = paramMap.containsKey("iterations") ? Long.parseLong(paramMap.get("iterations")[0]) : DefaultIterations;
+        long warmupIterations = paramMap.containsKey("warmupIterations") ? Long.parseLong(paramMap.get("warmupIterations")[0])
+                : Math.min(DefaultWarmupIterations, iterations - 1);
+        double changeProbability = paramMap.containsKey("changeProbability")
+                ? Double.parseDouble(paramMap.get("changeProbability")[0]) : DefaultChangeProbability;
+        String dataset = paramMap.containsKey("dataset") ? paramMap.get("dataset")[0] : DefaultDataset;
+        return new MasterJob(id, iterations, warmupIterations, changeProbability, dataset, ResultsDir + "/job_" + id);
+    }
+
+    /**
+     * Returns the id of the dataset of the job on the workers
+     */
+    String datasetId() {
+        return this.dataset == null ? DefaultDatasetId : this.dataset;
+    }
+
+    State getState() {
+        return this.state;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+        if (this.state == State.CANCELLED) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Method for waiting until the job has ended, its state tells how
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitEnd() throws InterruptedException {
+        try {
+            this.future.get();
+        } catch (ExecutionException | CancellationException e) {
+            // The job records its failure itself
+        }
+    }
+
+    /**
+     * Returns true once the job has been cancelled, the job stops before its next round
+     */
+    boolean isCancelled() {
+        return this.state == State.CANCELLED;
+    }
+
+    /**
+     * Method for cancelling the job. A queued job does not start, a running job stops before its next round and
+     * aborts the requests of the rounds it has in flight.
+     *
+     * @return Returns false if the job had already ended
+     */
+    synchronized boolean cancel() {
+        if (this.state != State.QUEUED && this.state != State.RUNNING) {
+            return false;
+        }
+        this.state = State.CANCELLED;
+        this.endTime = System.currentTimeMillis();
+        Future<?> future = this.future;
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    /*
+     * The transitions of a job that runs, a cancelled job keeps its state */
+    synchronized void started() {
+        if (this.state == State.QUEUED) {
+            this.state = State.RUNNING;
+            this.startTime = System.currentTimeMillis();
+        }
+    }
+
+    synchronized void ended(Throwable e) {
+        if (this.state != State.RUNNING) {
+            return;
+        }
+        if (e != null) {
+            this.state = State.FAILED;
+            this.failure = e.toString();
+        } else {
+            this.state = State.DONE;
+        }
+        this.endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Method for recording the statistics of a decoded round
+     *
+     * @param iter_num       The iteration of the round
+     * @param numWorkers     The number of workers of the round
+     * @param timeSpent      Milliseconds from sending the round to the end of decoding it
+     * @param decodingError  The maximum relative decoding error of the round
+     */
+    synchronized void recordRound(long iter_num, int numWorkers, long timeSpent, double decodingError) {
+        this.completedRounds++;
+        if (iter_num > this.warmupIterations) {
+            this.timedRounds++;
+            this.timedSum += timeSpent;
+        }
+        this.maxDecodingError = Math.max(this.maxDecodingError, decodingError);
+        if (this.recent.size() == RecentRounds) {
+            this.recent.pollFirst();
+        }
+        this.recent.addLast(new double[]{iter_num, numWorkers, timeSpent, decodingError});
+    }
+
+    /**
+     * Method for recording a round that could not be decoded. The job goes on with its next round.
+     *
+     * @param iter_num The iteration of the round
+     * @param reason   Why the round could not be decoded
+     */
+    synchronized void recordFailedRound(long iter_num, String reason) {
+        this.failedRounds++;
+        this.roundFailure = "Round " + iter_num + ": " + reason;
+    }
+
+    /**
+     * Method for the state and the statistics of the job
+     *
+     * @param withRounds True to add the statistics of the latest rounds
+     * @return Returns the status as a JSON object
+     */
+    synchronized JSONObject toJson(boolean withRounds) {
+        JSONObject status = new JSONObject();
+        status.put("id", this.id);
+        status.put("state", this.state.name());
+        status.put("iterations", this.iterations);
+        status.put("warmupIterations", this.warmupIterations);
+        status.put("changeProbability", this.changeProbability);
+        status.put("dataset", this.dataset == null ? JSONObject.NULL : this.dataset);
+        status.put("submitTime", this.submitTime);
+        status.put("startTime", this.startTime);
+        status.put("endTime", this.endTime);
+        status.put("completedRounds", this.completedRounds);
+        status.put("failedRounds", this.failedRounds);
+        if (this.roundFailure != null) {
+            status.put("roundFailure", this.roundFailure);
+        }
+        status.put("averageMs", this.timedRounds == 0 ? JSONObject.NULL : (double) this.timedSum / this.timedRounds);
+        status.put("maxDecodingError", this.maxDecodingError);
+        if (this.failure != null) {
+            status.put("failure", this.failure);
+        }
+        if (withRounds) {
+            JSONArray rounds = new JSONArray();
+            for (double[] round : this.recent) {
+                JSONObject stats = new JSONObject();
+                stats.put("round", (long) round[0]);
+                stats.put("numWorkers", (int) round[1]);
+                stats.put("ms", (long) round[2]);
+                stats.put("decodingError", round[3]);
+                rounds.put(stats);
+            }
+            status.put("rounds", rounds);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,178 @@
+package mc.server.servlets;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live view of the workers that have registered with the master. <P> A worker registers with its first heartbeat and
+ * stays a member as long as its heartbeats arrive within the timeout, or until it deregisters on shutdown. Every member
+ * gets an id between 0 and maxWorkers - 1, which selects its row of the generator matrix. A worker of the static DNS
+ * list gets the index of its address there, these ids are reserved for it, so that it rejoins with its own id. Any
+ * other worker gets the id it had before if it is free, otherwise the lowest free id after the static DNS list. A
+ * worker that comes back after it has expired is a new member, which has to be initialized again before it is used,
+ * unless its heartbeats report that it has restored the dataset from its checkpoint, see Member#holds.
+ *
+ * @author Yaoqing Yang
+ */
+
+class Membership {
+
+    /**
+     * One registration of a worker
+     */
+    static final class Member {
+        final String address;
+        final int id;
+        volatile long lastSeen;
+        // The initialized datasets the latest heartbeat reported as id:workerNum:fingerprint, separated by commas
+        volatile String datasets;
+        // The datasets for which the worker has received the generator matrix and its id
+        private final Set<String> initialized = ConcurrentHashMap.newKeySet();
+
+        private Member(String address, int id, long lastSeen) {
+            this.address = address;
+            this.id = id;
+            this.lastSeen = lastSeen;
+        }
+
+        /**
+         * Returns true once the worker has received the generator matrix and its id for the dataset
+         */
+        boolean isInitialized(String dataset) {
+            return this.initialized.contains(dataset);
+        }
+
+        void setInitialized(String dataset) {
+            this.initialized.add(dataset);
+        }
+
+        /**
+         * Method for checking whether the worker reports the dataset as initialized with its id and the given generator
+         * matrix, e.g. after it has restored the dataset from its checkpoint
+         *
+         * @param dataset     The id of the dataset
+         * @param fingerprint The fingerprint of the generator matrix, see TypeMatrixDouble#fingerprint
+         * @return Returns true if the latest heartbeat reported the dataset with the id of this member and the fingerprint
+         */
+        boolean holds(String dataset, long fingerprint) {
+            String datasets = this.datasets;
+            if (datasets == null) {
+                return false;
+            }
+            String expected = dataset + ":" + this.id + ":" + fingerprint;
+            for (String reported : datasets.split(",")) {
+                if (reported.equals(expected)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final int maxWorkers;
+    private final long timeoutMillis;
+    private final List<String> staticDns;
+    private final Map<String, Member> members = new HashMap<>();
+    private final Map<String, Integer> lastIds = new HashMap<>();
+
+    /**
+     * Constructor for class Membership.
+     *
+     * @param maxWorkers    Number of rows of the generator matrix, which bounds the ids
+     * @param timeoutMillis A member expires when no heartbeat has arrived for this many milliseconds
+     * @param staticDns     The static DNS list, whose order fixes the ids of the workers in it
+     */
+    Membership(int maxWorkers, long timeoutMillis, List<String> staticDns) {
+        this.maxWorkers = maxWorkers;
+        this.timeoutMillis = timeoutMillis;
+        this.staticDns = staticDns;
+    }
+
+    /**
+     * Method for handling the heartbeat of a worker, which registers it if it is not a member
+     *
+     * @param address  The host:port the master reaches the worker at
+     * @param datasets The initialized datasets the worker reports, see Member#holds, or null
+     * @return Returns the id of the worker, or -1 if all ids are taken
+     */
+    synchronized int heartbeat(String address, String datasets) {
+        long now = System.currentTimeMillis();
+        expire(now);
+
+        Member member = this.members.get(address);
+        if (member != null) {
+            member.lastSeen = now;
+            member.datasets = datasets;
+            return member.id;
+        }
+
+        int id = assignId(address);
+        if (id < 0) {
+            return -1;
+        }
+        member = new Member(address, id, now);
+        member.datasets = datasets;
+        this.members.put(address, member);
+        this.lastIds.put(address, id);
+        return id;
+    }
+
+    /**
+     * Method for removing a worker that shuts down
+     *
+     * @param address The host:port the worker registered with
+     */
+    synchronized void deregister(String address) {
+        this.members.remove(address);
+    }
+
+    /**
+     * Method for the live members, the members whose last heartbeat is within the timeout
+     *
+     * @return Returns the live members ordered by id
+     */
+    synchronized List<Member> live() {
+        expire(System.currentTimeMillis());
+        List<Member> live = new ArrayList<>(this.members.values());
+        live.sort(Comparator.comparingInt(member -> member.id));
+        return live;
+    }
+
+    private void expire(long now) {
+        Iterator<Member> iterator = this.members.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().lastSeen > this.timeoutMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private int assignId(String address) {
+        int reserved = Math.min(this.staticDns.size(), this.maxWorkers);
+        int staticId = this.staticDns.indexOf(address);
+        if (staticId >= 0 && staticId < reserved) {
+            return staticId;
+        }
+
+        boolean[] taken = new boolean[this.maxWorkers];
+        for (Member member : this.members.values()) {
+            taken[member.id] = true;
+        }
+        Integer lastId = this.lastIds.get(address);
+        if (lastId != null && lastId >= reserved && !taken[lastId]) {
+            return lastId;
+        }
+        for (int id = reserved; id < this.maxWorkers; id++) {
+            if (!taken[id]) {
+                return id;
+            }
+        }
+        return -1;
+    }
+}
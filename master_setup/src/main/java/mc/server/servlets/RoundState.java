@@ -0,0 +1,347 @@
+package mc.server.servlets;
+
+import mc.server.types.DecodingEngine;
+import mc.server.types.SegmentDecodingEngine;
+import mc.server.types.TypeDenseMatrixDouble;
+import mc.server.types.TypeMatrixDouble;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * Holds everything that belongs to one round while it is in flight. <P> When several rounds are in flight, every round
+ * needs its own receive buffer and decoding output, and has to remember the number of workers it was sent with, so
+ * that a round is still decoded with its own configuration after a later round has changed it. The buffers are
+ * reused by a later round with the same number of workers once this round is finished. When the rows are allocated in
+ * proportion to the speed of the workers, every round also remembers its RowAllocation, and its groups are the
+ * segments of the allocation. <P> A group is decoded from the rows of the receive buffer and the sub-rows in them that
+ * the round keeps for it. When a request is hedged, the answer of the hedged request goes to one of the hedgeRows
+ * further rows of the receive buffer, and the groups that are completed with it read the late worker's rows from there,
+ * with the decoding matrix of the worker that answered instead.
+ *
+ * @author Yaoqing Yang
+ */
+
+class RoundState {
+
+    final int numWorkers;
+    final int elastic_size;
+    final int receiveLength;
+    final int batchSize;
+    final int hedgeRows;
+    // The rows of the workers, followed by the rows of the answers of hedged requests
+    final TypeDenseMatrixDouble xt_receive;
+    // Exactly one of the engines is set, the segment engine if the rows are allocated with a RowAllocation
+    final DecodingEngine decodingEngine;
+    final SegmentDecodingEngine segmentEngine;
+
+    long iter_num;
+    long startTime;
+    // The ring of the round, the ids and the DNS of its workers in ring order. The hedge timer reads them from here,
+    // the ring of the master may have changed since the round started. The arrays are not changed once a round has them
+    int[] memberIds;
+    String[] memberDns;
+    RowAllocation allocation;
+    TypeMatrixDouble vects;
+    // The serialized input vectors, which a hedged request sends again
+    byte[] payload;
+    GroupCollector collector;
+    List<CompletableFuture<Void>> requests;
+
+    // Per group, the rows of the receive buffer it is decoded from, the sub-row or row offset in each of them, and its
+    // decoding matrix. A hedged group gets its own copies of the arrays
+    int[][] groupNodes;
+    int[][] groupOffsets;
+    TypeMatrixDouble[] groupMatrices;
+    // The ids of the workers that answer the hedged requests, and the number of hedge rows in use
+    final int[] hedgeIds;
+    int hedgesUsed;
+    private final List<CompletableFuture<Void>> hedges = new ArrayList<>();
+    private Future<?> hedgeTimer;
+    // Set once the round is decoded, so that late answers do not write into buffers a later round may reuse
+    volatile boolean finished;
+
+    // Per worker, the nanoseconds until its response arrived and the parse, compute and serialize timings it reported
+    // with the response, -1 until the response has arrived
+    final long[] networkTime;
+    final long[] workerParseTime;
+    final long[] workerComputeTime;
+    final long[] workerSerializeTime;
+
+    /**
+     * Constructor for class RoundState. Allocates the buffers of a round.
+     *
+     * @param numWorkers   The number of workers of the round
+     * @param recThreshold Number of workers needed to decode one group
+     * @param elastic_size Number of values in one sub-row of a worker for one input vector
+     * @param batchSize    Number of input vectors sent in the round
+     * @param hedgeRows    Number of hedged requests the round can take the answers of
+     */
+    RoundState(int numWorkers, int recThreshold, int elastic_size, int batchSize, int hedgeRows) {
+        this(numWorkers, elastic_size, elastic_size * recThreshold * batchSize, batchSize, hedgeRows,
+                new DecodingEngine(numWorkers, recThreshold, elastic_size * batchSize), null);
+    }
+
+    /**
+     * Method for allocating the buffers of a round whose rows are allocated with a RowAllocation. A worker computes at
+     * most all rows of its shard, so every row of the receive buffer has room for codedRows rows.
+     *
+     * @param numWorkers   The number of workers of the round
+     * @param recThreshold Number of workers needed to decode one segment
+     * @param codedRows    Number of rows of the coded shard of a worker
+     * @param batchSize    Number of input vectors sent in the round
+     * @param hedgeRows    Number of hedged requests the round can take the answers of
+     * @return Returns the buffers of the round
+     */
+    static RoundState forAllocation(int numWorkers, int recThreshold, int codedRows, int batchSize, int hedgeRows) {
+        return new RoundState(numWorkers, codedRows / numWorkers, codedRows * batchSize, batchSize, hedgeRows, null,
+                new SegmentDecodingEngine(numWorkers, recThreshold, codedRows, batchSize));
+    }
+
+    private RoundState(int numWorkers, int elastic_size, int receiveLength, int batchSize, int hedgeRows,
+                       DecodingEngine decodingEngine, SegmentDecodingEngine segmentEngine) {
+        this.numWorkers = numWorkers;
+        this.elastic_size = elastic_size;
+        this.receiveLength = receiveLength;
+        this.batchSize = batchSize;
+        this.hedgeRows = hedgeRows;
+        this.hedgeIds = new int[hedgeRows];
+        this.xt_receive = new TypeDenseMatrixDouble(numWorkers + hedgeRows, receiveLength);
+        this.decodingEngine = decodingEngine;
+        this.segmentEngine = segmentEngine;
+        this.networkTime = new long[numWorkers];
+        this.workerParseTime = new long[numWorkers];
+        this.workerComputeTime = new long[numWorkers];
+        this.workerSerializeTime = new long[numWorkers];
+    }
+
+    /**
+     * Method for starting a new round in these buffers
+     *
+     * @param iter_num         The iteration number
+     * @param vects            The input vectors of the round
+     * @param payload          The input vectors serialized for the requests
+     * @param memberIds        The ids of the workers of the round in ring order
+     * @param memberDns        The DNS of the workers of the round in ring order
+     * @param decodingMatrices The decoding matrices of every group, or of every segment of the allocation, for these
+     *                         workers
+     * @param allocation       The rows of every worker, or null for the cyclic shift method
+     */
+    synchronized void start(long iter_num, TypeMatrixDouble vects, byte[] payload, int[] memberIds, String[] memberDns,
+               TypeMatrixDouble[] decodingMatrices, RowAllocation allocation) {
+        if ((allocation == null) != (this.segmentEngine == null)) {
+            throw new ArithmeticException("The round buffers do not match the allocation of the rows!");
+        }
+        this.iter_num = iter_num;
+        this.vects = vects;
+        this.payload = payload;
+        this.memberIds = memberIds;
+        this.memberDns = memberDns;
+        this.allocation = allocation;
+        this.groupNodes = (allocation == null ? this.decodingEngine.getNodeIds() : allocation.segmentNodes).clone();
+        this.groupOffsets = (allocation == null ? this.decodingEngine.getRowIds() : allocation.segmentOffsets).clone();
+        this.groupMatrices = decodingMatrices.clone();
+        this.collector = new GroupCollector(this.numWorkers, this.groupNodes, this.hedgeRows > 0);
+        this.requests = new ArrayList<>(this.numWorkers);
+        this.hedgesUsed = 0;
+        this.hedges.clear();
+        this.hedgeTimer = null;
+        this.finished = false;
+        Arrays.fill(this.networkTime, -1);
+        Arrays.fill(this.workerParseTime, -1);
+        Arrays.fill(this.workerComputeTime, -1);
+        Arrays.fill(this.workerSerializeTime, -1);
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Returns the number of groups to decode, one per worker with the cyclic shift method, otherwise one per segment
+     */
+    int numGroups() {
+        return this.allocation == null ? this.numWorkers : this.allocation.numSegments();
+    }
+
+    /**
+     * Returns the first row of a group, the sub-row group_ind of the cyclic shift method or the start of a segment
+     */
+    int groupStart(int group_ind) {
+        return this.allocation == null ? group_ind * this.elastic_size : this.allocation.segmentStart[group_ind];
+    }
+
+    /**
+     * Returns the number of rows of a group
+     */
+    int groupRows(int group_ind) {
+        return this.allocation == null ? this.elastic_size : this.allocation.segmentRows[group_ind];
+    }
+
+    /**
+     * Returns the number of rows one step of the offsets in groupOffsets stands for, a sub-row with the cyclic shift
+     * method and a row with an allocation
+     */
+    int offsetRows() {
+        return this.allocation == null ? this.elastic_size : 1;
+    }
+
+    /**
+     * Returns the id of the worker whose answer is in a row of the receive buffer
+     */
+    int idOfRow(int node_id) {
+        return node_id < this.numWorkers ? this.memberIds[node_id] : this.hedgeIds[node_id - this.numWorkers];
+    }
+
+    /**
+     * Method for completing a group with the answer of a hedged request, unless the late worker has answered first.
+     * The group reads the rows of the late worker from the hedge row, with the decoding matrix for the worker that has
+     * answered instead.
+     *
+     * @param group_ind      Index of the group
+     * @param late_node      Position of the late worker
+     * @param hedge_node     Row of the receive buffer with the answer of the hedged request
+     * @param offset         Offset of the rows of the group within the hedge row, in units of offsetRows
+     * @param decodingMatrix The decoding matrix of the group with the late worker replaced, see groupIds
+     * @return Returns true if the group is completed with the hedged answer
+     */
+    boolean useHedge(int group_ind, int late_node, int hedge_node, int offset, TypeMatrixDouble decodingMatrix) {
+        return this.collector.onHedgeReceived(group_ind, late_node, () -> {
+            int slot = slotOf(group_ind, late_node);
+            this.groupNodes[group_ind] = this.groupNodes[group_ind].clone();
+            this.groupOffsets[group_ind] = this.groupOffsets[group_ind].clone();
+            this.groupNodes[group_ind][slot] = hedge_node;
+            this.groupOffsets[group_ind][slot] = offset;
+            this.groupMatrices[group_ind] = decodingMatrix;
+        });
+    }
+
+    /**
+     * Method for checking whether a worker computes the rows of a hedged request of the round already
+     *
+     * @param id Id of the worker
+     */
+    boolean isHedging(int id) {
+        for (int h = 0; h < this.hedgesUsed; h++) {
+            if (this.hedgeIds[h] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method for the ids of the workers a group is decoded from, in the order of the rows of its decoding matrix, with
+     * one of them replaced
+     *
+     * @param group_ind   Index of the group
+     * @param replaced    Row of the receive buffer to replace
+     * @param replacement Id of the worker that replaces it
+     * @return Returns the ids of the rows of the generator matrix the group is decoded with
+     */
+    int[] groupIds(int group_ind, int replaced, int replacement) {
+        int[] nodes = this.groupNodes[group_ind];
+        int[] ids = new int[nodes.length];
+        for (int j = 0; j < nodes.length; j++) {
+            ids[j] = nodes[j] == replaced ? replacement : idOfRow(nodes[j]);
+        }
+        return ids;
+    }
+
+    /**
+     * Method for the slot of a worker in a group, -1 if the group is not decoded from it
+     */
+    int slotOf(int group_ind, int node_id) {
+        int[] nodes = this.groupNodes[group_ind];
+        for (int j = 0; j < nodes.length; j++) {
+            if (nodes[j] == node_id) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Method for running an action on the round only while it is still the round of an iteration and not finished, so
+     * that a late answer of a worker or of a hedged request cannot write into the buffers once a later round reuses them
+     *
+     * @param iter_num The iteration the action belongs to
+     * @param action   The action, it runs while the round cannot be finished or started again
+     * @return Returns false if the action did not run
+     */
+    synchronized boolean runIfCurrent(long iter_num, Runnable action) {
+        if (this.finished || this.iter_num != iter_num) {
+            return false;
+        }
+        action.run();
+        return true;
+    }
+
+    /**
+     * Method for keeping a hedged request, so that finishing the round cancels it
+     *
+     * @return Returns false if the round is already finished
+     */
+    synchronized boolean addHedge(CompletableFuture<Void> hedge) {
+        if (this.finished) {
+            hedge.cancel(true);
+            return false;
+        }
+        this.hedges.add(hedge);
+        return true;
+    }
+
+    /**
+     * Method for setting the timer that hedges the late requests of the round, finishing the round cancels it
+     */
+    synchronized void setHedgeTimer(Future<?> hedgeTimer) {
+        this.hedgeTimer = hedgeTimer;
+        if (this.finished) {
+            hedgeTimer.cancel(false);
+        }
+    }
+
+    /**
+     * Returns the number of values the worker at a position sends back
+     */
+    int receiveLength(int ind) {
+        return this.allocation == null ? this.receiveLength : this.allocation.arcRows[ind] * this.batchSize;
+    }
+
+    /**
+     * Method for storing the timings of the response of one worker
+     *
+     * @param ind       Index of the worker
+     * @param network   Nanoseconds from sending the request until the response arrived
+     * @param parse     Nanoseconds the worker reported for parsing the input
+     * @param compute   Nanoseconds the worker reported for computing the product
+     * @param serialize Nanoseconds the worker reported for serializing the product vector
+     */
+    void recordWorkerTimes(int ind, long network, long parse, long compute, long serialize) {
+        this.networkTime[ind] = network;
+        this.workerParseTime[ind] = parse;
+        this.workerComputeTime[ind] = compute;
+        this.workerSerializeTime[ind] = serialize;
+    }
+
+    /**
+     * Method for finishing the round. The answers of the workers still in flight are not needed any more.
+     */
+    void finish() {
+        // Waits for an answer that is being stored in the buffers, see RoundState#runIfCurrent
+        synchronized (this) {
+            this.finished = true;
+        }
+        for (CompletableFuture<Void> request : this.requests) {
+            request.cancel(true);
+        }
+        synchronized (this) {
+            if (this.hedgeTimer != null) {
+                this.hedgeTimer.cancel(false);
+            }
+            for (CompletableFuture<Void> hedge : this.hedges) {
+                hedge.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package mc.server.servlets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The rows of the coded shard that every worker of the ring computes when the rows are allocated in proportion to the
+ * speed of the workers. <P> The codedRows rows of a shard are a circle, which is divided into a fixed number of units.
+ * The worker at position p of the ring gets an arc of the circle with a length proportional to its rows per second,
+ * and the arcs are laid out one after the other, wrapping around the circle RecThreshold times, so every row is
+ * computed by exactly RecThreshold workers. The arc boundaries cut the circle into segments, and every segment is
+ * decoded from the RecThreshold workers whose arcs cover it, at the offsets where the segment lies in their arcs. With
+ * equal speeds, the arcs have the length RecThreshold * codedRows / numWorkers of the cyclic shift method.
+ * <P> An arc is never longer than the circle, so no worker covers a row twice, and every arc has at least one unit, so
+ * that the speed of every worker keeps being measured. The units keep the number of different segments small, so
+ * their decoding matrices can be cached.
+ *
+ * @author Yaoqing Yang
+ */
+
+class RowAllocation {
+
+    final int numWorkers;
+    final int recThreshold;
+    final int codedRows;
+
+    // Per position, the first row of the arc and the number of rows in it, the arc wraps around to row 0
+    final int[] arcStart;
+    final int[] arcRows;
+
+    // Per segment, its first row and number of rows, the positions of the workers that cover it, and the row of the
+    // segment within the arc of each of these workers
+    final int[] segmentStart;
+    final int[] segmentRows;
+    final int[][] segmentNodes;
+    final int[][] segmentOffsets;
+
+    // The arc lengths in units, which identify the allocation
+    private final int[] arcUnits;
+
+    private RowAllocation(int[] arcUnits, int units, int recThreshold, int codedRows) {
+        this.numWorkers = arcUnits.length;
+        this.recThreshold = recThreshold;
+        this.codedRows = codedRows;
+        this.arcUnits = arcUnits;
+
+        // Unit u of the unrolled circle starts at row rowOf(u), one lap is exactly codedRows rows
+        long[] arcBegin = new long[this.numWorkers + 1];
+        for (int p = 0; p < this.numWorkers; p++) {
+            arcBegin[p + 1] = arcBegin[p] + arcUnits[p];
+        }
+        this.arcStart = new int[this.numWorkers];
+        this.arcRows = new int[this.numWorkers];
+        for (int p = 0; p < this.numWorkers; p++) {
+            this.arcStart[p] = (int) (rowOf(arcBegin[p], units, codedRows) % codedRows);
+            this.arcRows[p] = (int) (rowOf(arcBegin[p + 1], units, codedRows) - rowOf(arcBegin[p], units, codedRows));
+        }
+
+        // Every arc boundary is a segment boundary, unit 0 as well so that no segment wraps around
+        TreeSet<Long> boundaries = new TreeSet<>();
+        boundaries.add(0L);
+        for (int p = 0; p < this.numWorkers; p++) {
+            boundaries.add(arcBegin[p] % units);
+        }
+        List<Long> cuts = new ArrayList<>(boundaries);
+        cuts.add((long) units);
+
+        List<int[]> segments = new ArrayList<>();
+        for (int s = 0; s + 1 < cuts.size(); s++) {
+            long first = cuts.get(s);
+            int start = (int) rowOf(first, units, codedRows);
+            int rows = (int) rowOf(cuts.get(s + 1), units, codedRows) - start;
+            if (rows > 0) {
+                segments.add(new int[]{(int) first, start, rows});
+            }
+        }
+
+        int numSegments = segments.size();
+        this.segmentStart = new int[numSegments];
+        this.segmentRows = new int[numSegments];
+        this.segmentNodes = new int[numSegments][recThreshold];
+        this.segmentOffsets = new int[numSegments][recThreshold];
+        for (int s = 0; s < numSegments; s++) {
+            int[] segment = segments.get(s);
+            this.segmentStart[s] = segment[1];
+            this.segmentRows[s] = segment[2];
+            // In lap k the segment lies in the arc that holds unit first + k * units of the unrolled circle
+            int p = 0;
+            for (int lap = 0; lap < recThreshold; lap++) {
+                long unit = segment[0] + (long) lap * units;
+                while (arcBegin[p + 1] <= unit) {
+                    p++;
+                }
+                this.segmentNodes[s][lap] = p;
+                this.segmentOffsets[s][lap] = (int) (rowOf(unit, units, codedRows) - rowOf(arcBegin[p], units, codedRows));
+            }
+        }
+    }
+
+    /**
+     * Method for allocating the rows in proportion to the speed of the workers
+     *
+     * @param rates        The rows per second of the worker at every position of the ring
+     * @param recThreshold Number of workers needed to decode one segment
+     * @param codedRows    Number of rows of the coded shard of a worker
+     * @param units        Number of units the circle is divided into, at most codedRows
+     * @return Returns the allocation
+     */
+    static RowAllocation proportional(double[] rates, int recThreshold, int codedRows, int units) {
+        int numWorkers = rates.length;
+        units = Math.min(units, codedRows);
+        if (numWorkers < recThreshold || numWorkers > recThreshold * units) {
+            throw new ArithmeticException("The rows cannot be allocated to " + numWorkers + " workers!");
+        }
+
+        // Water filling: a worker that would get more than one lap gets exactly one, the rest is shared by the others
+        // in proportion to their speed
+        double[] share = new double[numWorkers];
+        boolean[] capped = new boolean[numWorkers];
+        double remaining = (double) recThreshold * units;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            double rateSum = 0;
+            for (int p = 0; p < numWorkers; p++) {
+                if (!capped[p]) {
+                    rateSum += Math.max(rates[p], 0);
+                }
+            }
+            for (int p = 0; p < numWorkers; p++) {
+                if (capped[p]) {
+                    continue;
+                }
+                share[p] = rateSum > 0 ? remaining * Math.max(rates[p], 0) / rateSum : 0;
+                if (share[p] > units) {
+                    share[p] = units;
+                    capped[p] = true;
+                    remaining -= units;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                continue;
+            }
+            int free = 0;
+            for (int p = 0; p < numWorkers; p++) {
+                free += capped[p] ? 0 : 1;
+            }
+            if (rateSum <= 0 && free > 0) {
+                // No speed is known, the remaining units are shared evenly
+                for (int p = 0; p < numWorkers; p++) {
+                    share[p] = capped[p] ? units : remaining / free;
+                }
+            }
+        }
+
+        return new RowAllocation(roundUnits(share, recThreshold * units, units), units, recThreshold, codedRows);
+    }
+
+    /**
+     * Method for the allocation of the cyclic shift method, every worker gets the same number of units
+     *
+     * @param numWorkers   The number of workers of the ring
+     * @param recThreshold Number of workers needed to decode one segment
+     * @param codedRows    Number of rows of the coded shard of a worker
+     * @param units        Number of units the circle is divided into, at most codedRows
+     * @return Returns the allocation
+     */
+    static RowAllocation uniform(int numWorkers, int recThreshold, int codedRows, int units) {
+        double[] rates = new double[numWorkers];
+        Arrays.fill(rates, 1);
+        return proportional(rates, recThreshold, codedRows, units);
+    }
+
+    /**
+     * Method for the time the slowest worker needs for its arc
+     *
+     * @param rates The rows per second of the worker at every position of the ring
+     * @return Returns the largest arcRows / rate in seconds
+     */
+    double makespan(double[] rates) {
+        double makespan = 0;
+        for (int p = 0; p < this.numWorkers; p++) {
+            makespan = Math.max(makespan, rates[p] > 0 ? this.arcRows[p] / rates[p] : Double.POSITIVE_INFINITY);
+        }
+        return makespan;
+    }
+
+    /**
+     * Returns the number of segments
+     */
+    int numSegments() {
+        return this.segmentStart.length;
+    }
+
+    /**
+     * Method for checking whether two allocations give every position the same arc
+     */
+    boolean sameArcs(RowAllocation other) {
+        return other != null && Arrays.equals(this.arcUnits, other.arcUnits);
+    }
+
+    @Override
+    public String toString() {
+        return "rows per position " + Arrays.toString(this.arcRows) + " in " + numSegments() + " segments";
+    }
+
+    /*
+     * Rounds the shares to whole units with the largest remainder method, every worker gets at least one unit and at
+     * most one lap, and the units add up to total */
+    private static int[] roundUnits(double[] share, int total, int units) {
+        int numWorkers = share.length;
+        int[] arcUnits = new int[numWorkers];
+        int assigned = 0;
+        for (int p = 0; p < numWorkers; p++) {
+            arcUnits[p] = Math.max(1, Math.min(units, (int) Math.floor(share[p])));
+            assigned += arcUnits[p];
+        }
+        while (assigned != total) {
+            // Add to the largest remainder, or take from the largest excess, among the workers that can change
+            int best = -1;
+            double bestGap = Double.NEGATIVE_INFINITY;
+            for (int p = 0; p < numWorkers; p++) {
+                double gap = assigned < total ? share[p] - arcUnits[p] : arcUnits[p] - share[p];
+                boolean canChange = assigned < total ? arcUnits[p] < units : arcUnits[p] > 1;
+                if (canChange && gap > bestGap) {
+                    best = p;
+                    bestGap = gap;
+                }
+            }
+            arcUnits[best] += assigned < total ? 1 : -1;
+            assigned += assigned < total ? 1 : -1;
+        }
+        return arcUnits;
+    }
+
+    /*
+     * The first row of unit u of the unrolled circle */
+    private static long rowOf(long u, int units, int codedRows) {
+        return u / units * codedRows + u % units * codedRows / units;
+    }
+}
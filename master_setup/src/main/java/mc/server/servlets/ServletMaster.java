@@ -1,5 +1,7 @@
 package mc.server.servlets;
 
+import org.json.JSONArray;
+
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -8,7 +10,11 @@ import java.util.Map;
 
 /**
  * Defines a servlet at the node. <P> Defines the mapping between query object and the corresponding methods when the
- * request is routed to this servlet. Currently post requests are routed as get requests.
+ * request is routed to this servlet. Currently post requests are routed as get requests. <P> The startMaster request
+ * runs one job with the parameters of the system properties and answers once it has ended. The job API answers right
+ * away: submitJob answers with the id of a new job, see MasterJob#fromRequest for its parameters, jobStatus answers
+ * with the status of a job, or of all jobs for the id all, as JSON, and cancelJob answers whether the job was still
+ * running.
  *
  * @author Malhar Chaudhari
  * @version 1.0
@@ -39,10 +45,33 @@ public class ServletMaster extends HttpServlet {
             for (String param : paramMap.keySet()) {
                 if (param.equals("startMaster")) {
                     if (paramMap.get(param)[0].equals("1")) {
-                        AppMaster appMasterObj = new AppMaster();
-                        appMasterObj.initTask();
+                        MasterJob job = AppMaster.jobs.submit(MasterJob.fromProperties(AppMaster.jobs.nextId()));
+                        job.awaitEnd();
+                    }
+                }
+                else if (param.equals("submitJob")) {
+                    try {
+                        initResp = AppMaster.jobs.submit(MasterJob.fromRequest(AppMaster.jobs.nextId(), paramMap)).id;
+                    } catch (IllegalArgumentException e) {
+                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                        initResp = e.getMessage();
                     }
                 }
+                else if (param.equals("jobStatus")) {
+                    initResp = jobStatus(paramMap.get(param)[0], response);
+                }
+                else if (param.equals("cancelJob")) {
+                    MasterJob job = AppMaster.jobs.get(paramMap.get(param)[0]);
+                    initResp = Boolean.toString(job != null && job.cancel());
+                }
+                else if (param.equals("heartbeat")) {
+                    // A worker registers with its first heartbeat, the answer is its id
+                    String datasets = paramMap.containsKey("datasets") ? paramMap.get("datasets")[0] : null;
+                    initResp = Integer.toString(AppMaster.membership.heartbeat(paramMap.get(param)[0], datasets));
+                }
+                else if (param.equals("deregister")) {
+                    AppMaster.membership.deregister(paramMap.get(param)[0]);
+                }
             }
 
             printWriter.print(initResp);
@@ -54,6 +83,25 @@ public class ServletMaster extends HttpServlet {
         }
     }
 
+    /*
+     * The status of one job with the statistics of its latest rounds, or the status of all jobs without them */
+    private static String jobStatus(String id, HttpServletResponse response) {
+        response.setContentType("application/json");
+        if (id.equals("all")) {
+            JSONArray statuses = new JSONArray();
+            for (MasterJob job : AppMaster.jobs.list()) {
+                statuses.put(job.toJson(false));
+            }
+            return statuses.toString();
+        }
+        MasterJob job = AppMaster.jobs.get(id);
+        if (job == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return "No job " + id;
+        }
+        return job.toJson(true).toString();
+    }
+
     /**
      * Routes the received request to doGet method
      *
@@ -0,0 +1,75 @@
+package mc.server.servlets;
+
+import mc.server.types.LatencyHistogram;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Defines the metrics servlet at the node. <P> Holds the latency histograms of the phases of a round, and answers a
+ * GET request with one line per histogram: the number of recorded durations, the mean, p50, p99, p99.9 and the
+ * maximum in microseconds. The histograms count from the start of the node, or from the last request with the reset
+ * parameter, so the percentiles can be watched live during long runs.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class ServletMetrics extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    // Sorted by name, so that the phases of one node are listed together
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the histogram with the given name, which is created on first use
+     *
+     * @param name Name of the histogram, e.g. the phase of a round it times
+     */
+    static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Writes all histograms in plain text. With the reset parameter the histograms are cleared after they are written.
+     *
+     * @param request  The HttpServletRequest being sent to this servlet
+     * @param response The response with one line per histogram
+     */
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) {
+
+        try {
+            response.setCharacterEncoding("UTF-8");
+            response.setContentType("text/plain");
+
+            PrintWriter printWriter = new PrintWriter(response.getOutputStream());
+            boolean reset = request.getParameter("reset") != null;
+
+            for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                long[] percentiles = histogram.getValuesAtPercentiles(50, 99, 99.9);
+                printWriter.println(entry.getKey() +
+                        " count=" + histogram.getCount() +
+                        " mean_us=" + Math.round(histogram.getMean() / 1000) +
+                        " p50_us=" + percentiles[0] / 1000 +
+                        " p99_us=" + percentiles[1] / 1000 +
+                        " p99.9_us=" + percentiles[2] / 1000 +
+                        " max_us=" + histogram.getMax() / 1000);
+                if (reset) {
+                    histogram.reset();
+                }
+            }
+
+            printWriter.flush();
+            printWriter.close();
+        } catch (Exception ignored) {
+            ignored.printStackTrace();
+        }
+    }
+}
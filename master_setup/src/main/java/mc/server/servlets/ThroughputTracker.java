@@ -0,0 +1,70 @@
+package mc.server.servlets;
+
+/**
+ * Measures the rows per second of every worker from the time until its response has arrived. <P> The round waits for
+ * the responses, not for the computations, so the time includes parsing, serializing and the network as well, and a
+ * slow link counts like a slow CPU. The part of the time that does not grow with the rows makes a worker with few rows
+ * look slower than it is, so allocating the rows again in proportion to the measured speeds moves on towards arcs that
+ * all take the same time. The speed of a worker is an exponentially weighted moving average over its responses, so a
+ * worker that slows down, e.g. because of a noisy neighbour, gets fewer rows after a few reallocations.
+ *
+ * @author Yaoqing Yang
+ */
+
+class ThroughputTracker {
+
+    private final double weight;
+    // Per worker id, the average rows per second, 0 until the first response
+    private final double[] rates;
+
+    /**
+     * Constructor for class ThroughputTracker.
+     *
+     * @param maxWorkers Number of worker ids
+     * @param weight     Weight of the newest response in the moving average, between 0 and 1
+     */
+    ThroughputTracker(int maxWorkers, double weight) {
+        this.weight = weight;
+        this.rates = new double[maxWorkers];
+    }
+
+    /**
+     * Method for recording one response of a worker
+     *
+     * @param id    Id of the worker
+     * @param rows  Number of rows the worker has computed
+     * @param nanos Nanoseconds the worker took for them
+     */
+    synchronized void record(int id, int rows, long nanos) {
+        if (rows <= 0 || nanos <= 0) {
+            return;
+        }
+        double rate = rows * 1e9 / nanos;
+        this.rates[id] = this.rates[id] == 0 ? rate : this.weight * rate + (1 - this.weight) * this.rates[id];
+    }
+
+    /**
+     * Method for the speeds of the workers of a ring. A worker without a response yet is given the mean speed of the
+     * others, or 1 if none of them has answered.
+     *
+     * @param memberIds The ids of the workers in ring order
+     * @return Returns the rows per second of every position of the ring
+     */
+    synchronized double[] rates(int[] memberIds) {
+        double sum = 0;
+        int known = 0;
+        for (int id : memberIds) {
+            if (this.rates[id] > 0) {
+                sum += this.rates[id];
+                known++;
+            }
+        }
+        double fallback = known == 0 ? 1 : sum / known;
+
+        double[] rates = new double[memberIds.length];
+        for (int p = 0; p < memberIds.length; p++) {
+            rates[p] = this.rates[memberIds[p]] > 0 ? this.rates[memberIds[p]] : fallback;
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,289 @@
+package mc.server.types;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Binary wire format for the types in mc.server.types. <P> A vector frame is a little-endian int32 element count
+ * followed by the elements in little-endian order. A matrix frame is a little-endian int32 row count and int32 column
+ * count followed by the elements in row-major order. A frame whose lengths are negative, do not fit into the destination
+ * or announce more elements than the frame holds is rejected with an ArithmeticException. Creating an object of this
+ * class is not allowed and should be used only as a static class methods.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public final class BinaryCodec {
+
+    /**
+     * Number of bytes used by the int32 length prefix of a frame
+     */
+    public static final int HEADER_BYTES = Integer.BYTES;
+
+    /*
+     * Size of the chunks in which a frame is read from a stream, a multiple of the element size */
+    private static final int STREAM_CHUNK_BYTES = 64 * 1024;
+
+    /*
+     * To avoid instantiating an object of this class */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Allocates a little-endian buffer for a frame
+     *
+     * @param numBytes Number of bytes of the frame, including the length prefix
+     * @return Returns a heap ByteBuffer in little-endian order
+     */
+    public static ByteBuffer allocate(int numBytes) {
+        return ByteBuffer.allocate(numBytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Wraps a received frame as a little-endian buffer
+     *
+     * @param frame The bytes of the received frame
+     * @return Returns a ByteBuffer view of the frame in little-endian order
+     */
+    public static ByteBuffer wrap(byte[] frame) {
+        return ByteBuffer.wrap(frame).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes a double vector frame to the buffer
+     *
+     * @param buf    Little-endian buffer with at least HEADER_BYTES + 8 * length bytes remaining
+     * @param vect   Elements of the vector
+     * @param length Number of elements to be written
+     */
+    public static void putVector(ByteBuffer buf, double[] vect, int length) {
+        buf.putInt(length);
+        buf.asDoubleBuffer().put(vect, 0, length);
+        buf.position(buf.position() + length * Double.BYTES);
+    }
+
+    /**
+     * Reads a double vector frame from the buffer
+     *
+     * @param buf  Little-endian buffer positioned at the start of the frame
+     * @param vect Destination array, must hold at least the number of elements in the frame
+     * @return Returns the number of elements read
+     * @throws ArithmeticException if the frame does not fit into the destination or is truncated
+     */
+    public static int getVector(ByteBuffer buf, double[] vect) {
+        int length = getLength(buf, vect.length, Double.BYTES);
+        buf.asDoubleBuffer().get(vect, 0, length);
+        buf.position(buf.position() + length * Double.BYTES);
+        return length;
+    }
+
+    /**
+     * Writes an int vector frame to the buffer
+     *
+     * @param buf    Little-endian buffer with at least HEADER_BYTES + 4 * length bytes remaining
+     * @param vect   Elements of the vector
+     * @param length Number of elements to be written
+     */
+    public static void putVector(ByteBuffer buf, int[] vect, int length) {
+        buf.putInt(length);
+        buf.asIntBuffer().put(vect, 0, length);
+        buf.position(buf.position() + length * Integer.BYTES);
+    }
+
+    /**
+     * Reads an int vector frame from the buffer
+     *
+     * @param buf  Little-endian buffer positioned at the start of the frame
+     * @param vect Destination array, must hold at least the number of elements in the frame
+     * @return Returns the number of elements read
+     * @throws ArithmeticException if the frame does not fit into the destination or is truncated
+     */
+    public static int getVector(ByteBuffer buf, int[] vect) {
+        int length = getLength(buf, vect.length, Integer.BYTES);
+        buf.asIntBuffer().get(vect, 0, length);
+        buf.position(buf.position() + length * Integer.BYTES);
+        return length;
+    }
+
+    /**
+     * Writes a double matrix frame to the buffer
+     *
+     * @param buf Little-endian buffer with at least 2 * HEADER_BYTES + 8 * row * col bytes remaining
+     * @param mat Rows of the matrix
+     * @param row Number of rows to be written
+     * @param col Number of columns to be written
+     */
+    public static void putMatrix(ByteBuffer buf, double[][] mat, int row, int col) {
+        buf.putInt(row);
+        buf.putInt(col);
+        for (int i = 0; i < row; i++) {
+            buf.asDoubleBuffer().put(mat[i], 0, col);
+            buf.position(buf.position() + col * Double.BYTES);
+        }
+    }
+
+    /**
+     * Reads a double matrix frame from the buffer
+     *
+     * @param buf Little-endian buffer positioned at the start of the frame
+     * @param mat Destination rows, must hold at least the number of rows and columns in the frame
+     * @throws ArithmeticException if the frame does not fit into the destination or is truncated
+     */
+    public static void getMatrix(ByteBuffer buf, double[][] mat) {
+        int[] shape = getShape(buf, mat.length, mat.length == 0 ? 0 : mat[0].length, Double.BYTES);
+        int row = shape[0];
+        int col = shape[1];
+        for (int i = 0; i < row; i++) {
+            buf.asDoubleBuffer().get(mat[i], 0, col);
+            buf.position(buf.position() + col * Double.BYTES);
+        }
+    }
+
+    /**
+     * Writes an int matrix frame to the buffer
+     *
+     * @param buf Little-endian buffer with at least 2 * HEADER_BYTES + 4 * row * col bytes remaining
+     * @param mat Rows of the matrix
+     * @param row Number of rows to be written
+     * @param col Number of columns to be written
+     */
+    public static void putMatrix(ByteBuffer buf, int[][] mat, int row, int col) {
+        buf.putInt(row);
+        buf.putInt(col);
+        for (int i = 0; i < row; i++) {
+            buf.asIntBuffer().put(mat[i], 0, col);
+            buf.position(buf.position() + col * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Reads an int matrix frame from the buffer
+     *
+     * @param buf Little-endian buffer positioned at the start of the frame
+     * @param mat Destination rows, must hold at least the number of rows and columns in the frame
+     * @throws ArithmeticException if the frame does not fit into the destination or is truncated
+     */
+    public static void getMatrix(ByteBuffer buf, int[][] mat) {
+        int[] shape = getShape(buf, mat.length, mat.length == 0 ? 0 : mat[0].length, Integer.BYTES);
+        int row = shape[0];
+        int col = shape[1];
+        for (int i = 0; i < row; i++) {
+            buf.asIntBuffer().get(mat[i], 0, col);
+            buf.position(buf.position() + col * Integer.BYTES);
+        }
+    }
+
+    /**
+     * Reads the int32 length prefix of a vector frame from a buffer and checks it against the destination and the rest
+     * of the frame
+     *
+     * @param buf          Little-endian buffer positioned at the start of the frame
+     * @param capacity     Number of elements the destination can hold
+     * @param elementBytes Number of bytes of one element
+     * @return Returns the number of elements in the frame
+     * @throws ArithmeticException if the length is negative or larger than capacity, or the frame is truncated
+     */
+    public static int getLength(ByteBuffer buf, int capacity, int elementBytes) {
+        int length = getHeader(buf);
+        if (length < 0 || length > capacity) {
+            throw new ArithmeticException("The received vector does not match in size with the destination!");
+        }
+        checkRemaining(buf, length, elementBytes);
+        return length;
+    }
+
+    /**
+     * Reads the int32 row and column counts of a matrix frame from a buffer and checks them against the destination
+     * and the rest of the frame
+     *
+     * @param buf          Little-endian buffer positioned at the start of the frame
+     * @param maxRow       Number of rows the destination can hold
+     * @param maxCol       Number of columns the destination can hold
+     * @param elementBytes Number of bytes of one element
+     * @return Returns the number of rows and the number of columns in the frame
+     * @throws ArithmeticException if a count is negative or larger than the destination, or the frame is truncated
+     */
+    public static int[] getShape(ByteBuffer buf, int maxRow, int maxCol, int elementBytes) {
+        int row = getHeader(buf);
+        int col = getHeader(buf);
+        if (row < 0 || col < 0 || row > maxRow || (row > 0 && col > maxCol)) {
+            throw new ArithmeticException("The received matrix does not match in size with the destination!");
+        }
+        checkRemaining(buf, (long) row * col, elementBytes);
+        return new int[]{row, col};
+    }
+
+    private static int getHeader(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) {
+            throw new ArithmeticException("The binary frame ended before its length prefix was received!");
+        }
+        return buf.getInt();
+    }
+
+    private static void checkRemaining(ByteBuffer buf, long elements, int elementBytes) {
+        if (elements * elementBytes > buf.remaining()) {
+            throw new ArithmeticException("The binary frame ended before all elements were received!");
+        }
+    }
+
+    /**
+     * Reads the int32 length prefix of a frame from a stream
+     *
+     * @param in Stream positioned at the start of the frame
+     * @return Returns the number of elements announced by the frame
+     * @throws IOException if the stream ends before the prefix is complete, or the prefix is negative
+     */
+    public static int readLength(InputStream in) throws IOException {
+        int length = 0;
+        for (int i = 0; i < HEADER_BYTES; i++) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("The binary frame ended before its length prefix was received!");
+            }
+            length |= b << (8 * i);
+        }
+        if (length < 0) {
+            throw new IOException("The binary frame announces a negative length!");
+        }
+        return length;
+    }
+
+    /**
+     * Reads little-endian doubles from a stream while the bytes are still arriving. The elements are converted chunk by
+     * chunk, so the whole frame is never buffered.
+     *
+     * @param in   Stream positioned at the first element to be read
+     * @param vect Destination array
+     * @param off  Index in the destination array of the first element
+     * @param len  Number of elements to be read
+     * @throws IOException if the stream ends before all elements are received
+     */
+    public static void readDoubles(InputStream in, double[] vect, int off, int len) throws IOException {
+        byte[] chunk = new byte[Math.min(STREAM_CHUNK_BYTES, Math.max(len, 1) * Double.BYTES)];
+        ByteBuffer buf = ByteBuffer.wrap(chunk).order(ByteOrder.LITTLE_ENDIAN);
+        int filled = 0;
+
+        while (len > 0) {
+            int n = in.read(chunk, filled, Math.min(chunk.length, len * Double.BYTES) - filled);
+            if (n < 0) {
+                throw new EOFException("The binary frame ended before all elements were received!");
+            }
+            filled += n;
+
+            int complete = filled / Double.BYTES;
+            buf.clear();
+            buf.asDoubleBuffer().get(vect, off, complete);
+            off += complete;
+            len -= complete;
+
+            // Keep the bytes of a partially received element for the next read
+            int rest = filled - complete * Double.BYTES;
+            System.arraycopy(chunk, complete * Double.BYTES, chunk, 0, rest);
+            filled = rest;
+        }
+    }
+}
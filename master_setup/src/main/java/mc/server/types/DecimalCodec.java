@@ -0,0 +1,705 @@
+package mc.server.types;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Text format of the types in mc.server.types, without allocating per number. <P> A double is parsed exactly like
+ * Double#parseDouble: a decimal with at most 19 significant digits whose value is an exact double times or divided by
+ * an exact power of ten is computed with one floating-point operation (Clinger's fast path), other decimals with a
+ * 128-bit approximation of the power of ten (the Eisel-Lemire algorithm). The few inputs that the two cannot round
+ * with certainty, and inputs outside the decimal grammar, such as hexadecimal floats, fall back to Double#parseDouble.
+ * <P> A double is formatted as the shortest decimal that parses back to the same double, the closest one if there are
+ * several (the Schubfach algorithm), in the layout of Double#toString. <P> The cells of a text are scanned in place
+ * when the separators are single characters that String#split takes literally, such as a comma, a space or a tab, or
+ * one of the whitespace expressions "\\s+" and " +". Blanks around a cell are ignored like String#trim did, and with a
+ * whitespace separator a run of blanks separates two cells. Other separators are still split as regular expressions.
+ * Creating an object of this class is not allowed and should be used only as a static class methods.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public final class DecimalCodec {
+
+    // Significant digits that always fit into an unsigned 64-bit mantissa
+    private static final int MaxMantissaDigits = 19;
+    private static final int MinExp10 = -348;
+    private static final int MaxExp10 = 347;
+    // The 128-bit mantissas of the powers of ten from MinExp10 to MaxExp10, rounded down, high 64 bits first
+    private static final long[] PowersOfTen = new long[2 * (MaxExp10 - MinExp10 + 1)];
+    // The powers of ten that are exact doubles
+    private static final double[] ExactPowersOfTen = new double[23];
+
+    /**
+     * Maximum number of characters of a formatted double, such as -2.2250738585072014E-308
+     */
+    public static final int MAX_DOUBLE_CHARS = 24;
+    /**
+     * Maximum number of characters of a formatted int, such as -2147483648
+     */
+    public static final int MAX_INT_CHARS = 11;
+    // Decimal exponents of the formatter, with the 126-bit powers of ten rounded up, high 63 bits first
+    private static final int MinFormatExp10 = -324;
+    private static final int MaxFormatExp10 = 292;
+    private static final long[] FormatPowersOfTen = new long[2 * (MaxFormatExp10 - MinFormatExp10 + 1)];
+    private static final long[] LongPowersOfTen = new long[18];
+    private static final long Mask63 = (1L << 63) - 1;
+    private static final int Mask28 = (1 << 28) - 1;
+    // Single characters that String#split does not take literally
+    private static final String RegexCharacters = ".$|()[]{}^?*+\\";
+
+    /*
+     * Stores the cell (row, col) whose text lies between two positions of a text */
+    interface CellSink {
+        void put(int row, int col, CharSequence text, int start, int end);
+    }
+
+    static {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        for (int exp10 = MinExp10; exp10 <= MaxExp10; exp10++) {
+            BigInteger power = BigInteger.TEN.pow(Math.abs(exp10));
+            BigInteger mantissa;
+            if (exp10 >= 0) {
+                int shift = power.bitLength() - 128;
+                mantissa = shift > 0 ? power.shiftRight(shift) : power.shiftLeft(-shift);
+            } else {
+                // The quotient of a power of two by the power of ten, with 128 significant bits
+                mantissa = BigInteger.ONE.shiftLeft(127 + power.bitLength()).divide(power);
+                if (mantissa.compareTo(two128) >= 0) {
+                    mantissa = mantissa.shiftRight(1);
+                }
+            }
+            int ind = 2 * (exp10 - MinExp10);
+            PowersOfTen[ind] = mantissa.shiftRight(64).longValue();
+            PowersOfTen[ind + 1] = mantissa.longValue();
+        }
+        double power = 1;
+        for (int i = 0; i < ExactPowersOfTen.length; i++) {
+            ExactPowersOfTen[i] = power;
+            power *= 10;
+        }
+
+        // 10^-k = g 2^r with 2^125 <= g < 2^126, after rounding g up
+        for (int k = MinFormatExp10; k <= MaxFormatExp10; k++) {
+            BigInteger tenPower = BigInteger.TEN.pow(Math.abs(k));
+            BigInteger g;
+            if (k <= 0) {
+                int shift = tenPower.bitLength() - 126;
+                g = shift > 0 ? tenPower.shiftRight(shift) : tenPower.shiftLeft(-shift);
+            } else {
+                g = BigInteger.ONE.shiftLeft(125 + tenPower.bitLength()).divide(tenPower);
+            }
+            g = g.add(BigInteger.ONE);
+            int ind = 2 * (k - MinFormatExp10);
+            FormatPowersOfTen[ind] = g.shiftRight(63).longValue();
+            FormatPowersOfTen[ind + 1] = g.longValue() & Mask63;
+        }
+        LongPowersOfTen[0] = 1;
+        for (int i = 1; i < LongPowersOfTen.length; i++) {
+            LongPowersOfTen[i] = 10 * LongPowersOfTen[i - 1];
+        }
+    }
+
+    /*
+     * To avoid instantiating an object of this class */
+    private DecimalCodec() {
+    }
+
+    /**
+     * Method for parsing the text of a double between two positions of a text, with the result of Double#parseDouble
+     *
+     * @param text  The text
+     * @param start Position of the first character
+     * @param end   Position after the last character
+     * @return Returns the double value
+     * @throws NumberFormatException if the text is not a double
+     */
+    public static double parseDouble(CharSequence text, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos < end && (text.charAt(pos) == 'N' || text.charAt(pos) == 'I')) {
+            return parseSlow(text, start, end);
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int mantissaDigits = 0;
+        int decimalPoint = 0;
+        boolean sawDot = false;
+        boolean sawDigits = false;
+        boolean truncated = false;
+        for (; pos < end; pos++) {
+            int c = text.charAt(pos);
+            if (c == '.') {
+                if (sawDot) {
+                    break;
+                }
+                sawDot = true;
+                decimalPoint = numDigits;
+            } else if (c >= '0' && c <= '9') {
+                sawDigits = true;
+                if (c == '0' && numDigits == 0) {
+                    // Leading zeros only move the decimal point
+                    if (sawDot) {
+                        decimalPoint--;
+                    }
+                    continue;
+                }
+                numDigits++;
+                if (mantissaDigits < MaxMantissaDigits) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    mantissaDigits++;
+                } else if (c != '0') {
+                    truncated = true;
+                }
+            } else {
+                break;
+            }
+        }
+        if (!sawDigits) {
+            return parseSlow(text, start, end);
+        }
+        int exp10 = sawDot ? decimalPoint : numDigits;
+
+        if (pos < end && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+            pos++;
+            boolean negativeExp = false;
+            if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+                negativeExp = text.charAt(pos) == '-';
+                pos++;
+            }
+            if (pos >= end) {
+                return parseSlow(text, start, end);
+            }
+            int exp = 0;
+            for (; pos < end && text.charAt(pos) >= '0' && text.charAt(pos) <= '9'; pos++) {
+                if (exp < 10000) {
+                    exp = exp * 10 + (text.charAt(pos) - '0');
+                }
+            }
+            exp10 += negativeExp ? -exp : exp;
+        }
+        if (pos != end) {
+            return parseSlow(text, start, end);
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        exp10 -= mantissaDigits;
+
+        if (!truncated) {
+            double exact = parseExact(mantissa, exp10, negative);
+            if (!Double.isNaN(exact)) {
+                return exact;
+            }
+        }
+        long bits = eiselLemire(mantissa, exp10, negative);
+        // With truncated digits the value lies between the mantissa and the next one, both must round the same
+        if (bits != -1 && (!truncated || eiselLemire(mantissa + 1, exp10, negative) == bits)) {
+            return Double.longBitsToDouble(bits);
+        }
+        return parseSlow(text, start, end);
+    }
+
+    /**
+     * Method for parsing the text of an int between two positions of a text, with the result of Integer#parseInt
+     *
+     * @param text  The text
+     * @param start Position of the first character
+     * @param end   Position after the last character
+     * @return Returns the int value
+     * @throws NumberFormatException if the text is not an int
+     */
+    public static int parseInt(CharSequence text, int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+            negative = text.charAt(pos) == '-';
+            pos++;
+        }
+        // At most 10 digits, accumulated as a negative long so that Integer.MIN_VALUE fits
+        if (pos == end || end - pos > 10) {
+            return Integer.parseInt(text(text, start, end));
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int c = text.charAt(pos);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(text(text, start, end));
+            }
+            value = value * 10 - (c - '0');
+        }
+        if (!negative) {
+            value = -value;
+        }
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return Integer.parseInt(text(text, start, end));
+        }
+        return (int) value;
+    }
+
+    /*
+     * Clinger's fast path, NaN if the mantissa or the power of ten is not exact */
+    private static double parseExact(long mantissa, int exp10, boolean negative) {
+        if (mantissa >>> 52 != 0) {
+            return Double.NaN;
+        }
+        double value = negative ? -(double) mantissa : (double) mantissa;
+        if (exp10 == 0) {
+            return value;
+        }
+        if (exp10 > 0 && exp10 <= 15 + 22) {
+            // A large exponent with few digits moves some zeros into the mantissa first
+            if (exp10 > 22) {
+                value *= ExactPowersOfTen[exp10 - 22];
+                exp10 = 22;
+            }
+            if (value > 1e15 || value < -1e15) {
+                return Double.NaN;
+            }
+            return value * ExactPowersOfTen[exp10];
+        }
+        if (exp10 < 0 && exp10 >= -22) {
+            return value / ExactPowersOfTen[-exp10];
+        }
+        return Double.NaN;
+    }
+
+    /*
+     * The Eisel-Lemire algorithm for the unsigned mantissa times 10^exp10, returns the bits of the double or -1 if the
+     * rounding cannot be decided from 128 bits */
+    private static long eiselLemire(long mantissa, int exp10, boolean negative) {
+        if (exp10 < MinExp10 || exp10 > MaxExp10) {
+            return -1;
+        }
+        int ind = 2 * (exp10 - MinExp10);
+        // Normalization
+        int clz = Long.numberOfLeadingZeros(mantissa);
+        mantissa <<= clz;
+        long retExp2 = ((217706L * exp10) >> 16) + 64 + 1023 - clz;
+
+        // Multiplication by the high 64 bits of the power of ten
+        long xHi = multiplyHigh(mantissa, PowersOfTen[ind]);
+        long xLo = mantissa * PowersOfTen[ind];
+
+        // Wider approximation with the low 64 bits, if the lower bits of the product are all ones
+        if ((xHi & 0x1FF) == 0x1FF && Long.compareUnsigned(xLo + mantissa, mantissa) < 0) {
+            long yHi = multiplyHigh(mantissa, PowersOfTen[ind + 1]);
+            long yLo = mantissa * PowersOfTen[ind + 1];
+            long mergedHi = xHi;
+            long mergedLo = xLo + yHi;
+            if (Long.compareUnsigned(mergedLo, xLo) < 0) {
+                mergedHi++;
+            }
+            if ((mergedHi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 && Long.compareUnsigned(yLo + mantissa, mantissa) < 0) {
+                return -1;
+            }
+            xHi = mergedHi;
+            xLo = mergedLo;
+        }
+
+        // Shifting to 54 bits
+        long msb = xHi >>> 63;
+        long retMantissa = xHi >>> (msb + 9);
+        retExp2 -= 1 ^ msb;
+
+        // Half-way ambiguity
+        if (xLo == 0 && (xHi & 0x1FF) == 0 && (retMantissa & 3) == 1) {
+            return -1;
+        }
+
+        // From 54 to 53 bits, rounding to even
+        retMantissa += retMantissa & 1;
+        retMantissa >>>= 1;
+        if (retMantissa >>> 53 > 0) {
+            retMantissa >>>= 1;
+            retExp2 += 1;
+        }
+        // Subnormal, infinite and NaN results are left to Double#parseDouble
+        if (retExp2 <= 0 || retExp2 >= 0x7FF) {
+            return -1;
+        }
+        long bits = retExp2 << 52 | retMantissa & 0x000FFFFFFFFFFFFFL;
+        return negative ? bits | 0x8000000000000000L : bits;
+    }
+
+    /**
+     * Method for writing the shortest decimal that parses back to the same double, in the layout of Double#toString
+     *
+     * @param buf   Destination of the characters in ASCII, with at least MAX_DOUBLE_CHARS bytes from pos on
+     * @param pos   Position of the first character
+     * @param value The double
+     * @return Returns the position after the last character
+     */
+    public static int putDouble(byte[] buf, int pos, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        long fraction = bits & 0x000FFFFFFFFFFFFFL;
+        int biasedExp = (int) (bits >>> 52) & 0x7FF;
+        if (biasedExp == 0x7FF) {
+            return putText(buf, pos, fraction != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity");
+        }
+        if (bits < 0) {
+            buf[pos++] = '-';
+        }
+        if (biasedExp != 0) {
+            // value = c 2^q with 2^52 <= c < 2^53
+            int mq = 1075 - biasedExp;
+            long c = 1L << 52 | fraction;
+            // Integers below 2^53 are their own shortest decimal
+            if (mq > 0 && mq < 53 && (c >> mq) << mq == c) {
+                return putDecimal(buf, pos, c >> mq, 0);
+            }
+            return putShortest(buf, pos, -mq, c, 0);
+        }
+        if (fraction != 0) {
+            // Subnormal, the tiny ones are scaled so that the decimals of their spacing are distinguished
+            return fraction < 3 ? putShortest(buf, pos, -1074, 10 * fraction, -1) : putShortest(buf, pos, -1074, fraction, 0);
+        }
+        return putText(buf, pos, "0.0");
+    }
+
+    /**
+     * Method for writing an int, like Integer#toString
+     *
+     * @param buf   Destination of the characters in ASCII, with at least MAX_INT_CHARS bytes from pos on
+     * @param pos   Position of the first character
+     * @param value The int
+     * @return Returns the position after the last character
+     */
+    public static int putInt(byte[] buf, int pos, int value) {
+        // The digits of a negative value, so that Integer.MIN_VALUE needs no special case
+        if (value < 0) {
+            buf[pos++] = '-';
+        } else {
+            value = -value;
+        }
+        int end = pos + 1;
+        for (int rest = value; rest <= -10; rest /= 10) {
+            end++;
+        }
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' - value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Method for writing a text such as a separator, its characters must be ISO-8859-1
+     *
+     * @param buf  Destination of the characters
+     * @param pos  Position of the first character
+     * @param text The text
+     * @return Returns the position after the last character
+     */
+    public static int putText(byte[] buf, int pos, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            buf[pos++] = (byte) text.charAt(i);
+        }
+        return pos;
+    }
+
+    /**
+     * Method for the string of the written characters without the blanks at their end, as String#trim removed them
+     * from a serialized text
+     *
+     * @param buf Characters in ISO-8859-1
+     * @param end Position after the last character
+     * @return Returns the string
+     */
+    public static String toTrimmedString(byte[] buf, int end) {
+        while (end > 0 && (buf[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return new String(buf, 0, end, StandardCharsets.ISO_8859_1);
+    }
+
+    /*
+     * Method for scanning the cells of a vector, i.e. the first numCols cells of the text */
+    static void parseVector(String text, String sep, int numCols, CellSink sink) {
+        int sepChar = separator(sep);
+        if (sepChar < 0 || sepChar == '\n') {
+            String[] cells = text.trim().split(sep);
+            for (int col = 0; col < numCols; col++) {
+                String cell = cells[col].trim();
+                sink.put(0, col, cell, 0, cell.length());
+            }
+            return;
+        }
+        parseCells(text, 0, text.length(), (char) sepChar, '\n', 0, numCols, sink, "the text");
+    }
+
+    /*
+     * Method for scanning the cells of a matrix with up to rowTotal rows of colTotal cells, missing rows are skipped */
+    static void parseMatrix(String text, String rowSep, String colSep, int rowTotal, int colTotal, CellSink sink) {
+        int rowChar = separator(rowSep);
+        int colChar = separator(colSep);
+        if (rowChar < 0 || colChar < 0 || rowChar == colChar || isBlank((char) rowChar) || rowSep.length() != 1) {
+            String[] rows = text.trim().split(rowSep);
+            for (int row = 0; row < rows.length && row < rowTotal; row++) {
+                String[] cells = rows[row].trim().split(colSep);
+                for (int col = 0; col < colTotal; col++) {
+                    String cell = cells[col].trim();
+                    sink.put(row, col, cell, 0, cell.length());
+                }
+            }
+            return;
+        }
+        parseRows(text, 0, text.length(), (char) colChar, (char) rowChar, 0, rowTotal, colTotal, sink, "the text");
+    }
+
+    /*
+     * Method for scanning the rows from pos on, the first of which is the row firstRow, up to the row rowTotal. The
+     * cells after the first colTotal cells of a row are ignored. */
+    static void parseRows(CharSequence text, int pos, int end, char colSep, char rowSep, int firstRow, int rowTotal, int colTotal,
+                          CellSink sink, String source) {
+        for (int row = firstRow; row < rowTotal && pos < end; row++) {
+            pos = parseCells(text, pos, end, colSep, rowSep, row, colTotal, sink, source);
+            while (pos < end && text.charAt(pos++) != rowSep) {
+                // Cells after the last column are ignored
+            }
+        }
+    }
+
+    /*
+     * Method for scanning numCols cells of a row from pos on, returns the position after the last of them */
+    static int parseCells(CharSequence text, int pos, int end, char sep, char rowSep, int row, int numCols, CellSink sink,
+                          String source) {
+        boolean blankSep = isBlank(sep);
+        for (int col = 0; col < numCols; col++) {
+            pos = skipBlanks(text, pos, end);
+            if (col > 0 && !blankSep) {
+                if (pos == end || text.charAt(pos) != sep) {
+                    throw new ArithmeticException("The row " + row + " of " + source + " has fewer than " + numCols + " elements!");
+                }
+                pos = skipBlanks(text, pos + 1, end);
+            }
+            int cellStart = pos;
+            while (pos < end && isCellChar(text.charAt(pos), sep, rowSep)) {
+                pos++;
+            }
+            if (pos == cellStart) {
+                throw new ArithmeticException("The row " + row + " of " + source + " has fewer than " + numCols + " elements!");
+            }
+            sink.put(row, col, text, cellStart, pos);
+        }
+        return pos;
+    }
+
+    /*
+     * Returns the separator as a character, or -1 if it has to be split as a regular expression */
+    static int separator(String sep) {
+        if (sep.equals("\\s+") || sep.equals(" +")) {
+            return ' ';
+        }
+        if (sep.length() != 1 || sep.charAt(0) > 127 || RegexCharacters.indexOf(sep.charAt(0)) >= 0) {
+            return -1;
+        }
+        return sep.charAt(0);
+    }
+
+    static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    static boolean isCellChar(char c, char sep, char rowSep) {
+        return c != sep && c != rowSep && !isBlank(c);
+    }
+
+    private static int skipBlanks(CharSequence text, int pos, int end) {
+        while (pos < end && isBlank(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /*
+     * The Schubfach algorithm for c 2^q, the decimal is scaled by 10^dk */
+    private static int putShortest(byte[] buf, int pos, int q, long c, int dk) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != 1L << 52 || q == -1074) {
+            // Regular spacing of the doubles around the value
+            cbl = cb - 2;
+            k = floorLog10Pow2(q);
+        } else {
+            // The spacing below a power of two is half of the spacing above it
+            cbl = cb - 1;
+            k = floorLog10ThreeQuartersPow2(q);
+        }
+        int h = q + floorLog2Pow10(-k) + 2;
+
+        int ind = 2 * (k - MinFormatExp10);
+        long g1 = FormatPowersOfTen[ind];
+        long g0 = FormatPowersOfTen[ind + 1];
+        // The value and the bounds of its rounding interval, times 10^-k and 4
+        long vb = roundToOdd(g1, g0, cb << h);
+        long vbl = roundToOdd(g1, g0, cbl << h);
+        long vbr = roundToOdd(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // One digit less if exactly one of the two decimals around s with that many digits is in the interval
+            long sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return putDecimal(buf, pos, upin ? sp10 : tp10, k);
+            }
+        }
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return putDecimal(buf, pos, uin ? s : t, k + dk);
+        }
+        // Both are in the interval, the closer one wins and the even one on a tie
+        long cmp = vb - (s + t << 1);
+        return putDecimal(buf, pos, cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk);
+    }
+
+    /*
+     * The product cp g 2^-127 rounded to odd, where g = g1 2^63 + g0 */
+    private static long roundToOdd(long g1, long g0, long cp) {
+        long x1 = multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | ((z & Mask63) + Mask63) >>> 63;
+    }
+
+    /*
+     * Writes f 10^e, f has at most 17 digits */
+    private static int putDecimal(byte[] buf, int pos, long f, int e) {
+        int len = floorLog10Pow2(64 - Long.numberOfLeadingZeros(f));
+        if (f >= LongPowersOfTen[len]) {
+            len += 1;
+        }
+        // f 10^e = 0.f 10^e after scaling f to 17 digits
+        f *= LongPowersOfTen[17 - len];
+        e += len;
+
+        // The first digit h, the next eight digits m and the last eight digits l
+        long hm = multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);
+        int m = (int) (hm - 100_000_000 * h);
+
+        if (0 < e && e <= 7) {
+            // Plain format without leading zeros
+            buf[pos++] = (byte) ('0' + h);
+            int y = fixedPoint28(m);
+            int i = 1;
+            for (; i < e; i++) {
+                int d = 10 * y;
+                buf[pos++] = (byte) ('0' + (d >>> 28));
+                y = d & Mask28;
+            }
+            buf[pos++] = '.';
+            for (; i <= 8; i++) {
+                int d = 10 * y;
+                buf[pos++] = (byte) ('0' + (d >>> 28));
+                y = d & Mask28;
+            }
+            return putLowDigits(buf, pos, l);
+        }
+        if (-3 < e && e <= 0) {
+            // Plain format with leading zeros
+            buf[pos++] = '0';
+            buf[pos++] = '.';
+            for (; e < 0; e++) {
+                buf[pos++] = '0';
+            }
+            buf[pos++] = (byte) ('0' + h);
+            pos = put8Digits(buf, pos, m);
+            return putLowDigits(buf, pos, l);
+        }
+        // Computerized scientific notation
+        buf[pos++] = (byte) ('0' + h);
+        buf[pos++] = '.';
+        pos = put8Digits(buf, pos, m);
+        pos = putLowDigits(buf, pos, l);
+        buf[pos++] = 'E';
+        return putInt(buf, pos, e - 1);
+    }
+
+    /*
+     * Writes the last eight digits without the zeros at the end, but keeps one digit after the decimal point */
+    private static int putLowDigits(byte[] buf, int pos, int l) {
+        if (l != 0) {
+            pos = put8Digits(buf, pos, l);
+        }
+        while (buf[pos - 1] == '0') {
+            pos--;
+        }
+        return buf[pos - 1] == '.' ? pos + 1 : pos;
+    }
+
+    /*
+     * Writes the eight digits of m from left to right, as the digits of a 28-bit binary fraction */
+    private static int put8Digits(byte[] buf, int pos, int m) {
+        int y = fixedPoint28(m);
+        for (int i = 0; i < 8; i++) {
+            int d = 10 * y;
+            buf[pos++] = (byte) ('0' + (d >>> 28));
+            y = d & Mask28;
+        }
+        return pos;
+    }
+
+    /*
+     * floor((a + 1) 2^28 / 10^8) - 1, for a below 10^8 */
+    private static int fixedPoint28(int a) {
+        return (int) (multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+    }
+
+    /*
+     * floor(log10(2^e)) */
+    private static int floorLog10Pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+    /*
+     * floor(log10(3/4 2^e)) */
+    private static int floorLog10ThreeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+    /*
+     * floor(log2(10^e)) */
+    private static int floorLog2Pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+    /*
+     * The high 64 bits of the unsigned 128-bit product */
+    private static long multiplyHigh(long a, long b) {
+        long aLo = a & 0xFFFFFFFFL;
+        long aHi = a >>> 32;
+        long bLo = b & 0xFFFFFFFFL;
+        long bHi = b >>> 32;
+        long loLo = aLo * bLo;
+        long hiLo = aHi * bLo;
+        long loHi = aLo * bHi;
+        long cross = (loLo >>> 32) + (hiLo & 0xFFFFFFFFL) + loHi;
+        return aHi * bHi + (hiLo >>> 32) + (cross >>> 32);
+    }
+
+    private static double parseSlow(CharSequence text, int start, int end) {
+        return Double.parseDouble(text(text, start, end));
+    }
+
+    private static String text(CharSequence text, int start, int end) {
+        return new StringBuilder(end - start).append(text, start, end).toString();
+    }
+}
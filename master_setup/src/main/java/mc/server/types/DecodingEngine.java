@@ -0,0 +1,138 @@
+package mc.server.types;
+
+/**
+ * Decodes the groups of one round straight from the receive buffer. <P> With the cyclic shift method, row node_in_group
+ * of group group_ind is the sub-row row_id of worker (1 + group_ind + node_in_group) % NumWorkers, where row_id is
+ * RecThreshold - 1 - node_in_group, because worker node_id computes the sub-rows node_id - RecThreshold to node_id - 1
+ * of the circle of NumWorkers sub-rows. Instead of copying these sub-rows into a rearranged matrix and multiplying it
+ * with the decoding matrix, the engine reads them in place and accumulates the product into a preallocated output
+ * buffer, so decoding a round allocates nothing. A group can also be decoded from other sub-rows, e.g. from the answer
+ * of a hedged request in a further row of the receive buffer.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class DecodingEngine {
+
+    private final int numWorkers;
+    private final int recThreshold;
+    private final int elastic_size;
+    private final TypeDenseMatrixDouble decoded;
+    // The workers and sub-rows of every group with the cyclic shift method
+    private final int[][] node_ids;
+    private final int[][] row_ids;
+
+    /**
+     * Constructor for class DecodingEngine.
+     *
+     * @param numWorkers   The number of workers, which is also the number of groups
+     * @param recThreshold Number of workers needed to decode one group
+     * @param elastic_size Number of values in one sub-row of a worker
+     */
+    public DecodingEngine(int numWorkers, int recThreshold, int elastic_size) {
+        this.numWorkers = numWorkers;
+        this.recThreshold = recThreshold;
+        this.elastic_size = elastic_size;
+        this.decoded = new TypeDenseMatrixDouble(numWorkers * recThreshold, elastic_size);
+        this.node_ids = new int[numWorkers][recThreshold];
+        this.row_ids = new int[numWorkers][recThreshold];
+        for (int group_ind = 0; group_ind < numWorkers; group_ind++) {
+            for (int node_in_this_group = 0; node_in_this_group < recThreshold; node_in_this_group++) {
+                this.node_ids[group_ind][node_in_this_group] = (1 + group_ind + node_in_this_group) % numWorkers;
+                this.row_ids[group_ind][node_in_this_group] = recThreshold - 1 - node_in_this_group;
+            }
+        }
+    }
+
+    /**
+     * Returns the output buffer, rows group_ind * RecThreshold to (group_ind + 1) * RecThreshold - 1 hold the decoded
+     * values of group group_ind. The buffer is reused in every round.
+     */
+    public TypeDenseMatrixDouble getDecoded() {
+        return this.decoded;
+    }
+
+    /**
+     * Method for decoding one group. Gives the same values, bit for bit, as rearranging the sub-rows and calling
+     * TypeMatrixDouble#matMatMultGiveMat, because every output value sums its terms in the same order.
+     *
+     * @param group_ind      Index of the group
+     * @param decodingMatrix The RecThreshold x RecThreshold decoding matrix of the group
+     * @param received       The receive buffer with one row of RecThreshold * elastic_size values per worker
+     */
+    public void decodeGroup(int group_ind, TypeMatrixDouble decodingMatrix, TypeDenseMatrixDouble received) {
+        decodeGroup(group_ind, decodingMatrix, received, this.node_ids[group_ind], this.row_ids[group_ind]);
+    }
+
+    /**
+     * Returns the workers of every group with the cyclic shift method, in the order of the rows of its decoding matrix.
+     * The arrays are shared and must not be modified.
+     */
+    public int[][] getNodeIds() {
+        return this.node_ids;
+    }
+
+    /**
+     * Returns the sub-row of every worker of every group with the cyclic shift method, see DecodingEngine#getNodeIds
+     */
+    public int[][] getRowIds() {
+        return this.row_ids;
+    }
+
+    /**
+     * Method for decoding one group from any sub-rows of the receive buffer
+     *
+     * @param group_ind      Index of the group
+     * @param decodingMatrix The RecThreshold x RecThreshold decoding matrix of the group, for the rows of the generator
+     *                       matrix the sub-rows are coded with, in the order of node_ids
+     * @param received       The receive buffer with rows of RecThreshold * elastic_size values
+     * @param node_ids       The rows of the receive buffer the sub-rows are in
+     * @param row_ids        The index of the sub-row within each of these rows
+     */
+    public void decodeGroup(int group_ind, TypeMatrixDouble decodingMatrix, TypeDenseMatrixDouble received, int[] node_ids, int[] row_ids) {
+        if (received.num_row() < this.numWorkers || received.num_col() < this.recThreshold * this.elastic_size) {
+            throw new ArithmeticException("The receive buffer does not match in size with the decoding engine!");
+        }
+
+        double[][] coef = decodingMatrix.GetMat();
+        double[] src = received.data;
+        double[] dst = this.decoded.data;
+        int len = this.elastic_size;
+
+        for (int out_row = 0; out_row < this.recThreshold; out_row++) {
+            int dstPos = this.decoded.offset + (group_ind * this.recThreshold + out_row) * this.decoded.stride;
+            double[] coefRow = coef[out_row];
+
+            java.util.Arrays.fill(dst, dstPos, dstPos + len, 0.0);
+            for (int node_in_this_group = 0; node_in_this_group < this.recThreshold; node_in_this_group++) {
+                int srcPos = received.offset + node_ids[node_in_this_group] * received.stride + row_ids[node_in_this_group] * len;
+                double c = coefRow[node_in_this_group];
+
+                for (int j = 0; j < len; j++) {
+                    dst[dstPos + j] += c * src[srcPos + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Method for the largest relative deviation of the decoded values of one group from their expected values. With a
+     * batch of input vectors, element j of a decoded row belongs to vector j % expected.length.
+     *
+     * @param group_ind Index of the group
+     * @param expected  The value every decoded element of each input vector should have
+     * @return Returns the maximum of |decoded - expected| / |expected|
+     */
+    public double maxRelativeError(int group_ind, double[] expected) {
+        double error = 0;
+        for (int out_row = 0; out_row < this.recThreshold; out_row++) {
+            int pos = this.decoded.offset + (group_ind * this.recThreshold + out_row) * this.decoded.stride;
+            for (int j = 0; j < this.elastic_size; j++) {
+                double target = expected[j % expected.length];
+                error = Math.max(error, Math.abs(this.decoded.data[pos + j] - target) / Math.abs(target));
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,107 @@
+package mc.server.types;
+
+/**
+ * Decodes the segments of one round straight from the receive buffer when the workers compute arcs of different
+ * lengths. <P> Row k of the receive buffer holds the products of worker k for the rows of its arc, batchSize values
+ * per row. A segment of the coded rows is decoded from the RecThreshold workers whose arcs cover it, each read in place
+ * at the offset where the segment lies in its arc, and the decoded values go to the columns of the segment in the
+ * RecThreshold rows of a preallocated output buffer, like DecodingEngine does for the groups of the cyclic shift
+ * method.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class SegmentDecodingEngine {
+
+    private final int numWorkers;
+    private final int recThreshold;
+    private final int batchSize;
+    private final TypeDenseMatrixDouble decoded;
+
+    /**
+     * Constructor for class SegmentDecodingEngine.
+     *
+     * @param numWorkers   The number of workers
+     * @param recThreshold Number of workers needed to decode one segment
+     * @param codedRows    Number of rows of the coded shard of a worker
+     * @param batchSize    Number of values per row, one per input vector
+     */
+    public SegmentDecodingEngine(int numWorkers, int recThreshold, int codedRows, int batchSize) {
+        this.numWorkers = numWorkers;
+        this.recThreshold = recThreshold;
+        this.batchSize = batchSize;
+        this.decoded = new TypeDenseMatrixDouble(recThreshold, codedRows * batchSize);
+    }
+
+    /**
+     * Returns the output buffer, row k holds the decoded values of the uncoded block k for all coded rows. The buffer is
+     * reused in every round.
+     */
+    public TypeDenseMatrixDouble getDecoded() {
+        return this.decoded;
+    }
+
+    /**
+     * Method for decoding one segment
+     *
+     * @param start          The first row of the segment
+     * @param rows           The number of rows of the segment
+     * @param node_ids       The RecThreshold workers that cover the segment, in the order of the rows of the decoding
+     *                       matrix
+     * @param offsets        For every worker, the row of the segment within its arc
+     * @param decodingMatrix The RecThreshold x RecThreshold decoding matrix of the segment
+     * @param received       The receive buffer with the products of one worker per row, and possibly further rows
+     *                       with the answers of hedged requests
+     */
+    public void decodeSegment(int start, int rows, int[] node_ids, int[] offsets, TypeMatrixDouble decodingMatrix,
+                              TypeDenseMatrixDouble received) {
+        int len = rows * this.batchSize;
+        if (received.num_row() < this.numWorkers || (start + rows) * this.batchSize > this.decoded.num_col()) {
+            throw new ArithmeticException("The segment does not match in size with the decoding engine!");
+        }
+
+        double[][] coef = decodingMatrix.GetMat();
+        double[] src = received.data;
+        double[] dst = this.decoded.data;
+
+        for (int out_row = 0; out_row < this.recThreshold; out_row++) {
+            int dstPos = this.decoded.offset + out_row * this.decoded.stride + start * this.batchSize;
+            double[] coefRow = coef[out_row];
+
+            java.util.Arrays.fill(dst, dstPos, dstPos + len, 0.0);
+            for (int node_in_segment = 0; node_in_segment < this.recThreshold; node_in_segment++) {
+                int srcPos = received.offset + node_ids[node_in_segment] * received.stride + offsets[node_in_segment] * this.batchSize;
+                if (offsets[node_in_segment] * this.batchSize + len > received.num_col()) {
+                    throw new ArithmeticException("The segment went out of the received row!");
+                }
+                double c = coefRow[node_in_segment];
+
+                for (int j = 0; j < len; j++) {
+                    dst[dstPos + j] += c * src[srcPos + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Method for the largest relative deviation of the decoded values of one segment from their expected values, see
+     * DecodingEngine#maxRelativeError
+     *
+     * @param start    The first row of the segment
+     * @param rows     The number of rows of the segment
+     * @param expected The value every decoded element of each input vector should have
+     * @return Returns the maximum of |decoded - expected| / |expected|
+     */
+    public double maxRelativeError(int start, int rows, double[] expected) {
+        double error = 0;
+        for (int out_row = 0; out_row < this.recThreshold; out_row++) {
+            int pos = this.decoded.offset + out_row * this.decoded.stride + start * this.batchSize;
+            for (int j = 0; j < rows * this.batchSize; j++) {
+                double target = expected[j % expected.length];
+                error = Math.max(error, Math.abs(this.decoded.data[pos + j] - target) / Math.abs(target));
+            }
+        }
+        return error;
+    }
+}
@@ -0,0 +1,243 @@
+package mc.server.types;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+
+/**
+ * Defines a TypeDenseMatrixDouble object. <P> Stores the matrix in a single row-major double array instead of one array
+ * per row, so that a receive buffer or a block of decoded values is one contiguous block without a header per row. Row i starts at
+ * offset + i * stride of the backing array. Row and sub-row accessors return views of the backing array, and
+ * sub-matrices share the backing array with a stride, so none of them copies the data.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TypeDenseMatrixDouble {
+
+    final double[] data;
+    final int offset;
+    final int stride;
+    private final int colTotal;
+    private final int rowTotal;
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Creates a TypeDenseMatrixDouble object with all values initialized
+     * to 0.0.
+     *
+     * @param row Number of rows in the matrix
+     * @param col Number of columns in the matrix
+     */
+    public TypeDenseMatrixDouble(int row, int col) {
+        this(row, col, new double[Math.multiplyExact(row, col)]);
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Wraps a row-major data vector without copying it.
+     *
+     * @param row    Number of rows in the matrix
+     * @param col    Number of columns in the matrix
+     * @param vectIn The row-major data vector, at least row * col long
+     */
+    public TypeDenseMatrixDouble(int row, int col, double[] vectIn) {
+        this(row, col, vectIn, 0, col);
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Wraps a region of a row-major backing array without copying it.
+     *
+     * @param row    Number of rows in the matrix
+     * @param col    Number of columns in the matrix
+     * @param data   The backing array
+     * @param offset Index in the backing array of the first element of the first row
+     * @param stride Distance in the backing array between the first elements of two consecutive rows
+     */
+    public TypeDenseMatrixDouble(int row, int col, double[] data, int offset, int stride) {
+        if (stride < col || (row > 0 && offset + (long) (row - 1) * stride + col > data.length)) {
+            throw new ArithmeticException("The matrix does not fit in the backing array!");
+        }
+        this.rowTotal = row;
+        this.colTotal = col;
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Copies a TypeMatrixDouble object into contiguous storage.
+     *
+     * @param matIn The matrix to be copied
+     */
+    public TypeDenseMatrixDouble(TypeMatrixDouble matIn) {
+        this(matIn.GetMat().length, matIn.GetMat().length == 0 ? 0 : matIn.GetMat()[0].length);
+        double[][] rows = matIn.GetMat();
+        for (int i = 0; i < this.rowTotal; i++) {
+            System.arraycopy(rows[i], 0, this.data, i * this.stride, this.colTotal);
+        }
+    }
+
+    /**
+     * Method for returning the number of rows
+     */
+    public int num_row() {
+        return this.rowTotal;
+    }
+
+    /**
+     * Method for returning the number of cols
+     */
+    public int num_col() {
+        return this.colTotal;
+    }
+
+    /**
+     * Returns the element in the given row and column
+     */
+    public double get(int row_ind, int col_ind) {
+        return this.data[this.offset + row_ind * this.stride + col_ind];
+    }
+
+    /**
+     * Method for getting a row of the matrix as a view of the backing array
+     *
+     * @param row_ind Index of the row
+     * @return Returns a TypeVectorDoubleView of the row, writes through to this matrix
+     */
+    public TypeVectorDoubleView GetRow(int row_ind) {
+        return sub_row(row_ind, 0, this.colTotal);
+    }
+
+    /**
+     * Method for getting a subrow of the matrix as a view of the backing array
+     *
+     * @param row_ind  Index of the row
+     * @param start_id Index of the first column of the subrow
+     * @param length   Number of elements in the subrow
+     * @return Returns a TypeVectorDoubleView of the subrow, writes through to this matrix
+     */
+    public TypeVectorDoubleView sub_row(int row_ind, int start_id, int length) {
+        if (start_id + length > this.colTotal) {
+            throw new ArithmeticException("The subvector went out of index range!");
+        }
+        return new TypeVectorDoubleView(this.data, this.offset + row_ind * this.stride + start_id, length, 1);
+    }
+
+    /**
+     * Method for getting consecutive rows of the matrix as a matrix that shares the backing array
+     *
+     * @param start_row Index of the first row
+     * @param numRow    Number of rows
+     * @return Returns a TypeDenseMatrixDouble view of the rows, writes through to this matrix
+     */
+    public TypeDenseMatrixDouble sub_rows(int start_row, int numRow) {
+        if (start_row + numRow > this.rowTotal) {
+            throw new ArithmeticException("The submatrix went out of index range!");
+        }
+        return new TypeDenseMatrixDouble(numRow, this.colTotal, this.data, this.offset + start_row * this.stride, this.stride);
+    }
+
+    /**
+     * Method for setting a particular row
+     */
+    public void set_row(int row_ind, TypeVectorDouble vec) {
+        System.arraycopy(vec.vect, 0, this.data, this.offset + row_ind * this.stride, this.colTotal);
+    }
+
+    /**
+     * Method for setting a particular row from a view, for example a row of another TypeDenseMatrixDouble
+     */
+    public void set_row(int row_ind, TypeVectorDoubleView vec) {
+        if (vec.length() != this.colTotal) {
+            throw new ArithmeticException("The matrix being set does not match in size with the input!");
+        }
+        vec.copyTo(this.data, this.offset + row_ind * this.stride);
+    }
+
+    /**
+     * Method for converting a matrix to a data vector. If the rows are stored back to back, the backing array itself
+     * is returned and shares its content with this matrix.
+     *
+     * @return Returns the row-major data of the matrix
+     */
+    public double[] toVect() {
+        int size = this.rowTotal * this.colTotal;
+        if (this.offset == 0 && this.stride == this.colTotal && this.data.length == size) {
+            return this.data;
+        }
+        double[] vect = new double[size];
+        for (int i = 0; i < this.rowTotal; i++) {
+            System.arraycopy(this.data, this.offset + i * this.stride, vect, i * this.colTotal, this.colTotal);
+        }
+        return vect;
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeDenseMatrixDouble
+     *
+     * @param matIn Length-prefixed little-endian binary frame, see BinaryCodec#putMatrix
+     */
+    public void deserializeBinary(byte[] matIn) {
+        ByteBuffer buf = BinaryCodec.wrap(matIn);
+        int[] shape = BinaryCodec.getShape(buf, this.rowTotal, this.colTotal, Double.BYTES);
+        int row = shape[0];
+        int col = shape[1];
+        if (col != this.colTotal) {
+            throw new ArithmeticException("The received matrix does not match in size with the destination!");
+        }
+        for (int i = 0; i < row; i++) {
+            buf.asDoubleBuffer().get(this.data, this.offset + i * this.stride, col);
+            buf.position(buf.position() + col * Double.BYTES);
+        }
+    }
+
+    /**
+     * Method to deserialize the binary frame of a vector into one row, see TypeVectorDouble#deserializeBinary
+     *
+     * @param row_ind Index of the row
+     * @param vectIn  Length-prefixed little-endian binary frame of at most num_col() elements
+     */
+    public void deserializeBinaryRow(int row_ind, byte[] vectIn) {
+        ByteBuffer buf = BinaryCodec.wrap(vectIn);
+        int length = BinaryCodec.getLength(buf, this.colTotal, Double.BYTES);
+        buf.asDoubleBuffer().get(this.data, this.offset + row_ind * this.stride, length);
+    }
+
+    /**
+     * Method for serializing object TypeDenseMatrixDouble to a binary frame, the same frame as
+     * TypeMatrixDouble#serializeBinary
+     *
+     * @return Returns a length-prefixed little-endian binary frame
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + this.rowTotal * this.colTotal * Double.BYTES);
+        buf.putInt(this.rowTotal);
+        buf.putInt(this.colTotal);
+        for (int i = 0; i < this.rowTotal; i++) {
+            buf.asDoubleBuffer().put(this.data, this.offset + i * this.stride, this.colTotal);
+            buf.position(buf.position() + this.colTotal * Double.BYTES);
+        }
+        return buf.array();
+    }
+
+    /**
+     * Method to write an object of type TypeDenseMatrixDouble to specified file, in the same format as
+     * TypeMatrixDouble#writeMatToFile
+     *
+     * @param fpath  The full path to the file where the matrix is to be written
+     * @param colSep Character separator to be used to separate matrix column elements
+     * @param rowSep Character separator to be used to separate matrix rows
+     * @throws IOException if writing to file fails
+     */
+    public void writeMatToFile(String fpath, String colSep, String rowSep) throws IOException {
+        PrintWriter matWriter = new PrintWriter(new FileWriter(fpath));
+        for (int i = 0; i < this.rowTotal; i++) {
+            for (int j = 0; j < this.colTotal; j++) {
+                matWriter.print(get(i, j) + colSep);
+            }
+            matWriter.print(rowSep);
+        }
+        matWriter.close();
+    }
+}
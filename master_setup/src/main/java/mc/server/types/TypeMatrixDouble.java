@@ -1,6 +1,7 @@
 package mc.server.types;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 import mc.server.types.TypeVectorDouble;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
@@ -96,7 +97,7 @@ public class TypeMatrixDouble {
 
     /**
      * Constructor for class TypeMatrixDouble. Creates a TypeMatrixDouble object with values read from the specified
-     * filepath.
+     * filepath in parallel, see TextLoader.
      *
      * @param row      Number of rows in the matrix
      * @param col      Number of columns in the matrix
@@ -110,20 +111,7 @@ public class TypeMatrixDouble {
         this.mat = new double[row][col];
 
         try {
-            BufferedReader brMat = new BufferedReader(new FileReader(filepath));
-            String rowLine;
-            int i = 0;
-
-            while ((rowLine = brMat.readLine()) != null && (i < row)) {
-                String rowLineArr[] = rowLine.trim().split(colSep);
-                for (int j = 0; j < col; j++) {
-                    this.mat[i][j] = Double.parseDouble(rowLineArr[j]);
-                }
-                i++;
-            }
-
-            brMat.close();
-
+            TextLoader.readMatrix(filepath, colSep, this.mat);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -133,6 +121,22 @@ public class TypeMatrixDouble {
         return this.mat;
     }
 
+    /**
+     * Method for a fingerprint of the size and the elements of the matrix, so that the master and a worker can tell
+     * whether they hold the same generator matrix without sending it
+     *
+     * @return Returns a 64-bit hash, the same for matrices with the same size and bitwise the same elements
+     */
+    public long fingerprint() {
+        long hash = 31L * this.rowTotal + this.colTotal;
+        for (int i = 0; i < this.rowTotal; i++) {
+            for (int j = 0; j < this.colTotal; j++) {
+                hash = 31L * hash + Double.doubleToLongBits(this.mat[i][j]);
+            }
+        }
+        return hash;
+    }
+
     /**
      * Method for matrix vector multiplication
      *
@@ -309,14 +313,8 @@ public class TypeMatrixDouble {
      * @param colSep Character separator used to separate matrix column elements
      */
     public void deserialize(String matIn, String rowSep, String colSep) {
-        String[] rows = matIn.trim().split(rowSep);
-
-        for (int i = 0; i < rows.length; i++) {
-            String[] rowArr = rows[i].trim().split(colSep);
-            for (int j = 0; j < rowArr.length; j++) {
-                this.mat[i][j] = Double.parseDouble(rowArr[j]);
-            }
-        }
+        DecimalCodec.parseMatrix(matIn, rowSep, colSep, this.rowTotal, this.colTotal,
+                (row, col, text, start, end) -> this.mat[row][col] = DecimalCodec.parseDouble(text, start, end));
     }
 
     /**
@@ -327,16 +325,39 @@ public class TypeMatrixDouble {
      * @return Returns a string serialized using the given column and row separators
      */
     public String serialize(String rowSep, String colSep) {
-        StringBuilder matBuilder = new StringBuilder();
+        byte[] matText = new byte[this.rowTotal * (this.colTotal * (DecimalCodec.MAX_DOUBLE_CHARS + colSep.length()) + rowSep.length())];
+        int pos = 0;
 
         for (int i = 0; i < this.rowTotal; i++) {
             for (int j = 0; j < this.colTotal; j++) {
-                matBuilder.append(this.mat[i][j]).append(colSep);
+                pos = DecimalCodec.putDouble(matText, pos, this.mat[i][j]);
+                pos = DecimalCodec.putText(matText, pos, colSep);
             }
-            matBuilder.deleteCharAt(matBuilder.length() - 1).append(rowSep);
+            // The last column separator is replaced by the row separator
+            pos = DecimalCodec.putText(matText, pos - 1, rowSep);
         }
 
-        return matBuilder.toString().trim();
+        return DecimalCodec.toTrimmedString(matText, pos);
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeMatrixDouble
+     *
+     * @param matIn Length-prefixed little-endian binary frame, see BinaryCodec#getMatrix
+     */
+    public void deserializeBinary(byte[] matIn) {
+        BinaryCodec.getMatrix(BinaryCodec.wrap(matIn), this.mat);
+    }
+
+    /**
+     * Method for serializing object TypeMatrixDouble to a binary frame
+     *
+     * @return Returns a length-prefixed little-endian binary frame, see BinaryCodec#putMatrix
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + this.rowTotal * this.colTotal * Double.BYTES);
+        BinaryCodec.putMatrix(buf, this.mat, this.rowTotal, this.colTotal);
+        return buf.array();
     }
 
     /**
@@ -1,6 +1,7 @@
 package mc.server.types;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -67,7 +68,7 @@ public class TypeMatrixInt {
 
     /**
      * Constructor for class TypeMatrixInt. Creates a TypeMatrixInt object with values read from the specified
-     * filepath.
+     * filepath in parallel, see TextLoader.
      *
      * @param row      Number of rows in the matrix
      * @param col      Number of columns in the matrix
@@ -81,20 +82,7 @@ public class TypeMatrixInt {
         this.mat = new int[row][col];
 
         try {
-            BufferedReader brMat = new BufferedReader(new FileReader(filepath));
-            String rowLine;
-            int i = 0;
-
-            while ((rowLine = brMat.readLine()) != null && (i < row)) {
-                String rowLineArr[] = rowLine.trim().split(colSep);
-                for (int j = 0; j < col; j++) {
-                    this.mat[i][j] = Integer.parseInt(rowLineArr[j]);
-                }
-                i++;
-            }
-
-            brMat.close();
-
+            TextLoader.readMatrix(filepath, colSep, this.mat);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -155,14 +143,8 @@ public class TypeMatrixInt {
      * @param colSep Character separator to be used to separate matrix column elements
      */
     public void deserialize(String matIn, String rowSep, String colSep) {
-        String[] rows = matIn.trim().split(rowSep);
-
-        for (int i = 0; i < rows.length; i++) {
-            String[] rowArr = rows[i].trim().split(colSep);
-            for (int j = 0; j < rowArr.length; j++) {
-                this.mat[i][j] = Integer.parseInt(rowArr[j]);
-            }
-        }
+        DecimalCodec.parseMatrix(matIn, rowSep, colSep, this.rowTotal, this.colTotal,
+                (row, col, text, start, end) -> this.mat[row][col] = DecimalCodec.parseInt(text, start, end));
     }
 
     /**
@@ -173,16 +155,39 @@ public class TypeMatrixInt {
      * @return Returns a string serialized using the given column and row separators
      */
     public String serialize(String rowSep, String colSep) {
-        StringBuilder matBuilder = new StringBuilder();
+        byte[] matText = new byte[this.rowTotal * (this.colTotal * (DecimalCodec.MAX_INT_CHARS + colSep.length()) + rowSep.length())];
+        int pos = 0;
 
         for (int i = 0; i < this.rowTotal; i++) {
             for (int j = 0; j < this.colTotal; j++) {
-                matBuilder.append(this.mat[i][j]).append(colSep);
+                pos = DecimalCodec.putInt(matText, pos, this.mat[i][j]);
+                pos = DecimalCodec.putText(matText, pos, colSep);
             }
-            matBuilder.deleteCharAt(matBuilder.length() - 1).append(rowSep);
+            // The last column separator is replaced by the row separator
+            pos = DecimalCodec.putText(matText, pos - 1, rowSep);
         }
 
-        return matBuilder.toString().trim();
+        return DecimalCodec.toTrimmedString(matText, pos);
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeMatrixInt
+     *
+     * @param matIn Length-prefixed little-endian binary frame, see BinaryCodec#getMatrix
+     */
+    public void deserializeBinary(byte[] matIn) {
+        BinaryCodec.getMatrix(BinaryCodec.wrap(matIn), this.mat);
+    }
+
+    /**
+     * Method for serializing object TypeMatrixInt to a binary frame
+     *
+     * @return Returns a length-prefixed little-endian binary frame, see BinaryCodec#putMatrix
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + this.rowTotal * this.colTotal * Integer.BYTES);
+        BinaryCodec.putMatrix(buf, this.mat, this.rowTotal, this.colTotal);
+        return buf.array();
     }
 
     /**
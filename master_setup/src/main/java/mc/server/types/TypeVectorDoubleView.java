@@ -0,0 +1,104 @@
+package mc.server.types;
+
+/**
+ * Defines a TypeVectorDoubleView object. <P> A view of consecutive elements of a backing double array, used for the
+ * rows and sub-rows of TypeDenseMatrixDouble. Reading and writing through the view reads and writes the backing array,
+ * nothing is copied.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TypeVectorDoubleView {
+
+    final double[] data;
+    final int offset;
+    final int stride;
+    private final int rowTotal;
+
+    /**
+     * Constructor for class TypeVectorDoubleView.
+     *
+     * @param data   The backing array
+     * @param offset Index in the backing array of the first element
+     * @param length Number of elements in the view
+     * @param stride Distance in the backing array between two consecutive elements, 1 for a row of a row-major matrix
+     */
+    public TypeVectorDoubleView(double[] data, int offset, int length, int stride) {
+        if (length > 0 && offset + (long) (length - 1) * stride >= data.length) {
+            throw new ArithmeticException("The view went out of index range!");
+        }
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.rowTotal = length;
+    }
+
+    /**
+     * Returns the number of elements in the view
+     */
+    public int length() {
+        return this.rowTotal;
+    }
+
+    /**
+     * Returns the element at the given index of the view
+     */
+    public double get(int ind) {
+        return this.data[this.offset + ind * this.stride];
+    }
+
+    /**
+     * Sets the element at the given index of the view, which writes through to the backing array
+     */
+    public void set(int ind, double num) {
+        this.data[this.offset + ind * this.stride] = num;
+    }
+
+    /**
+     * Method for view vector dot product
+     *
+     * @param vectIn Object of type TypeVectorDouble to be multiplied with this view, at least as long as the view
+     * @return The double value element as a result of the dot product
+     */
+    public double vectDotProd(TypeVectorDouble vectIn) {
+        double dotProd = 0;
+        int pos = this.offset;
+
+        for (int i = 0; i < this.rowTotal; i++) {
+            dotProd += this.data[pos] * vectIn.vect[i];
+            pos += this.stride;
+        }
+
+        return dotProd;
+    }
+
+    /**
+     * Method for copying the view into an array
+     *
+     * @param dest   Destination array
+     * @param offset Index in the destination array of the first element
+     */
+    public void copyTo(double[] dest, int offset) {
+        if (this.stride == 1) {
+            System.arraycopy(this.data, this.offset, dest, offset, this.rowTotal);
+            return;
+        }
+        int pos = this.offset;
+        for (int i = 0; i < this.rowTotal; i++) {
+            dest[offset + i] = this.data[pos];
+            pos += this.stride;
+        }
+    }
+
+    /**
+     * Method for copying the view into a new TypeVectorDouble object
+     *
+     * @return Returns a TypeVectorDouble object that does not share the backing array
+     */
+    public TypeVectorDouble toVectorDouble() {
+        double[] vect = new double[this.rowTotal];
+        copyTo(vect, 0);
+        return new TypeVectorDouble(this.rowTotal, vect);
+    }
+}
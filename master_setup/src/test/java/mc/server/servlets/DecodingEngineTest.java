@@ -0,0 +1,244 @@
+package mc.server.servlets;
+
+import junit.framework.TestCase;
+import mc.server.types.DecodingEngine;
+import mc.server.types.TypeDenseMatrixDouble;
+import mc.server.types.TypeMatrixDouble;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests DecodingEngine against the rearranged matrix multiplication it replaces: for rings of different sizes and with
+ * different worker ids, every group decoded in place matches, bit for bit, the sub-rows of its workers copied into a
+ * RecThreshold x elastic_size matrix and multiplied with the decoding matrix by TypeMatrixDouble#matMatMultGiveMat, and
+ * both give back the uncoded products.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class DecodingEngineTest extends TestCase {
+
+    private static final int RecThreshold = 10;
+    private static final int MaxWorkers = 20;
+    private static final int ElasticSize = 7;
+
+    private final Random rand = new Random(42);
+    private final TypeMatrixDouble generator = randomMatrix(MaxWorkers, RecThreshold);
+
+    public void testFirstWorkers() {
+        for (int numWorkers : new int[]{10, 12, 15, 18, 20}) {
+            assertDecodesAllGroups(DecodingMatrixCache.firstWorkers(numWorkers));
+        }
+    }
+
+    public void testOtherWorkerIds() {
+        // A ring where workers have left, and one where the workers have rejoined in another order
+        assertDecodesAllGroups(new int[]{0, 2, 3, 5, 7, 8, 11, 13, 16, 19});
+        assertDecodesAllGroups(new int[]{14, 3, 19, 0, 7, 11, 5, 17, 2, 9, 12, 6});
+        assertDecodesAllGroups(shuffledIds(MaxWorkers));
+        assertDecodesAllGroups(shuffledIds(15));
+    }
+
+    public void testHedgedRows() {
+        int[] memberIds = DecodingMatrixCache.firstWorkers(12);
+        int numWorkers = memberIds.length;
+        double[][][] uncoded = uncodedProducts(numWorkers);
+
+        // The answer of a hedged request for the late worker at position 4 goes to the extra row numWorkers, it has
+        // sub-row group_ind coded with the generator row of worker 17
+        int late = 4;
+        int helperId = 17;
+        double[][] rows = workerRows(memberIds, uncoded, numWorkers + 1);
+        DecodingEngine engine = new DecodingEngine(numWorkers, RecThreshold, ElasticSize);
+
+        for (int group_ind = 0; group_ind < numWorkers; group_ind++) {
+            int[] node_ids = engine.getNodeIds()[group_ind].clone();
+            int[] row_ids = engine.getRowIds()[group_ind].clone();
+            int[] groupIds = new int[RecThreshold];
+            boolean hedged = false;
+            for (int j = 0; j < RecThreshold; j++) {
+                groupIds[j] = memberIds[node_ids[j]];
+                if (node_ids[j] == late) {
+                    node_ids[j] = numWorkers;
+                    row_ids[j] = 0;
+                    groupIds[j] = helperId;
+                    hedged = true;
+                }
+            }
+            System.arraycopy(codedSubRow(helperId, uncoded, group_ind), 0, rows[numWorkers], 0, ElasticSize);
+            TypeDenseMatrixDouble received = receiveBuffer(rows);
+
+            TypeMatrixDouble decodingMatrix = generatorRows(groupIds).matInv();
+            engine.decodeGroup(group_ind, decodingMatrix, received, node_ids, row_ids);
+            assertSameAsMatMult(engine, group_ind, decodingMatrix, received, node_ids, row_ids);
+            assertUncoded(engine, group_ind, uncoded);
+            assertEquals((late - 1 - group_ind + numWorkers) % numWorkers < RecThreshold, hedged);
+        }
+    }
+
+    public void testReusedBuffer() {
+        int[] memberIds = shuffledIds(18);
+        TypeMatrixDouble[] decodingMatrices = DecodingMatrixCache.select_encoding_matrix(this.generator, memberIds, RecThreshold);
+        DecodingEngine engine = new DecodingEngine(memberIds.length, RecThreshold, ElasticSize);
+
+        // A second round overwrites the decoded values of the first one instead of adding to them
+        for (int round = 0; round < 2; round++) {
+            double[][][] uncoded = uncodedProducts(memberIds.length);
+            TypeDenseMatrixDouble received = receiveBuffer(workerRows(memberIds, uncoded, memberIds.length));
+            for (int group_ind = memberIds.length - 1; group_ind >= 0; group_ind--) {
+                engine.decodeGroup(group_ind, decodingMatrices[group_ind], received);
+                assertUncoded(engine, group_ind, uncoded);
+            }
+        }
+    }
+
+    public void testReceiveBufferTooSmall() {
+        DecodingEngine engine = new DecodingEngine(12, RecThreshold, ElasticSize);
+        TypeMatrixDouble decodingMatrix = DecodingMatrixCache.select_encoding_matrix(this.generator,
+                DecodingMatrixCache.firstWorkers(12), RecThreshold)[0];
+        try {
+            engine.decodeGroup(0, decodingMatrix, new TypeDenseMatrixDouble(11, RecThreshold * ElasticSize));
+            fail("The receive buffer has fewer rows than workers");
+        } catch (ArithmeticException expected) {
+            // The buffer is rejected
+        }
+        try {
+            engine.decodeGroup(0, decodingMatrix, new TypeDenseMatrixDouble(12, RecThreshold * ElasticSize - 1));
+            fail("The receive buffer has rows shorter than RecThreshold sub-rows");
+        } catch (ArithmeticException expected) {
+            // The buffer is rejected
+        }
+    }
+
+    private void assertDecodesAllGroups(int[] memberIds) {
+        int numWorkers = memberIds.length;
+        double[][][] uncoded = uncodedProducts(numWorkers);
+        TypeDenseMatrixDouble received = receiveBuffer(workerRows(memberIds, uncoded, numWorkers));
+
+        TypeMatrixDouble[] decodingMatrices = DecodingMatrixCache.select_encoding_matrix(this.generator, memberIds, RecThreshold);
+        DecodingEngine engine = new DecodingEngine(numWorkers, RecThreshold, ElasticSize);
+        for (int group_ind = 0; group_ind < numWorkers; group_ind++) {
+            engine.decodeGroup(group_ind, decodingMatrices[group_ind], received);
+            assertSameAsMatMult(engine, group_ind, decodingMatrices[group_ind], received,
+                    engine.getNodeIds()[group_ind], engine.getRowIds()[group_ind]);
+            assertUncoded(engine, group_ind, uncoded);
+        }
+    }
+
+    /*
+     * Compares the decoded group with the decoding matrix times the rearranged sub-rows */
+    private static void assertSameAsMatMult(DecodingEngine engine, int group_ind, TypeMatrixDouble decodingMatrix,
+                                            TypeDenseMatrixDouble received, int[] node_ids, int[] row_ids) {
+        TypeMatrixDouble rearranged = new TypeMatrixDouble(RecThreshold, ElasticSize);
+        for (int j = 0; j < RecThreshold; j++) {
+            for (int e = 0; e < ElasticSize; e++) {
+                rearranged.GetMat()[j][e] = received.get(node_ids[j], row_ids[j] * ElasticSize + e);
+            }
+        }
+        double[][] expected = decodingMatrix.matMatMultGiveMat(rearranged).GetMat();
+
+        TypeDenseMatrixDouble decoded = engine.getDecoded();
+        for (int k = 0; k < RecThreshold; k++) {
+            for (int e = 0; e < ElasticSize; e++) {
+                assertEquals("Group " + group_ind + ", row " + k + ", element " + e,
+                        Double.doubleToRawLongBits(expected[k][e]),
+                        Double.doubleToRawLongBits(decoded.get(group_ind * RecThreshold + k, e)));
+            }
+        }
+    }
+
+    private static void assertUncoded(DecodingEngine engine, int group_ind, double[][][] uncoded) {
+        TypeDenseMatrixDouble decoded = engine.getDecoded();
+        for (int k = 0; k < RecThreshold; k++) {
+            for (int e = 0; e < ElasticSize; e++) {
+                double target = uncoded[k][group_ind][e];
+                assertEquals(target, decoded.get(group_ind * RecThreshold + k, e), 1e-8 * Math.abs(target));
+            }
+        }
+    }
+
+    /*
+     * The product of uncoded block k with the input vectors, for every sub-row of the circle */
+    private double[][][] uncodedProducts(int numWorkers) {
+        double[][][] uncoded = new double[RecThreshold][numWorkers][ElasticSize];
+        for (double[][] block : uncoded) {
+            for (double[] subRow : block) {
+                for (int e = 0; e < ElasticSize; e++) {
+                    subRow[e] = 1 + this.rand.nextDouble();
+                }
+            }
+        }
+        return uncoded;
+    }
+
+    /*
+     * The worker at position p computes the sub-rows p - RecThreshold to p - 1 of the circle, coded with the generator
+     * row of its id. Further rows are left for the answers of hedged requests. */
+    private double[][] workerRows(int[] memberIds, double[][][] uncoded, int numRows) {
+        int numWorkers = memberIds.length;
+        double[][] rows = new double[numRows][RecThreshold * ElasticSize];
+        for (int p = 0; p < numWorkers; p++) {
+            for (int r = 0; r < RecThreshold; r++) {
+                int subRow = ((p - RecThreshold + r) % numWorkers + numWorkers) % numWorkers;
+                System.arraycopy(codedSubRow(memberIds[p], uncoded, subRow), 0, rows[p], r * ElasticSize, ElasticSize);
+            }
+        }
+        return rows;
+    }
+
+    /*
+     * Copies the rows into a receive buffer that does not start at the beginning of its backing array and has padding
+     * between its rows, the engine has to honor the offset and the stride */
+    private static TypeDenseMatrixDouble receiveBuffer(double[][] rows) {
+        int col = RecThreshold * ElasticSize;
+        int offset = 3;
+        int stride = col + 5;
+        double[] data = new double[offset + rows.length * stride];
+        Arrays.fill(data, Double.NaN);
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, data, offset + i * stride, col);
+        }
+        return new TypeDenseMatrixDouble(rows.length, col, data, offset, stride);
+    }
+
+    private double[] codedSubRow(int id, double[][][] uncoded, int subRow) {
+        double[] coded = new double[ElasticSize];
+        for (int k = 0; k < RecThreshold; k++) {
+            for (int e = 0; e < ElasticSize; e++) {
+                coded[e] += this.generator.GetMat()[id][k] * uncoded[k][subRow][e];
+            }
+        }
+        return coded;
+    }
+
+    private TypeMatrixDouble generatorRows(int[] ids) {
+        TypeMatrixDouble rows = new TypeMatrixDouble(RecThreshold, RecThreshold);
+        for (int j = 0; j < RecThreshold; j++) {
+            rows.set_row(j, this.generator, ids[j]);
+        }
+        return rows;
+    }
+
+    private int[] shuffledIds(int numWorkers) {
+        int[] ids = DecodingMatrixCache.firstWorkers(MaxWorkers);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = this.rand.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return Arrays.copyOf(ids, numWorkers);
+    }
+
+    private TypeMatrixDouble randomMatrix(int row, int col) {
+        double[][] mat = new double[row][col];
+        for (double[] matRow : mat) {
+            for (int j = 0; j < col; j++) {
+                matRow[j] = this.rand.nextGaussian();
+            }
+        }
+        return new TypeMatrixDouble(row, col, mat);
+    }
+}
@@ -0,0 +1,246 @@
+package mc.server.servlets;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Tests when GroupCollector hands out a group of the cyclic shift method: as soon as all of its workers have answered,
+ * and never while it misses the rows of a failed worker. Such a group waits for the hedged requests that can bring the
+ * rows, and the round fails once none can, both with and without hedging.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class GroupCollectorTest extends TestCase {
+
+    private static final int RecThreshold = 10;
+    private static final int NumWorkers = 12;
+
+    private final int[][] nodesOfGroup = cyclicGroups(NumWorkers);
+
+    public void testGroupReadyWhenItsWorkersAnswered() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, false);
+        int[] order = {7, 2, 11, 0, 5, 9, 1, 4, 10, 3, 8, 6};
+        BitSet answered = new BitSet(NumWorkers);
+        BitSet handedOut = new BitSet(NumWorkers);
+
+        for (int node_id : order) {
+            collector.onNodeReceived(node_id);
+            answered.set(node_id);
+            // Exactly the groups whose workers have all answered are handed out, each once
+            for (int group_ind = 0; group_ind < NumWorkers; group_ind++) {
+                if (!handedOut.get(group_ind) && allAnswered(this.nodesOfGroup[group_ind], answered)) {
+                    int ready = collector.takeReadyGroup();
+                    assertFalse(handedOut.get(ready));
+                    assertTrue(allAnswered(this.nodesOfGroup[ready], answered));
+                    handedOut.set(ready);
+                }
+            }
+            assertEquals(handedOut.cardinality(), countComplete(answered));
+        }
+        assertEquals(NumWorkers, handedOut.cardinality());
+        assertTrue(Arrays.equals(order, collector.answeredInOrder()));
+    }
+
+    public void testRepeatedAnswerIgnored() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, false);
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            collector.onNodeReceived(node_id);
+            collector.onNodeReceived(0);
+        }
+        collector.onNodeFailed(5);
+        assertEquals(0, collector.failedNodes().length);
+        assertTrue(Arrays.equals(DecodingMatrixCache.firstWorkers(NumWorkers), collector.answeredInOrder()));
+        assertEquals(NumWorkers, takeAll(collector, NumWorkers).cardinality());
+    }
+
+    public void testFailedWorkerWithoutHedging() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, false);
+        collector.onNodeFailed(3);
+        assertTrue(collector.isAnswered(3));
+        assertTrue(Arrays.equals(new int[]{3}, collector.failedNodes()));
+        // Without hedging nothing can bring the rows, the round fails right away
+        collector.checkFailedRows();
+        assertFailed(collector);
+
+        // The groups without the failed worker are still handed out, before the failure
+        collector = new GroupCollector(NumWorkers, this.nodesOfGroup, false);
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            if (node_id == 3) {
+                collector.onNodeFailed(node_id);
+            } else {
+                collector.onNodeReceived(node_id);
+            }
+        }
+        collector.checkFailedRows();
+        BitSet ready = takeAll(collector, countWithout(3));
+        for (int group_ind = ready.nextSetBit(0); group_ind >= 0; group_ind = ready.nextSetBit(group_ind + 1)) {
+            assertFalse(contains(this.nodesOfGroup[group_ind], 3));
+        }
+        assertFailed(collector);
+    }
+
+    public void testFailedWorkerWaitsForHedge() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, true);
+        collector.onNodeFailed(3);
+        // A worker that has not answered yet can still take a hedged request
+        collector.checkFailedRows();
+
+        int hedgeNode = NumWorkers;
+        int[] groups = groupsOf(3);
+        collector.onHedgeSent(hedgeNode, groups);
+        for (int group_ind : groups) {
+            assertFalse(collector.needsRows(group_ind, 3));
+        }
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            if (node_id != 3) {
+                collector.onNodeReceived(node_id);
+            }
+        }
+        // The hedged request is in flight, the groups of the failed worker wait for it
+        collector.checkFailedRows();
+        BitSet ready = takeAll(collector, countWithout(3));
+
+        int[] substituted = new int[1];
+        for (int group_ind : groups) {
+            assertTrue(collector.onHedgeReceived(group_ind, 3, () -> substituted[0]++));
+            assertEquals(group_ind, collector.takeReadyGroup());
+            ready.set(group_ind);
+        }
+        collector.onHedgeDone(hedgeNode);
+        collector.checkFailedRows();
+        assertEquals(groups.length, substituted[0]);
+        assertEquals(NumWorkers, ready.cardinality());
+    }
+
+    public void testFailedHedgeFailsTheRound() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, true);
+        collector.onNodeFailed(3);
+        collector.onHedgeSent(NumWorkers, groupsOf(3));
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            if (node_id != 3) {
+                collector.onNodeReceived(node_id);
+            }
+        }
+        takeAll(collector, countWithout(3));
+
+        // Done twice counts once, a second hedged request still in flight keeps the groups waiting
+        collector.onHedgeSent(NumWorkers + 1, groupsOf(3));
+        collector.onHedgeDone(NumWorkers);
+        collector.onHedgeDone(NumWorkers);
+        for (int group_ind : groupsOf(3)) {
+            assertFalse(collector.needsRows(group_ind, 3));
+        }
+        collector.checkFailedRows();
+
+        // Once it fails as well and every worker has answered, no hedged request can bring the rows any more
+        collector.onHedgeDone(NumWorkers + 1);
+        for (int group_ind : groupsOf(3)) {
+            assertTrue(collector.needsRows(group_ind, 3));
+        }
+        collector.checkFailedRows();
+        assertFailed(collector);
+    }
+
+    public void testHedgeAfterTheLateWorkerAnswered() throws InterruptedException {
+        GroupCollector collector = new GroupCollector(NumWorkers, this.nodesOfGroup, true);
+        int late = 8;
+        collector.onHedgeSent(NumWorkers, groupsOf(late));
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            collector.onNodeReceived(node_id);
+        }
+        // The late worker has filled its rows, the answer of the hedged request is not used
+        for (int group_ind : groupsOf(late)) {
+            assertFalse(collector.onHedgeReceived(group_ind, late, () -> fail("The group has the rows already")));
+        }
+        collector.onHedgeDone(NumWorkers);
+        collector.checkFailedRows();
+        assertEquals(NumWorkers, takeAll(collector, NumWorkers).cardinality());
+    }
+
+    public void testSegments() throws InterruptedException {
+        // The groups are the segments of a proportional allocation, a worker has rows of several of them
+        double[] rates = new double[NumWorkers];
+        Random rand = new Random(42);
+        for (int p = 0; p < NumWorkers; p++) {
+            rates[p] = 1 + rand.nextDouble();
+        }
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1000, 16);
+        GroupCollector collector = new GroupCollector(NumWorkers, allocation.segmentNodes, false);
+        for (int node_id = 0; node_id < NumWorkers; node_id++) {
+            collector.onNodeReceived(node_id);
+        }
+        assertEquals(allocation.numSegments(), takeAll(collector, allocation.numSegments()).cardinality());
+    }
+
+    private static void assertFailed(GroupCollector collector) throws InterruptedException {
+        try {
+            collector.takeReadyGroup();
+            fail("The round has failed");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("failed worker at position 3"));
+        }
+    }
+
+    private static BitSet takeAll(GroupCollector collector, int count) throws InterruptedException {
+        BitSet ready = new BitSet();
+        for (int i = 0; i < count; i++) {
+            int group_ind = collector.takeReadyGroup();
+            assertFalse("Group " + group_ind + " handed out twice", ready.get(group_ind));
+            ready.set(group_ind);
+        }
+        return ready;
+    }
+
+    private int countComplete(BitSet answered) {
+        int count = 0;
+        for (int[] nodes : this.nodesOfGroup) {
+            count += allAnswered(nodes, answered) ? 1 : 0;
+        }
+        return count;
+    }
+
+    private int countWithout(int node_id) {
+        return NumWorkers - groupsOf(node_id).length;
+    }
+
+    private int[] groupsOf(int node_id) {
+        int[] groups = new int[0];
+        for (int group_ind = 0; group_ind < this.nodesOfGroup.length; group_ind++) {
+            if (contains(this.nodesOfGroup[group_ind], node_id)) {
+                groups = Arrays.copyOf(groups, groups.length + 1);
+                groups[groups.length - 1] = group_ind;
+            }
+        }
+        return groups;
+    }
+
+    private static boolean allAnswered(int[] nodes, BitSet answered) {
+        for (int node_id : nodes) {
+            if (!answered.get(node_id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(int[] nodes, int node_id) {
+        return Arrays.stream(nodes).anyMatch(node -> node == node_id);
+    }
+
+    /*
+     * Group group_ind of the cyclic shift method is decoded from the workers (1 + group_ind + j) % numWorkers */
+    private static int[][] cyclicGroups(int numWorkers) {
+        int[][] groups = new int[numWorkers][RecThreshold];
+        for (int group_ind = 0; group_ind < numWorkers; group_ind++) {
+            for (int j = 0; j < RecThreshold; j++) {
+                groups[group_ind][j] = (1 + group_ind + j) % numWorkers;
+            }
+        }
+        return groups;
+    }
+}
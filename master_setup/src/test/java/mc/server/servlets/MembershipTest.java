@@ -0,0 +1,86 @@
+package mc.server.servlets;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the ids Membership gives to the workers that register, in particular that a worker of the static DNS list gets
+ * its own id back when it rejoins while other workers have registered in the meantime.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class MembershipTest extends TestCase {
+
+    private static final List<String> StaticDns = Arrays.asList("w0:80", "w1:80", "w2:80", "w3:80");
+    private static final long Timeout = 60000;
+
+    public void testStaticWorkersGetTheirIndex() {
+        Membership membership = new Membership(6, Timeout, StaticDns);
+        assertEquals(2, membership.heartbeat("w2:80", null));
+        assertEquals(0, membership.heartbeat("w0:80", null));
+        assertEquals(2, membership.heartbeat("w2:80", null));
+    }
+
+    public void testOtherWorkersGetTheIdsAfterTheStaticList() {
+        Membership membership = new Membership(6, Timeout, StaticDns);
+        assertEquals(4, membership.heartbeat("x:80", null));
+        assertEquals(5, membership.heartbeat("y:80", null));
+        // Every id that is not reserved is taken
+        assertEquals(-1, membership.heartbeat("z:80", null));
+        assertEquals(1, membership.heartbeat("w1:80", null));
+    }
+
+    public void testStaticWorkerRejoinsWithItsId() {
+        Membership membership = new Membership(6, Timeout, StaticDns);
+        assertEquals(1, membership.heartbeat("w1:80", null));
+        membership.deregister("w1:80");
+
+        // The workers that register while it is gone do not take its id
+        assertEquals(4, membership.heartbeat("x:80", null));
+        assertEquals(5, membership.heartbeat("y:80", null));
+        assertEquals(-1, membership.heartbeat("z:80", null));
+
+        assertEquals(1, membership.heartbeat("w1:80", null));
+        assertEquals(Arrays.asList(1, 4, 5), ids(membership));
+    }
+
+    public void testStaticWorkerRejoinsWithItsIdAfterExpiring() throws InterruptedException {
+        Membership membership = new Membership(6, 20, StaticDns);
+        assertEquals(3, membership.heartbeat("w3:80", null));
+        Thread.sleep(100);
+        assertTrue(membership.live().isEmpty());
+
+        assertEquals(4, membership.heartbeat("x:80", null));
+        assertEquals(3, membership.heartbeat("w3:80", null));
+    }
+
+    public void testOtherWorkerRejoinsWithItsLastId() {
+        Membership membership = new Membership(7, Timeout, StaticDns);
+        assertEquals(4, membership.heartbeat("x:80", null));
+        assertEquals(5, membership.heartbeat("y:80", null));
+        membership.deregister("x:80");
+
+        assertEquals(4, membership.heartbeat("x:80", null));
+        membership.deregister("x:80");
+        // Its last id is free for another worker while it is gone, it then takes the next free one
+        assertEquals(4, membership.heartbeat("z:80", null));
+        assertEquals(6, membership.heartbeat("x:80", null));
+    }
+
+    public void testStaticListLongerThanTheIds() {
+        Membership membership = new Membership(3, Timeout, StaticDns);
+        assertEquals(2, membership.heartbeat("w2:80", null));
+        // All ids are reserved, neither the rest of the static list nor other workers get one
+        assertEquals(-1, membership.heartbeat("w3:80", null));
+        assertEquals(-1, membership.heartbeat("x:80", null));
+    }
+
+    private static List<Integer> ids(Membership membership) {
+        Integer[] ids = membership.live().stream().map(member -> member.id).toArray(Integer[]::new);
+        return Arrays.asList(ids);
+    }
+}
@@ -0,0 +1,211 @@
+package mc.server.servlets;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the arcs and segments of RowAllocation: the arcs add up to RecThreshold laps of the circle, each arc has at
+ * least one unit and at most one lap, every row is covered by exactly RecThreshold different workers, and the segments
+ * cut the circle into pieces that lie inside the arcs of their workers at the recorded offsets.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class RowAllocationTest extends TestCase {
+
+    private static final int RecThreshold = 10;
+
+    private final Random rand = new Random(42);
+
+    public void testUniformDividing() {
+        RowAllocation allocation = RowAllocation.uniform(10, RecThreshold, 10500, 10500);
+        assertValid(allocation, 10500);
+        // Every worker computes the whole shard, like with the cyclic shift method
+        for (int p = 0; p < 10; p++) {
+            assertEquals(10500, allocation.arcRows[p]);
+        }
+        assertEquals(1, allocation.numSegments());
+
+        allocation = RowAllocation.uniform(20, RecThreshold, 10500, 10500);
+        assertValid(allocation, 10500);
+        for (int p = 0; p < 20; p++) {
+            assertEquals(5250, allocation.arcRows[p]);
+        }
+    }
+
+    public void testUniformNotDividing() {
+        for (int numWorkers : new int[]{12, 15, 18}) {
+            RowAllocation allocation = RowAllocation.uniform(numWorkers, RecThreshold, 10500, 10500);
+            assertValid(allocation, 10500);
+            int shortest = Arrays.stream(allocation.arcRows).min().getAsInt();
+            int longest = Arrays.stream(allocation.arcRows).max().getAsInt();
+            assertTrue(Arrays.toString(allocation.arcRows), longest - shortest <= 1);
+            assertEquals(RecThreshold * 10500 / numWorkers, shortest);
+        }
+    }
+
+    public void testProportional() {
+        for (int numWorkers : new int[]{12, 15, 18, 20}) {
+            for (int units : new int[]{16, 100, 1050}) {
+                // The rates are close enough that no worker would get more than one lap
+                double[] rates = new double[numWorkers];
+                for (int p = 0; p < numWorkers; p++) {
+                    rates[p] = 1000 * (1 + this.rand.nextDouble() * 0.1);
+                }
+                RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1050, units);
+                assertValid(allocation, 1050);
+
+                // Each arc is off its share by less than one unit and the rounding
+                double rateSum = Arrays.stream(rates).sum();
+                for (int p = 0; p < numWorkers; p++) {
+                    double share = (double) RecThreshold * 1050 * rates[p] / rateSum;
+                    assertEquals(share, allocation.arcRows[p], 1050.0 / units + 1);
+                }
+            }
+        }
+    }
+
+    public void testAsManyWorkersAsRecThreshold() {
+        double[] rates = new double[RecThreshold];
+        for (int p = 0; p < RecThreshold; p++) {
+            rates[p] = 1 + this.rand.nextDouble();
+        }
+        // Every worker has to cover the whole circle, whatever its speed
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1050, 100);
+        assertValid(allocation, 1050);
+        for (int p = 0; p < RecThreshold; p++) {
+            assertEquals(1050, allocation.arcRows[p]);
+        }
+    }
+
+    public void testFasterWorkersGetLongerArcs() {
+        double[] rates = new double[18];
+        for (int p = 0; p < rates.length; p++) {
+            rates[p] = p % 2 == 0 ? 1 : 2;
+        }
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1200, 1200);
+        assertValid(allocation, 1200);
+        for (int p = 0; p < rates.length; p++) {
+            assertEquals(rates[p] == 1 ? 444.4 : 888.9, allocation.arcRows[p], 1);
+        }
+        // The slow workers finish at the same time as the fast ones, instead of holding up the round
+        double uniform = RowAllocation.uniform(rates.length, RecThreshold, 1200, 1200).makespan(rates);
+        assertEquals(666.7, uniform, 1);
+        assertTrue(allocation.makespan(rates) < 0.7 * uniform);
+    }
+
+    public void testFastWorkerGetsOneLap() {
+        double[] rates = new double[12];
+        Arrays.fill(rates, 1);
+        rates[5] = 100;
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1100, 1100);
+        assertValid(allocation, 1100);
+        // The fast worker would get more than the circle, it gets exactly one lap and the others share the rest
+        assertEquals(1100, allocation.arcRows[5]);
+        for (int p = 0; p < rates.length; p++) {
+            if (p != 5) {
+                assertEquals(900, allocation.arcRows[p]);
+            }
+        }
+    }
+
+    public void testStalledWorkerKeepsOneUnit() {
+        double[] rates = new double[15];
+        Arrays.fill(rates, 1);
+        rates[3] = 0;
+        rates[9] = -1;
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1000, 50);
+        assertValid(allocation, 1000);
+        // The workers without speed still get one unit, so their speed keeps being measured
+        assertEquals(20, allocation.arcRows[3]);
+        assertEquals(20, allocation.arcRows[9]);
+        assertTrue(Double.isInfinite(allocation.makespan(rates)));
+    }
+
+    public void testUnknownRates() {
+        RowAllocation allocation = RowAllocation.proportional(new double[12], RecThreshold, 10500, 10500);
+        assertValid(allocation, 10500);
+        assertTrue(allocation.sameArcs(RowAllocation.uniform(12, RecThreshold, 10500, 10500)));
+    }
+
+    public void testUnitsLimitTheSegments() {
+        double[] rates = new double[20];
+        for (int p = 0; p < rates.length; p++) {
+            rates[p] = 1 + this.rand.nextDouble();
+        }
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 5250, 16);
+        assertValid(allocation, 5250);
+        assertTrue(allocation.numSegments() <= 16);
+        // More units than rows are capped at one unit per row
+        assertValid(RowAllocation.proportional(rates, RecThreshold, 7, 100), 7);
+    }
+
+    public void testSameArcs() {
+        double[] rates = {3, 1, 2, 1, 1, 2, 1, 1, 1, 1, 2, 1};
+        RowAllocation allocation = RowAllocation.proportional(rates, RecThreshold, 1000, 100);
+        assertTrue(allocation.sameArcs(RowAllocation.proportional(rates.clone(), RecThreshold, 1000, 100)));
+        rates[0] = 1;
+        assertFalse(allocation.sameArcs(RowAllocation.proportional(rates, RecThreshold, 1000, 100)));
+        assertFalse(allocation.sameArcs(null));
+    }
+
+    public void testTooFewOrTooManyWorkers() {
+        try {
+            RowAllocation.uniform(RecThreshold - 1, RecThreshold, 1000, 100);
+            fail("Fewer workers than RecThreshold cannot cover every row RecThreshold times");
+        } catch (ArithmeticException expected) {
+            // The allocation is rejected
+        }
+        try {
+            RowAllocation.uniform(21, RecThreshold, 2, 2);
+            fail("More workers than RecThreshold laps of units cannot all get one unit");
+        } catch (ArithmeticException expected) {
+            // The allocation is rejected
+        }
+    }
+
+    private static void assertValid(RowAllocation allocation, int codedRows) {
+        int numWorkers = allocation.numWorkers;
+        String message = allocation.toString();
+        assertEquals(codedRows, allocation.codedRows);
+
+        // The arcs follow each other around the circle, starting at row 0, and add up to RecThreshold laps
+        long sum = 0;
+        int[] coverage = new int[codedRows];
+        for (int p = 0; p < numWorkers; p++) {
+            assertTrue(message, allocation.arcRows[p] >= 1 && allocation.arcRows[p] <= codedRows);
+            assertEquals(message, (int) (sum % codedRows), allocation.arcStart[p]);
+            sum += allocation.arcRows[p];
+            for (int t = 0; t < allocation.arcRows[p]; t++) {
+                coverage[(allocation.arcStart[p] + t) % codedRows]++;
+            }
+        }
+        assertEquals(message, (long) RecThreshold * codedRows, sum);
+        for (int row = 0; row < codedRows; row++) {
+            assertEquals(message, RecThreshold, coverage[row]);
+        }
+
+        // The segments cut the circle into consecutive pieces, each inside the arcs of RecThreshold different workers
+        int next = 0;
+        for (int s = 0; s < allocation.numSegments(); s++) {
+            int start = allocation.segmentStart[s];
+            int rows = allocation.segmentRows[s];
+            assertEquals(message, next, start);
+            assertTrue(message, rows >= 1);
+            next = start + rows;
+
+            int[] nodes = allocation.segmentNodes[s];
+            assertEquals(RecThreshold, nodes.length);
+            assertEquals(RecThreshold, Arrays.stream(nodes).distinct().count());
+            for (int j = 0; j < RecThreshold; j++) {
+                int offset = allocation.segmentOffsets[s][j];
+                assertTrue(message, offset >= 0 && offset + rows <= allocation.arcRows[nodes[j]]);
+                assertEquals(message, start, (allocation.arcStart[nodes[j]] + offset) % codedRows);
+            }
+        }
+        assertEquals(message, codedRows, next);
+    }
+}
@@ -0,0 +1,188 @@
+package mc.server.servlets;
+
+import junit.framework.TestCase;
+import mc.server.types.SegmentDecodingEngine;
+import mc.server.types.TypeDenseMatrixDouble;
+import mc.server.types.TypeMatrixDouble;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests SegmentDecodingEngine against the rearranged matrix multiplication: for uniform and proportional allocations
+ * of rings with different worker ids, every segment decoded in place matches, bit for bit, the rows of its workers
+ * copied into a RecThreshold x (rows * batchSize) matrix and multiplied with the decoding matrix of the segment by
+ * TypeMatrixDouble#matMatMultGiveMat, and the segments together give back the uncoded products of all coded rows.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class SegmentDecodingEngineTest extends TestCase {
+
+    private static final int RecThreshold = 10;
+    private static final int MaxWorkers = 20;
+    private static final int CodedRows = 53;
+    private static final int BatchSize = 3;
+
+    private final Random rand = new Random(42);
+    private final TypeMatrixDouble generator = randomMatrix(MaxWorkers, RecThreshold);
+    private final DecodingMatrixCache decodingCache = new DecodingMatrixCache(RecThreshold, 4);
+
+    public void testUniform() {
+        for (int numWorkers : new int[]{10, 12, 15, 18, 20}) {
+            assertDecodesAllSegments(DecodingMatrixCache.firstWorkers(numWorkers),
+                    RowAllocation.uniform(numWorkers, RecThreshold, CodedRows, CodedRows));
+        }
+    }
+
+    public void testProportional() {
+        int[][] rings = {
+                DecodingMatrixCache.firstWorkers(12),
+                {0, 2, 3, 5, 7, 8, 11, 13, 16, 19},
+                {14, 3, 19, 0, 7, 11, 5, 17, 2, 9, 12, 6, 1, 18, 4},
+                shuffledIds(MaxWorkers)};
+        for (int[] memberIds : rings) {
+            for (int units : new int[]{8, CodedRows}) {
+                double[] rates = new double[memberIds.length];
+                for (int p = 0; p < rates.length; p++) {
+                    rates[p] = 1 + 3 * this.rand.nextDouble();
+                }
+                assertDecodesAllSegments(memberIds, RowAllocation.proportional(rates, RecThreshold, CodedRows, units));
+            }
+        }
+    }
+
+    public void testSegmentOutOfTheReceivedRow() {
+        RowAllocation allocation = RowAllocation.uniform(12, RecThreshold, CodedRows, CodedRows);
+        TypeMatrixDouble[] decodingMatrices = this.decodingCache.get(this.generator, DecodingMatrixCache.firstWorkers(12), allocation);
+        SegmentDecodingEngine engine = new SegmentDecodingEngine(12, RecThreshold, CodedRows, BatchSize);
+        int last = allocation.numSegments() - 1;
+        int[] offsets = allocation.segmentOffsets[last].clone();
+        int maxArc = Arrays.stream(allocation.arcRows).max().getAsInt();
+        TypeDenseMatrixDouble received = new TypeDenseMatrixDouble(12, maxArc * BatchSize);
+
+        try {
+            engine.decodeSegment(CodedRows, 1, allocation.segmentNodes[last], offsets, decodingMatrices[last], received);
+            fail("The segment lies beyond the coded rows");
+        } catch (ArithmeticException expected) {
+            // The segment is rejected
+        }
+        offsets[0] = maxArc;
+        try {
+            engine.decodeSegment(allocation.segmentStart[last], allocation.segmentRows[last], allocation.segmentNodes[last],
+                    offsets, decodingMatrices[last], received);
+            fail("The segment lies beyond the rows a worker has sent");
+        } catch (ArithmeticException expected) {
+            // The segment is rejected
+        }
+    }
+
+    private void assertDecodesAllSegments(int[] memberIds, RowAllocation allocation) {
+        int numWorkers = memberIds.length;
+        double[][][] uncoded = uncodedProducts();
+        TypeDenseMatrixDouble received = receiveBuffer(memberIds, allocation, uncoded);
+
+        TypeMatrixDouble[] decodingMatrices = this.decodingCache.get(this.generator, memberIds, allocation);
+        SegmentDecodingEngine engine = new SegmentDecodingEngine(numWorkers, RecThreshold, CodedRows, BatchSize);
+        for (int s = 0; s < allocation.numSegments(); s++) {
+            engine.decodeSegment(allocation.segmentStart[s], allocation.segmentRows[s], allocation.segmentNodes[s],
+                    allocation.segmentOffsets[s], decodingMatrices[s], received);
+            assertSameAsMatMult(engine, allocation, s, decodingMatrices[s], received);
+        }
+
+        // The segments cover every coded row
+        TypeDenseMatrixDouble decoded = engine.getDecoded();
+        for (int k = 0; k < RecThreshold; k++) {
+            for (int row = 0; row < CodedRows; row++) {
+                for (int b = 0; b < BatchSize; b++) {
+                    double target = uncoded[k][row][b];
+                    assertEquals(allocation.toString(), target, decoded.get(k, row * BatchSize + b), 1e-8 * Math.abs(target));
+                }
+            }
+        }
+    }
+
+    /*
+     * Compares the decoded segment with the decoding matrix times the rearranged rows of its workers */
+    private static void assertSameAsMatMult(SegmentDecodingEngine engine, RowAllocation allocation, int s,
+                                            TypeMatrixDouble decodingMatrix, TypeDenseMatrixDouble received) {
+        int len = allocation.segmentRows[s] * BatchSize;
+        TypeMatrixDouble rearranged = new TypeMatrixDouble(RecThreshold, len);
+        for (int j = 0; j < RecThreshold; j++) {
+            for (int c = 0; c < len; c++) {
+                rearranged.GetMat()[j][c] = received.get(allocation.segmentNodes[s][j], allocation.segmentOffsets[s][j] * BatchSize + c);
+            }
+        }
+        double[][] expected = decodingMatrix.matMatMultGiveMat(rearranged).GetMat();
+
+        TypeDenseMatrixDouble decoded = engine.getDecoded();
+        int first = allocation.segmentStart[s] * BatchSize;
+        for (int k = 0; k < RecThreshold; k++) {
+            for (int c = 0; c < len; c++) {
+                assertEquals("Segment " + s + ", row " + k + ", element " + c,
+                        Double.doubleToRawLongBits(expected[k][c]),
+                        Double.doubleToRawLongBits(decoded.get(k, first + c)));
+            }
+        }
+    }
+
+    /*
+     * The product of uncoded block k with the input vectors, for every coded row */
+    private double[][][] uncodedProducts() {
+        double[][][] uncoded = new double[RecThreshold][CodedRows][BatchSize];
+        for (double[][] block : uncoded) {
+            for (double[] row : block) {
+                for (int b = 0; b < BatchSize; b++) {
+                    row[b] = 1 + this.rand.nextDouble();
+                }
+            }
+        }
+        return uncoded;
+    }
+
+    /*
+     * The worker at position p sends the products of the rows of its arc, coded with the generator row of its id. The
+     * rows are as long as the longest arc, the rest of a shorter row is never read. */
+    private TypeDenseMatrixDouble receiveBuffer(int[] memberIds, RowAllocation allocation, double[][][] uncoded) {
+        int numWorkers = memberIds.length;
+        int col = Arrays.stream(allocation.arcRows).max().getAsInt() * BatchSize;
+        double[] data = new double[numWorkers * col];
+        Arrays.fill(data, Double.NaN);
+        for (int p = 0; p < numWorkers; p++) {
+            double[] coef = this.generator.GetMat()[memberIds[p]];
+            for (int t = 0; t < allocation.arcRows[p]; t++) {
+                int row = (allocation.arcStart[p] + t) % CodedRows;
+                for (int b = 0; b < BatchSize; b++) {
+                    double coded = 0;
+                    for (int k = 0; k < RecThreshold; k++) {
+                        coded += coef[k] * uncoded[k][row][b];
+                    }
+                    data[p * col + t * BatchSize + b] = coded;
+                }
+            }
+        }
+        return new TypeDenseMatrixDouble(numWorkers, col, data);
+    }
+
+    private int[] shuffledIds(int numWorkers) {
+        int[] ids = DecodingMatrixCache.firstWorkers(MaxWorkers);
+        for (int i = ids.length - 1; i > 0; i--) {
+            int j = this.rand.nextInt(i + 1);
+            int tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return Arrays.copyOf(ids, numWorkers);
+    }
+
+    private TypeMatrixDouble randomMatrix(int row, int col) {
+        double[][] mat = new double[row][col];
+        for (double[] matRow : mat) {
+            for (int j = 0; j < col; j++) {
+                matRow[j] = this.rand.nextGaussian();
+            }
+        }
+        return new TypeMatrixDouble(row, col, mat);
+    }
+}
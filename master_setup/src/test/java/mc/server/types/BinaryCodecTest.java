@@ -0,0 +1,249 @@
+package mc.server.types;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the frames of BinaryCodec: vectors and matrices written with putVector and putMatrix read back bit by bit, and
+ * frames with a negative length, a length larger than the destination or fewer bytes than they announce are rejected
+ * instead of being read partly.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class BinaryCodecTest extends TestCase {
+
+    private final Random rand = new Random(42);
+
+    public void testDoubleVectorRoundTrip() {
+        double[] vect = randomDoubles(1000);
+        byte[] frame = doubleVectorFrame(vect, vect.length);
+        assertEquals(BinaryCodec.HEADER_BYTES + vect.length * Double.BYTES, frame.length);
+
+        double[] read = new double[vect.length];
+        ByteBuffer buf = BinaryCodec.wrap(frame);
+        assertEquals(vect.length, BinaryCodec.getVector(buf, read));
+        assertEquals(0, buf.remaining());
+        assertSameDoubles(vect, read);
+    }
+
+    public void testShorterDoubleVectorFillsTheStart() {
+        double[] vect = randomDoubles(10);
+        double[] read = new double[20];
+        assertEquals(7, BinaryCodec.getVector(BinaryCodec.wrap(doubleVectorFrame(vect, 7)), read));
+        assertSameDoubles(Arrays.copyOf(vect, 7), Arrays.copyOf(read, 7));
+        assertSameDoubles(new double[13], Arrays.copyOfRange(read, 7, 20));
+    }
+
+    public void testIntVectorRoundTrip() {
+        int[] vect = new int[1000];
+        for (int i = 0; i < vect.length; i++) {
+            vect[i] = this.rand.nextInt();
+        }
+        ByteBuffer buf = BinaryCodec.allocate(BinaryCodec.HEADER_BYTES + vect.length * Integer.BYTES);
+        BinaryCodec.putVector(buf, vect, vect.length);
+
+        int[] read = new int[vect.length];
+        assertEquals(vect.length, BinaryCodec.getVector(BinaryCodec.wrap(buf.array()), read));
+        assertTrue(Arrays.equals(vect, read));
+    }
+
+    public void testDoubleMatrixRoundTrip() {
+        double[][] mat = new double[30][];
+        for (int i = 0; i < mat.length; i++) {
+            mat[i] = randomDoubles(17);
+        }
+        byte[] frame = doubleMatrixFrame(mat, mat.length, 17);
+
+        double[][] read = new double[30][17];
+        ByteBuffer buf = BinaryCodec.wrap(frame);
+        BinaryCodec.getMatrix(buf, read);
+        assertEquals(0, buf.remaining());
+        for (int i = 0; i < mat.length; i++) {
+            assertSameDoubles(mat[i], read[i]);
+        }
+    }
+
+    public void testIntMatrixRoundTrip() {
+        int[][] mat = new int[12][9];
+        for (int[] row : mat) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = this.rand.nextInt();
+            }
+        }
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + 12 * 9 * Integer.BYTES);
+        BinaryCodec.putMatrix(buf, mat, 12, 9);
+
+        int[][] read = new int[12][9];
+        BinaryCodec.getMatrix(BinaryCodec.wrap(buf.array()), read);
+        for (int i = 0; i < mat.length; i++) {
+            assertTrue(Arrays.equals(mat[i], read[i]));
+        }
+    }
+
+    public void testTruncatedVectorFrame() {
+        byte[] frame = doubleVectorFrame(randomDoubles(100), 100);
+        // Every cut, also one inside the length prefix or inside an element, leaves fewer bytes than announced
+        for (int cut = 0; cut < frame.length; cut += 13) {
+            assertRejected(Arrays.copyOf(frame, cut), new double[100]);
+        }
+        assertRejected(Arrays.copyOf(frame, frame.length - 1), new double[100]);
+    }
+
+    public void testTruncatedMatrixFrame() {
+        double[][] mat = new double[4][];
+        for (int i = 0; i < mat.length; i++) {
+            mat[i] = randomDoubles(5);
+        }
+        byte[] frame = doubleMatrixFrame(mat, 4, 5);
+        for (int cut = 0; cut < frame.length; cut++) {
+            assertMatrixRejected(Arrays.copyOf(frame, cut), new double[4][5]);
+        }
+    }
+
+    public void testNegativeLength() {
+        ByteBuffer buf = BinaryCodec.allocate(BinaryCodec.HEADER_BYTES + 8 * Double.BYTES);
+        buf.putInt(-1);
+        assertRejected(buf.array(), new double[8]);
+
+        ByteBuffer mat = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + 8 * Double.BYTES);
+        mat.putInt(2);
+        mat.putInt(-4);
+        assertMatrixRejected(mat.array(), new double[2][4]);
+        mat.putInt(0, -2);
+        mat.putInt(BinaryCodec.HEADER_BYTES, 4);
+        assertMatrixRejected(mat.array(), new double[2][4]);
+    }
+
+    public void testLongerThanTheDestination() {
+        assertRejected(doubleVectorFrame(randomDoubles(10), 10), new double[9]);
+
+        double[][] mat = {randomDoubles(3), randomDoubles(3)};
+        assertMatrixRejected(doubleMatrixFrame(mat, 2, 3), new double[1][3]);
+        assertMatrixRejected(doubleMatrixFrame(mat, 2, 3), new double[2][2]);
+    }
+
+    public void testLengthLargerThanTheFrame() {
+        // A corrupt length whose byte count overflows an int must not pass the check
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + 16);
+        buf.putInt(1 << 16);
+        buf.putInt(1 << 16);
+        try {
+            BinaryCodec.getShape(BinaryCodec.wrap(buf.array()), Integer.MAX_VALUE, Integer.MAX_VALUE, Double.BYTES);
+            fail("The frame announces more elements than it holds");
+        } catch (ArithmeticException expected) {
+            // The frame is rejected
+        }
+    }
+
+    public void testStreamRoundTrip() throws IOException {
+        double[] vect = randomDoubles(50000);
+        // The stream hands out a few bytes at a time, so elements are split across reads
+        InputStream in = new TrickleInputStream(doubleVectorFrame(vect, vect.length), 5);
+        int length = BinaryCodec.readLength(in);
+        assertEquals(vect.length, length);
+
+        double[] read = new double[length];
+        BinaryCodec.readDoubles(in, read, 0, length);
+        assertEquals(-1, in.read());
+        assertSameDoubles(vect, read);
+    }
+
+    public void testTruncatedStream() throws IOException {
+        byte[] frame = doubleVectorFrame(randomDoubles(100), 100);
+        InputStream in = new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 3));
+        BinaryCodec.readLength(in);
+        try {
+            BinaryCodec.readDoubles(in, new double[100], 0, 100);
+            fail("The stream ends before all elements are received");
+        } catch (EOFException expected) {
+            // The frame is rejected
+        }
+        try {
+            BinaryCodec.readLength(new ByteArrayInputStream(new byte[]{1, 0}));
+            fail("The stream ends inside the length prefix");
+        } catch (EOFException expected) {
+            // The frame is rejected
+        }
+    }
+
+    public void testNegativeLengthInStream() {
+        try {
+            BinaryCodec.readLength(new ByteArrayInputStream(new byte[]{-1, -1, -1, -1}));
+            fail("A negative length is not a frame");
+        } catch (IOException expected) {
+            // The frame is rejected
+        }
+    }
+
+    private double[] randomDoubles(int length) {
+        double[] vect = new double[length];
+        for (int i = 0; i < length; i++) {
+            vect[i] = this.rand.nextInt(4) == 0 ? Double.longBitsToDouble(this.rand.nextLong()) : this.rand.nextGaussian() * 1e3;
+        }
+        return vect;
+    }
+
+    private static byte[] doubleVectorFrame(double[] vect, int length) {
+        ByteBuffer buf = BinaryCodec.allocate(BinaryCodec.HEADER_BYTES + length * Double.BYTES);
+        BinaryCodec.putVector(buf, vect, length);
+        assertEquals(0, buf.remaining());
+        return buf.array();
+    }
+
+    private static byte[] doubleMatrixFrame(double[][] mat, int row, int col) {
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + row * col * Double.BYTES);
+        BinaryCodec.putMatrix(buf, mat, row, col);
+        assertEquals(0, buf.remaining());
+        return buf.array();
+    }
+
+    private static void assertRejected(byte[] frame, double[] vect) {
+        try {
+            BinaryCodec.getVector(BinaryCodec.wrap(frame), vect);
+            fail("The vector frame of " + frame.length + " bytes is read");
+        } catch (ArithmeticException expected) {
+            // The frame is rejected
+        }
+    }
+
+    private static void assertMatrixRejected(byte[] frame, double[][] mat) {
+        try {
+            BinaryCodec.getMatrix(BinaryCodec.wrap(frame), mat);
+            fail("The matrix frame of " + frame.length + " bytes is read");
+        } catch (ArithmeticException expected) {
+            // The frame is rejected
+        }
+    }
+
+    private static void assertSameDoubles(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Element " + i, Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+
+    /*
+     * Hands out at most a few bytes per read, like a slow connection */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+        private final int maxRead;
+
+        TrickleInputStream(byte[] bytes, int maxRead) {
+            super(bytes);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, this.maxRead));
+        }
+    }
+}
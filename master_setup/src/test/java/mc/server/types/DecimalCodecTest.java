@@ -0,0 +1,321 @@
+package mc.server.types;
+
+import junit.framework.TestCase;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Tests DecimalCodec against Double#parseDouble and Integer#parseInt. A formatted double must parse back to the same
+ * bits and be the shortest decimal that does, the closest one of its length, which is checked exactly with BigDecimal
+ * rather than against Double#toString, as the Double#toString of Java 18 and earlier is not always the shortest.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class DecimalCodecTest extends TestCase {
+
+    private static final int RandomTotal = 100000;
+
+    private final Random rand = new Random(42);
+
+    public void testFormatRandomBitPatterns() {
+        for (int i = 0; i < RandomTotal; i++) {
+            double value = Double.longBitsToDouble(this.rand.nextLong());
+            if (!Double.isNaN(value)) {
+                checkFormat(value);
+            }
+        }
+    }
+
+    public void testFormatSubnormals() {
+        checkFormat(Double.MIN_VALUE);
+        checkFormat(2 * Double.MIN_VALUE);
+        checkFormat(3 * Double.MIN_VALUE);
+        checkFormat(Double.MIN_NORMAL);
+        checkFormat(Math.nextDown(Double.MIN_NORMAL));
+        checkFormat(Math.nextUp(Double.MIN_NORMAL));
+        for (long fraction = 1; fraction < 1000; fraction++) {
+            checkFormat(Double.longBitsToDouble(fraction));
+        }
+        for (int i = 0; i < RandomTotal / 4; i++) {
+            checkFormat(-Double.longBitsToDouble(this.rand.nextLong() & 0x000FFFFFFFFFFFFFL));
+        }
+    }
+
+    public void testFormatSpecialValues() {
+        assertEquals("0.0", format(0.0));
+        assertEquals("-0.0", format(-0.0));
+        assertEquals("NaN", format(Double.NaN));
+        assertEquals("Infinity", format(Double.POSITIVE_INFINITY));
+        assertEquals("-Infinity", format(Double.NEGATIVE_INFINITY));
+        assertEquals("1.0E23", format(1e23));
+        assertEquals("4.9E-324", format(Double.MIN_VALUE));
+        assertEquals("1.7976931348623157E308", format(Double.MAX_VALUE));
+        assertEquals("-2.2250738585072014E-308", format(-Double.MIN_NORMAL));
+        assertEquals("0.001", format(0.001));
+        assertEquals("1.0E-4", format(1e-4));
+        assertEquals("9999999.0", format(9999999.0));
+        assertEquals("1.0E7", format(1e7));
+        assertEquals("0.1", format(0.1));
+        assertEquals("0.30000000000000004", format(0.1 + 0.2));
+        assertEquals("9.007199254740991E15", format(9007199254740991.0));
+    }
+
+    public void testFormatPowersOfTenAndIntegers() {
+        for (int exp10 = -325; exp10 <= 309; exp10++) {
+            double value = Double.parseDouble("1e" + exp10);
+            checkFormat(value);
+            checkFormat(Math.nextUp(value));
+            checkFormat(Math.nextDown(value));
+        }
+        for (int i = 0; i < RandomTotal / 4; i++) {
+            checkFormat((double) (this.rand.nextLong() >> this.rand.nextInt(64)));
+        }
+    }
+
+    public void testParseRandomDoubles() {
+        for (int i = 0; i < RandomTotal; i++) {
+            double value = Double.longBitsToDouble(this.rand.nextLong());
+            checkParse(Double.toString(value));
+            checkParse(format(value));
+        }
+    }
+
+    public void testParseRandomDigits() {
+        for (int i = 0; i < RandomTotal; i++) {
+            StringBuilder text = new StringBuilder();
+            if (this.rand.nextBoolean()) {
+                text.append(this.rand.nextBoolean() ? '-' : '+');
+            }
+            int numDigits = 1 + this.rand.nextInt(25);
+            int dot = this.rand.nextInt(numDigits + 2) - 1;
+            for (int j = 0; j < numDigits; j++) {
+                if (j == dot) {
+                    text.append('.');
+                }
+                text.append((char) ('0' + this.rand.nextInt(10)));
+            }
+            if (this.rand.nextBoolean()) {
+                text.append(this.rand.nextBoolean() ? 'e' : 'E').append(this.rand.nextInt(700) - 350);
+            }
+            checkParse(text.toString());
+        }
+    }
+
+    public void testParseSubnormals() {
+        for (int i = 0; i < RandomTotal / 4; i++) {
+            double value = Double.longBitsToDouble(this.rand.nextLong() & 0x000FFFFFFFFFFFFFL);
+            checkParse(Double.toString(value));
+            checkParse(new BigDecimal(value).round(new MathContext(1 + this.rand.nextInt(25))).toString());
+        }
+        checkParse("4.9e-324");
+        checkParse("2.4703282292062327e-324");
+        checkParse("2.4703282292062328e-324");
+        checkParse("2.2250738585072011e-308");
+        checkParse("2.2250738585072012e-308");
+        checkParse("2.225073858507201136057409796709131975934819546351645648e-308");
+    }
+
+    public void testParseHalfwayCases() {
+        for (int i = 0; i < RandomTotal / 10; i++) {
+            double value = Math.abs(Double.longBitsToDouble(this.rand.nextLong()));
+            if (i % 4 == 0) {
+                value = Double.longBitsToDouble(this.rand.nextLong() & 0x000FFFFFFFFFFFFFL);
+            }
+            if (Double.isNaN(value) || value == Double.MAX_VALUE || Double.isInfinite(value)) {
+                continue;
+            }
+            // Exactly between the double and the next one, and just below and above
+            BigDecimal halfway = new BigDecimal(value).add(new BigDecimal(Math.nextUp(value))).divide(BigDecimal.valueOf(2));
+            BigDecimal tiny = BigDecimal.ONE.movePointLeft(halfway.scale() + 5);
+            checkParse(halfway.toString());
+            checkParse(halfway.subtract(tiny).toString());
+            checkParse(halfway.add(tiny).toString());
+            // Close to halfway, with the digits that fit into the mantissa and a few more
+            for (int numDigits = 17; numDigits <= 21; numDigits++) {
+                checkParse(halfway.round(new MathContext(numDigits, RoundingMode.HALF_EVEN)).toString());
+            }
+        }
+        // Between 2^53 and 2^53 + 2, and beyond Double.MAX_VALUE
+        checkParse("9007199254740993");
+        checkParse("9007199254740993.0000000000000000001");
+        checkParse("9007199254740992.9999999999999999999");
+        checkParse("1.7976931348623158e308");
+        checkParse("1.797693134862315807937289714053e308");
+        checkParse("1.797693134862315708145274237317e308");
+    }
+
+    public void testParseSpecialStrings() {
+        checkParse("1e23");
+        checkParse("8.98846567431158e307");
+        checkParse("-0.0");
+        checkParse("-0");
+        checkParse("0e999999999");
+        checkParse("+1");
+        checkParse(".5");
+        checkParse("5.");
+        checkParse("1e+5");
+        checkParse("000001.50000000000000000000000000000");
+        checkParse("0.000000000000000000000000000001");
+        checkParse("123456789012345678901234567890");
+        checkParse("NaN");
+        checkParse("Infinity");
+        checkParse("-Infinity");
+        checkParse("0x1.8p1");
+        checkParse("1.5f");
+        checkParse("2d");
+        checkParse(" 1.5\t");
+        // Overflow and underflow
+        checkParse("1e400");
+        checkParse("-1e400");
+        checkParse("1e999999999999");
+        checkParse("1e-400");
+        checkParse("-1e-400");
+        checkParse("1e-999999999999");
+        checkParse("0.0000000000000000000000000001e-300");
+        checkParse("100000000000000000000000000000e290");
+        assertSameDouble("1e400", Double.POSITIVE_INFINITY, parse("1e400"));
+        assertSameDouble("-1e-400", -0.0, parse("-1e-400"));
+    }
+
+    public void testParseRejectsWhatDoubleParseDoubleRejects() {
+        String[] invalid = {"", "-", "+", ".", "e5", "1e", "1e+", "1.2.3", "1,5", "--1", "1e5.5", "abc", "Inf", "0x"};
+        for (String text : invalid) {
+            try {
+                parse(text);
+                fail("Parsed \"" + text + "\"");
+            } catch (NumberFormatException expected) {
+                // Same as Double#parseDouble
+            }
+        }
+    }
+
+    public void testIntRoundTrip() {
+        int[] edges = {0, 1, -1, 9, 10, -10, 99, 100, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE - 1,
+                Integer.MIN_VALUE + 1, 1000000000, -1000000000};
+        for (int value : edges) {
+            checkInt(value);
+        }
+        for (int i = 0; i < RandomTotal; i++) {
+            checkInt(this.rand.nextInt() >> this.rand.nextInt(32));
+        }
+        assertEquals(5, parseInt("+5"));
+        assertEquals(0, parseInt("-0"));
+        assertEquals(12, parseInt("00012"));
+        String[] invalid = {"", "-", "+", "2147483648", "-2147483649", "99999999999", "1a", "1.0", " 1"};
+        for (String text : invalid) {
+            try {
+                parseInt(text);
+                fail("Parsed \"" + text + "\"");
+            } catch (NumberFormatException expected) {
+                // Same as Integer#parseInt
+            }
+        }
+    }
+
+    public void testVectorRoundTrip() {
+        double[] vect = new double[10000];
+        for (int i = 0; i < vect.length; i++) {
+            vect[i] = i % 3 == 0 ? Double.longBitsToDouble(this.rand.nextLong()) : this.rand.nextGaussian();
+            if (Double.isNaN(vect[i])) {
+                // The text of a NaN has no payload
+                vect[i] = Double.NaN;
+            }
+        }
+        vect[0] = -0.0;
+        vect[1] = Double.MIN_VALUE;
+        for (String sep : new String[]{",", " ", "\\s+"}) {
+            String text = new TypeVectorDouble(vect.length, vect).serialize(sep.equals("\\s+") ? " " : sep);
+            TypeVectorDouble parsed = new TypeVectorDouble(vect.length);
+            parsed.deserialize(text, sep);
+            for (int i = 0; i < vect.length; i++) {
+                assertSameDouble("separator " + sep + ", element " + i, vect[i], parsed.GetVect()[i]);
+            }
+        }
+    }
+
+    /*
+     * Checks that the formatted double parses back to the same bits, that no shorter decimal does and that it is the
+     * closest decimal of its length, with at least two digits like Double#toString */
+    private static void checkFormat(double value) {
+        String text = format(value);
+        assertSameDouble(text, value, Double.parseDouble(text));
+        assertSameDouble(text, value, parse(text));
+        if (Double.isInfinite(value) || value == 0) {
+            return;
+        }
+        String jdkText = Double.toString(value);
+        assertEquals(text + " and " + jdkText, jdkText.contains("E"), text.contains("E"));
+
+        BigDecimal exact = new BigDecimal(value).abs();
+        BigDecimal decimal = new BigDecimal(text).abs();
+        int length = decimal.stripTrailingZeros().precision();
+        if (length > 2) {
+            MathContext shorter = new MathContext(length - 1, RoundingMode.FLOOR);
+            assertFalse(text + " is not the shortest", roundsTo(exact.round(shorter), value));
+            shorter = new MathContext(length - 1, RoundingMode.CEILING);
+            assertFalse(text + " is not the shortest", roundsTo(exact.round(shorter), value));
+        }
+
+        BigDecimal below = exact.round(new MathContext(Math.max(length, 2), RoundingMode.FLOOR));
+        BigDecimal above = exact.round(new MathContext(Math.max(length, 2), RoundingMode.CEILING));
+        BigDecimal closest;
+        if (!roundsTo(below, value)) {
+            closest = above;
+        } else if (!roundsTo(above, value)) {
+            closest = below;
+        } else {
+            int cmp = exact.subtract(below).compareTo(above.subtract(exact));
+            if (cmp == 0) {
+                // Halfway, the even significand
+                closest = below.unscaledValue().testBit(0) ? above : below;
+            } else {
+                closest = cmp < 0 ? below : above;
+            }
+        }
+        assertEquals(text + " is not the closest", 0, closest.compareTo(decimal));
+    }
+
+    private static boolean roundsTo(BigDecimal decimal, double value) {
+        return Math.abs(Double.parseDouble(decimal.toString())) == Math.abs(value);
+    }
+
+    /*
+     * Parses the text inside a longer text, so that the positions are checked as well */
+    private static void checkParse(String text) {
+        String padded = "[" + text + "]";
+        assertSameDouble(text, Double.parseDouble(text), DecimalCodec.parseDouble(padded, 1, padded.length() - 1));
+    }
+
+    private static void checkInt(int value) {
+        byte[] buf = new byte[1 + DecimalCodec.MAX_INT_CHARS];
+        int end = DecimalCodec.putInt(buf, 1, value);
+        String text = new String(buf, 1, end - 1, StandardCharsets.US_ASCII);
+        assertEquals(Integer.toString(value), text);
+        assertEquals(value, parseInt(text));
+    }
+
+    private static String format(double value) {
+        byte[] buf = new byte[1 + DecimalCodec.MAX_DOUBLE_CHARS];
+        int end = DecimalCodec.putDouble(buf, 1, value);
+        return new String(buf, 1, end - 1, StandardCharsets.US_ASCII);
+    }
+
+    private static double parse(String text) {
+        return DecimalCodec.parseDouble(text, 0, text.length());
+    }
+
+    private static int parseInt(String text) {
+        return DecimalCodec.parseInt(text, 0, text.length());
+    }
+
+    private static void assertSameDouble(String message, double expected, double actual) {
+        assertEquals(message + ": expected " + expected + " but was " + actual,
+                Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+}
@@ -0,0 +1,225 @@
+package mc.server.types;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Tests TextLoader against the line-by-line reader the file constructors used before, i.e. BufferedReader#readLine,
+ * String#split and Double#parseDouble. The files are a few MB, so that they are split into several byte ranges and the
+ * rows and the cells of a vector span the boundaries of the ranges.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TextLoaderTest extends TestCase {
+
+    // TextLoader maps ranges of at least 1 MB
+    private static final long MinChunkBytes = 1L << 20;
+
+    private final Random rand = new Random(42);
+
+    public void testMatrixCommaSeparated() throws IOException {
+        checkMatrix(",", "\n", 30000, 8);
+    }
+
+    public void testMatrixWhitespaceSeparated() throws IOException {
+        checkMatrix("\\s+", "\n", 30000, 8);
+    }
+
+    public void testMatrixCommaSeparatedCrlf() throws IOException {
+        checkMatrix(",", "\r\n", 30000, 8);
+    }
+
+    public void testMatrixWhitespaceSeparatedCrlf() throws IOException {
+        checkMatrix("\\s+", "\r\n", 30000, 8);
+    }
+
+    public void testMatrixRegexSeparator() throws IOException {
+        // Not scanned in place, read line by line like before
+        checkMatrix("\\s*,\\s*", "\n", 2000, 8);
+    }
+
+    public void testVectorCommaSeparated() throws IOException {
+        checkVector(",", "\n", 250000);
+    }
+
+    public void testVectorWhitespaceSeparated() throws IOException {
+        checkVector("\\s+", "\n", 250000);
+    }
+
+    public void testVectorWhitespaceSeparatedCrlf() throws IOException {
+        checkVector("\\s+", "\r\n", 250000);
+    }
+
+    public void testIntMatrixAndVector() throws IOException {
+        int rowTotal = 60000;
+        int colTotal = 6;
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < rowTotal; i++) {
+            for (int j = 0; j < colTotal; j++) {
+                text.append(j == 0 ? "" : ",").append(this.rand.nextInt());
+            }
+            text.append('\n');
+        }
+        File file = write(text.toString());
+        assertTrue(file.length() > 2 * MinChunkBytes);
+
+        int[][] mat = new int[rowTotal][colTotal];
+        TextLoader.readMatrix(file.getPath(), ",", mat);
+        int[] vect = new int[colTotal];
+        TextLoader.readVector(file.getPath(), ",", vect);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            for (int i = 0; i < rowTotal; i++) {
+                String[] rowLineArr = reader.readLine().trim().split(",");
+                for (int j = 0; j < colTotal; j++) {
+                    assertEquals("row " + i + ", column " + j, Integer.parseInt(rowLineArr[j]), mat[i][j]);
+                    if (i == 0) {
+                        assertEquals("element " + j, Integer.parseInt(rowLineArr[j]), vect[j]);
+                    }
+                }
+            }
+        }
+    }
+
+    public void testMatrixIgnoresRowsAndColumnsAfterTheLast() throws IOException {
+        File file = write("1,2,3\n4,5,6\n7,8,9\n");
+        double[][] mat = new double[2][2];
+        TextLoader.readMatrix(file.getPath(), ",", mat);
+        assertEquals(1.0, mat[0][0]);
+        assertEquals(2.0, mat[0][1]);
+        assertEquals(4.0, mat[1][0]);
+        assertEquals(5.0, mat[1][1]);
+    }
+
+    public void testMatrixWithoutFinalNewline() throws IOException {
+        File file = write("1.5 2.5\n3.5 4.5");
+        double[][] mat = new double[2][2];
+        TextLoader.readMatrix(file.getPath(), "\\s+", mat);
+        assertEquals(3.5, mat[1][0]);
+        assertEquals(4.5, mat[1][1]);
+    }
+
+    public void testShortVectorIsRejected() throws IOException {
+        File file = write("1,2,3\n4,5,6,7,8\n");
+        try {
+            TextLoader.readVector(file.getPath(), ",", new double[4]);
+            fail("A vector longer than the first line was read");
+        } catch (ArithmeticException expected) {
+            // The cells of the second line do not count
+        }
+    }
+
+    /*
+     * Writes a matrix with a mix of number formats, every row with its own spacing, and compares TextLoader with the
+     * previous reader */
+    private void checkMatrix(String sep, String lineEnd, int rowTotal, int colTotal) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < rowTotal; i++) {
+            text.append(spacing());
+            for (int j = 0; j < colTotal; j++) {
+                if (j > 0) {
+                    text.append(separator(sep));
+                }
+                text.append(randomNumber());
+            }
+            text.append(spacing()).append(lineEnd);
+        }
+        File file = write(text.toString());
+        if (rowTotal > 10000) {
+            assertTrue(file.length() > 2 * MinChunkBytes);
+        }
+
+        double[][] mat = new double[rowTotal][colTotal];
+        TextLoader.readMatrix(file.getPath(), sep, mat);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            for (int i = 0; i < rowTotal; i++) {
+                String[] rowLineArr = reader.readLine().trim().split(sep);
+                for (int j = 0; j < colTotal; j++) {
+                    assertSameDouble("row " + i + ", column " + j, Double.parseDouble(rowLineArr[j]), mat[i][j]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Writes a vector on a first line of several MB, followed by a second line that is not part of it */
+    private void checkVector(String sep, String lineEnd, int numCols) throws IOException {
+        StringBuilder text = new StringBuilder(spacing());
+        for (int j = 0; j < numCols; j++) {
+            if (j > 0) {
+                text.append(separator(sep));
+            }
+            text.append(randomNumber());
+        }
+        text.append(spacing()).append(lineEnd).append("1").append(separator(sep)).append("2").append(lineEnd);
+        File file = write(text.toString());
+        assertTrue(file.length() > 2 * MinChunkBytes);
+
+        double[] vect = new double[numCols];
+        TextLoader.readVector(file.getPath(), sep, vect);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String[] rowLineArr = reader.readLine().trim().split(sep);
+            assertEquals(numCols, rowLineArr.length);
+            for (int j = 0; j < numCols; j++) {
+                assertSameDouble("element " + j, Double.parseDouble(rowLineArr[j]), vect[j]);
+            }
+        }
+    }
+
+    private String randomNumber() {
+        switch (this.rand.nextInt(6)) {
+            case 0:
+                return Double.toString((this.rand.nextDouble() - 0.5) * 1000);
+            case 1:
+                return Double.toString(Double.longBitsToDouble(this.rand.nextLong()) % 1e300);
+            case 2:
+                return Integer.toString(this.rand.nextInt(2001) - 1000);
+            case 3:
+                return String.format(Locale.ROOT, "%.6e", this.rand.nextGaussian() * 1e-5);
+            case 4:
+                return String.format(Locale.ROOT, "%.3f", this.rand.nextGaussian() * 100);
+            default:
+                return Float.toString(this.rand.nextFloat());
+        }
+    }
+
+    private String separator(String sep) {
+        if (sep.equals(",")) {
+            return ",";
+        }
+        if (sep.equals("\\s+")) {
+            return this.rand.nextBoolean() ? " " : this.rand.nextBoolean() ? "\t" : "  ";
+        }
+        return this.rand.nextBoolean() ? "," : " , ";
+    }
+
+    /*
+     * Spaces before the first and after the last cell of a line, which the previous reader trimmed */
+    private String spacing() {
+        return this.rand.nextInt(4) == 0 ? " " : "";
+    }
+
+    private static void assertSameDouble(String message, double expected, double actual) {
+        assertEquals(message + ": expected " + expected + " but was " + actual,
+                Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual));
+    }
+
+    private static File write(String text) throws IOException {
+        File file = File.createTempFile("text-loader", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
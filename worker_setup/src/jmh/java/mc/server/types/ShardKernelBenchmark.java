@@ -0,0 +1,127 @@
+package mc.server.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the mat-vec product on the coded shard of one worker, at the production shape of 10,500 x 10,000.
+ * <P> Every benchmark multiplies the SendSize rows selected for worker 0 when numWorkers workers are running, so the
+ * storages and kernels can be compared on the same rows. Each storage is a separate state, so a benchmark only
+ * allocates the shard it uses.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class ShardKernelBenchmark {
+
+    private static final int RecThreshold = 10;
+    private static final int CodedSamplePerWorker = 10500;
+    private static final int ReceiveSize = 10000;
+    private static final int BatchSize = 4;
+
+    @Param({"20", "10"})
+    public int numWorkers;
+
+    private int startInd;
+    private int sendSize;
+    private TypeVectorDouble vectIn;
+    private double[] batchIn;
+    private double[] prodVector;
+    private double[] prodMatrix;
+    private MatVectKernel kernel;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int elastic_size = CodedSamplePerWorker / numWorkers;
+        sendSize = elastic_size * RecThreshold;
+        startInd = ((numWorkers - RecThreshold) % numWorkers) * elastic_size;
+
+        vectIn = new TypeVectorDouble(ReceiveSize, 0, 100);
+        batchIn = new TypeVectorDouble(BatchSize * ReceiveSize, 0, 100).GetVect();
+        prodVector = new double[sendSize];
+        prodMatrix = new double[sendSize * BatchSize];
+        kernel = new MatVectKernel(Runtime.getRuntime().availableProcessors());
+    }
+
+    @State(Scope.Benchmark)
+    public static class LegacyShard {
+        TypeMatrixDouble mat;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            mat = new TypeMatrixDouble(CodedSamplePerWorker, ReceiveSize, 0, 1);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DenseShard {
+        TypeDenseMatrixDouble mat;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            mat = TypeDenseMatrixDouble.generate_data(0, new TypeMatrixDouble(20, RecThreshold, -1, 1).GetMat(), CodedSamplePerWorker, ReceiveSize);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FloatShard {
+        TypeDenseMatrixFloat mat;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            mat = TypeDenseMatrixFloat.generate_data(0, new TypeMatrixDouble(20, RecThreshold, -1, 1).GetMat(), CodedSamplePerWorker, ReceiveSize);
+        }
+    }
+
+    @Benchmark
+    public double[] legacyMatVectMultSelected(LegacyShard shard) {
+        return shard.mat.matVectMult_selected(vectIn, startInd, sendSize);
+    }
+
+    @Benchmark
+    public double[] denseMatVectMultSelected(DenseShard shard) {
+        return shard.mat.matVectMult_selected(vectIn, startInd, sendSize);
+    }
+
+    @Benchmark
+    public double[] denseMatVectMult(DenseShard shard) {
+        return shard.mat.matVectMult(vectIn);
+    }
+
+    @Benchmark
+    public double[] kernelDense(DenseShard shard) {
+        kernel.matVectMult_selected(shard.mat, vectIn.GetVect(), startInd, sendSize, prodVector);
+        return prodVector;
+    }
+
+    @Benchmark
+    public double[] kernelFloat(FloatShard shard) {
+        kernel.matVectMult_selected(shard.mat, vectIn.GetVect(), startInd, sendSize, prodVector);
+        return prodVector;
+    }
+
+    @Benchmark
+    public double[] kernelDenseBatch(DenseShard shard) {
+        kernel.matMatMult_selected(shard.mat, batchIn, ReceiveSize, BatchSize, startInd, sendSize, prodMatrix);
+        return prodMatrix;
+    }
+}
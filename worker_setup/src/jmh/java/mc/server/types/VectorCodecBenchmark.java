@@ -0,0 +1,82 @@
+package mc.server.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of the vector codecs used on the worker side of a round. <P> The worker parses the 10,001-element
+ * input vector with its control information and serializes the 5,250 products it sends back when 20 workers are
+ * running, both in the URL encoded text format and in the binary wire format.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VectorCodecBenchmark {
+
+    private static final int ReceiveSize = 10000;
+    private static final int SendSize = 5250;
+
+    private String vectInText;
+    private byte[] vectInBinary;
+    private TypeVectorDouble vectIn;
+    private TypeVectorDouble prodVect;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        TypeVectorDouble vectInControl = new TypeVectorDouble(ReceiveSize + 1, 0, 100);
+        vectInControl.GetVect()[ReceiveSize] = 20;
+        vectInText = vectInControl.serialize(",");
+        vectInBinary = vectInControl.serializeBinary();
+
+        vectIn = new TypeVectorDouble(ReceiveSize);
+        prodVect = new TypeVectorDouble(SendSize, 0, 1000);
+    }
+
+    @Benchmark
+    public TypeVectorDouble deserializeWithControlInfo() {
+        vectIn.deserializeWithControlInfo(vectInText, ",");
+        return vectIn;
+    }
+
+    @Benchmark
+    public TypeVectorDouble deserializeBinaryWithControlInfo() {
+        vectIn.deserializeBinaryWithControlInfo(vectInBinary);
+        return vectIn;
+    }
+
+    @Benchmark
+    public TypeVectorDouble deserializeBinaryWithControlInfoStream() throws IOException {
+        vectIn.deserializeBinaryWithControlInfo(new ByteArrayInputStream(vectInBinary));
+        return vectIn;
+    }
+
+    @Benchmark
+    public String serialize() {
+        return prodVect.serialize(",");
+    }
+
+    @Benchmark
+    public byte[] serializeBinary() {
+        return prodVect.serializeBinary();
+    }
+}
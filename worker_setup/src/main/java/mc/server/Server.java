@@ -11,7 +11,7 @@ import io.undertow.server.handlers.PathHandler;
 import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.DeploymentManager;
 import mc.server.servlets.ServletWorker;
-import io.undertow.UndertowOptions;
+import mc.server.servlets.ServletMetrics;
 import javax.servlet.ServletException;
 
 import static io.undertow.servlet.Servlets.*;
@@ -19,6 +19,8 @@ import static io.undertow.servlet.Servlets.*;
 
 public class Server {
     private static final String PATH = "/";
+    // The port the node listens on, several nodes of a local cluster listen on different loopback ports
+    private static final int PORT = Integer.getInteger("mc.port", 80);
 
     public static void main(String[] args) {
         try {
@@ -26,7 +28,8 @@ public class Server {
                     .setClassLoader(Server.class.getClassLoader())
                     .setContextPath(PATH)
                     .setDeploymentName("handler.war")
-                    .addServlets(servlet("mc.server.servlets.ServletWorker", ServletWorker.class).addMapping("/worker"));
+                    .addServlets(servlet("mc.server.servlets.ServletWorker", ServletWorker.class).addMapping("/worker").setLoadOnStartup(1),
+                            servlet("mc.server.servlets.ServletMetrics", ServletMetrics.class).addMapping("/metrics"));
 
             DeploymentManager manager = defaultContainer().addDeployment(servletBuilder);
             manager.deploy();
@@ -36,8 +39,8 @@ public class Server {
             PathHandler path = Handlers.path(Handlers.redirect(PATH))
                     .addPrefixPath(PATH, servletHandler);
 
-            Undertow server = Undertow.builder().setServerOption(UndertowOptions.MAX_HEADER_SIZE, 10485760)
-                    .addHttpListener(80, "0.0.0.0")
+            Undertow server = Undertow.builder()
+                    .addHttpListener(PORT, "0.0.0.0")
                     .setHandler(path)
                     .build();
             server.start();
@@ -1,5 +1,6 @@
 package mc.server.comm;
 
+import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.Unirest;
 import com.mashape.unirest.http.exceptions.UnirestException;
 import org.apache.commons.io.IOUtils;
@@ -8,6 +9,9 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -23,6 +27,24 @@ import java.util.List;
  */
 
 public final class CommAPI {
+    /**
+     * Media type of the length-prefixed little-endian binary wire format defined by mc.server.types.BinaryCodec
+     */
+    public static final String BINARY_MEDIA_TYPE = "application/octet-stream";
+
+    /**
+     * Media type of URL encoded form bodies, which the servlet container parses into the parameter map
+     */
+    public static final String FORM_MEDIA_TYPE = "application/x-www-form-urlencoded";
+
+    /**
+     * Headers of the response of a worker with the nanoseconds it took to parse the input, to compute the product and
+     * to serialize the product vector
+     */
+    public static final String WORKER_PARSE_HEADER = "X-Worker-Parse-Nanos";
+    public static final String WORKER_COMPUTE_HEADER = "X-Worker-Compute-Nanos";
+    public static final String WORKER_SERIALIZE_HEADER = "X-Worker-Serialize-Nanos";
+
     /*
      * To avoid instantiating an object of this class */
     private CommAPI() {
@@ -50,6 +72,51 @@ public final class CommAPI {
 
     }
 
+    /**
+     * Sends a small control request, such as the heartbeat of a worker. Unlike CommAPI#sendGetRequest a failure is
+     * thrown to the caller instead of being printed, so that a node that is not up yet does not flood the log.
+     *
+     * @param protocol       Application level protocol being used to send the request
+     * @param dns            DNS of the node to which request is being sent
+     * @param mapping        Mapping to the servlet on the node server to which request is being sent
+     * @param queryStringMap Query key:value map for the servlet on the node to which request is being sent
+     * @return Returns the body of the response
+     * @throws IOException if the request fails or the node does not answer with a 2xx status
+     */
+    public static String sendControlRequest(String protocol, String dns, String mapping, HashMap<String, Object> queryStringMap) throws IOException {
+        try {
+            HttpResponse<String> response = Unirest.get(protocol + "://" + dns + mapping).queryString(queryStringMap).asString();
+            if (response.getStatus() / 100 != 2) {
+                throw new IOException("Node " + dns + " answered with status " + response.getStatus());
+            }
+            return response.getBody();
+        } catch (UnirestException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Builds a URL encoded form body with a single key:value pair
+     *
+     * @param key   Name of the parameter
+     * @param value Value of the parameter, URL encoded by this method
+     * @return Returns the form body as UTF-8 bytes
+     * @throws UnsupportedEncodingException if string cannot be encoded in UTF-8 format
+     */
+    public static byte[] formBody(String key, String value) throws UnsupportedEncodingException {
+        return (key + "=" + URLEncoder.encode(value, "UTF-8")).getBytes("UTF-8");
+    }
+
+    /**
+     * Checks whether the sender of a request accepts the binary wire format for the response
+     *
+     * @param acceptHeader Value of the Accept header of the received request, may be null
+     * @return Returns true if the binary media type is listed in the Accept header
+     */
+    public static boolean acceptsBinary(String acceptHeader) {
+        return acceptHeader != null && acceptHeader.contains(BINARY_MEDIA_TYPE);
+    }
+
     /**
      * URL encodes a string before sending it over the network to avoid transmission errors and failures
      *
@@ -73,7 +140,8 @@ public final class CommAPI {
     }
 
     /**
-     * Reads the EC2 DNS List populated by the deployment script
+     * Reads the EC2 DNS List populated by the deployment script. The list is read from the file named by the system
+     * property <code>mc.&lt;type&gt;DnsList</code> instead, if it is set, e.g. the host:port list of a local cluster.
      *
      * @param type Possible inputs are <code>master</code> or <code>worker</code> for reading the master or the worker
      *             node DNSs respectively
@@ -82,9 +150,14 @@ public final class CommAPI {
      */
     public static List<String> getEC2DNSList(String type, String sep) {
         ClassLoader classLoader = CommAPI.class.getClassLoader();
+        String listFile = System.getProperty("mc." + type + "DnsList");
         String result = "";
         try {
-            result = IOUtils.toString(classLoader.getResourceAsStream("ec2_" + type + "_dns_list"), "UTF-8").trim();
+            if (listFile != null) {
+                result = new String(Files.readAllBytes(Paths.get(listFile)), StandardCharsets.UTF_8).trim();
+            } else {
+                result = IOUtils.toString(classLoader.getResourceAsStream("ec2_" + type + "_dns_list"), "UTF-8").trim();
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
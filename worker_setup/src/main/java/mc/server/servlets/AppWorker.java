@@ -1,16 +1,30 @@
 package mc.server.servlets;
 
 import mc.server.comm.CommAPI;
+import mc.server.types.LatencyHistogram;
+import mc.server.types.MatVectKernel;
+import mc.server.types.TypeDenseMatrixDouble;
+import mc.server.types.TypeDenseMatrixFloat;
+import mc.server.types.TypeMappedMatrixDouble;
 import mc.server.types.TypeMatrixDouble;
+import mc.server.types.TypeRowMatrix;
 import mc.server.types.TypeVectorDouble;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Defines the tasks done at the worker nodes
  * This is the Main Server to be run on worker nodes, with the custom functions
+ * <P> The coded data and the configuration it was coded with belong to a WorkerDataset, so that one worker can serve
+ * the requests of several masters or jobs at the same time. An object of this class handles one request, for the
+ * dataset whose id the request carries. Every initialized dataset is checkpointed, see WorkerCheckpoint, and restored
+ * when the worker starts again.
  *
  * @author Yaoqing Yang
  */
@@ -18,86 +32,389 @@ import java.util.List;
 class AppWorker {
 
     final private static Logger logger = LogManager.getLogger(AppWorker.class);
+    // The phases of a request, exposed on /metrics. The binary input is parsed while it is read from the stream, so
+    // the parse time includes the time the body takes to arrive
+    final private static LatencyHistogram parseHistogram = ServletMetrics.histogram("worker.parse");
+    final private static LatencyHistogram computeHistogram = ServletMetrics.histogram("worker.compute");
     private List<String> dns_arr_master = CommAPI.getEC2DNSList("master", ",");
     
     final private static int RecThreshold = 10;
-    final private static int OverallSize = 105000;
+    // The sizes can be scaled down together with the master, e.g. to run a local cluster on one machine
+    final private static int OverallSize = Integer.getInteger("mc.overallSize", 105000);
     //final private static int OverallSize = 180;
 
     final private static int NumWorkers_initial = 20;
-    final private static int ReceiveSize = 10000;
+    final private static int ReceiveSize = Integer.getInteger("mc.vectorSize", 10000);
+    // Largest number of input vectors accepted in one batch request
+    final private static int MaxBatchSize = 64;
     //final private static int ReceiveSize = 5;
 
     final private static int SamplePerWorker = OverallSize/NumWorkers_initial;
     final private static int CodedSamplePerWorker = SamplePerWorker*(NumWorkers_initial/RecThreshold);
 
-    private static int NumWorkers = NumWorkers_initial;
-    private static int SendSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
-    private static int elastic_size = CodedSamplePerWorker/NumWorkers;
+    // Splits the selected rows of the mat-vec product across a ForkJoin pool
+    final private static MatVectKernel kernel = new MatVectKernel(Integer.getInteger("mc.kernelThreads", Runtime.getRuntime().availableProcessors()));
 
-    private static boolean if_init = true; // Indicate this is the first iteration
-    private static int workerNum;
-    private static TypeMatrixDouble GeneratorMatrix;
+    // Directory that data_movement.sh copies the Worker_<workerNum> data folders into
+    final private static String DataDir = System.getProperty("mc.dataDir", "/home/ubuntu/worker_setup/data_files");
+    final private static String ShardFileName = "shard.bin";
+    // Write the generated shard to the data folder, so that a restarted worker maps it instead of regenerating it
+    final private static boolean WriteShard = Boolean.getBoolean("mc.writeShard");
+    // Store a generated shard in float32 to halve the bytes streamed per round, products are still accumulated in double
+    final private static boolean FloatShard = "float32".equals(System.getProperty("mc.shardPrecision", "float64"));
+    // Directory of the checkpoints of the datasets, e.g. DataDir/checkpoint. The checkpoints are off unless it is set
+    final private static String CheckpointDir = System.getProperty("mc.checkpointDir", "");
+    final private static WorkerCheckpoint checkpoint = CheckpointDir.isEmpty() ? null : new WorkerCheckpoint(CheckpointDir);
 
-    private static TypeMatrixDouble mat = new TypeMatrixDouble(1,1,0,1);
+    // The dataset of the request handled by this object
+    private String datasetId = WorkerDataset.DEFAULT_ID;
+    // The timings of the request handled by this object, sent back to the master with the product vector
+    private long parseTime = -1;
+    private long computeTime = -1;
+    // The request carries the generator matrix and the worker id, even if this worker has been initialized before
+    private boolean initRequest = false;
+    // The position of this worker in the ring of the round, which is the worker number unless the master says otherwise
+    private int position = -1;
+    // The rows the master has allocated to this worker for the request, if it allocates them by speed
+    private int rowStart = -1;
+    private int rowCount = -1;
 
-    String vectMatMult(String vectInStr) {
-        String vectResp = "";
+    /**
+     * Handles a URL encoded text request. The first request carries the generator matrix and the worker number, every
+     * later request carries the input vector with the number of workers as control information.
+     *
+     * @param vectInStr URL encoded input vector
+     * @return Returns the product vector, or null for the initial request
+     */
+    TypeVectorDouble vectMatMult(String vectInStr) {
         try {
-            
-            if (if_init) {
 
-                if_init = false;
+            WorkerDataset dataset = WorkerDataset.get(datasetId);
+            if (dataset == null || !dataset.isInitialized() || initRequest) {
+
                 // Initial stage to generate data
                 TypeVectorDouble vectConcat = new TypeVectorDouble(1+NumWorkers_initial*RecThreshold);
                 vectConcat.deserialize(CommAPI.stringURLDecode(vectInStr), ",");
-                GeneratorMatrix = new TypeMatrixDouble(NumWorkers_initial, RecThreshold, vectConcat);
+                initData(vectConcat);
 
-                workerNum = (int) vectConcat.GetVect()[NumWorkers_initial*RecThreshold];
-                logger.info("This worker has worker number" + workerNum);
+            }
+            else {
 
-                // Generate the partial data
-                mat = new TypeMatrixDouble(CodedSamplePerWorker, ReceiveSize, mat.generate_data(workerNum, GeneratorMatrix.GetMat(), CodedSamplePerWorker, ReceiveSize));
+                TypeVectorDouble vectIn = new TypeVectorDouble( ReceiveSize );
+
+                long matProdTimeStart = System.nanoTime();
+                vectIn.deserializeWithControlInfo(CommAPI.stringURLDecode(vectInStr), ",");
+                return computeProduct(dataset, vectIn, matProdTimeStart);
+            }
+        }
+        catch (Exception e){
+            logger.error(e.toString());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Handles a request in the binary wire format, see mc.server.types.BinaryCodec. The input vector is parsed while
+     * it is read from the stream.
+     *
+     * @param vectInBin Stream positioned at the start of the binary frame of the input vector
+     * @return Returns the product vector, or null for the initial request
+     */
+    TypeVectorDouble vectMatMult(InputStream vectInBin) {
+        try {
+
+            WorkerDataset dataset = WorkerDataset.get(datasetId);
+            if (dataset == null || !dataset.isInitialized() || initRequest) {
+
+                TypeVectorDouble vectConcat = new TypeVectorDouble(1+NumWorkers_initial*RecThreshold);
+                vectConcat.deserializeBinary(vectInBin);
+                initData(vectConcat);
 
             }
             else {
 
-                //TypeMatrixDouble mat = new TypeMatrixDouble(matSize, matSize, 0, 100);
                 TypeVectorDouble vectIn = new TypeVectorDouble( ReceiveSize );
 
                 long matProdTimeStart = System.nanoTime();
-                vectIn.deserializeWithControlInfo(CommAPI.stringURLDecode(vectInStr), ",");
+                vectIn.deserializeBinaryWithControlInfo(vectInBin);
+                return computeProduct(dataset, vectIn, matProdTimeStart);
+            }
+        }
+        catch (Exception e){
+            logger.error(e.toString());
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-                if (vectIn.GetControlInfo() != NumWorkers) {
-                    // The number of workers has changed
-                    NumWorkers = vectIn.GetControlInfo();
-                    UpdateSettingsWhenNumMachinesChange();
+    /**
+     * Sets the options the master sent with the request handled by this object
+     *
+     * @param initRequest True if the request carries the generator matrix and the worker id
+     * @param position    The position of this worker in the ring of the round, or -1 to use the worker number
+     */
+    void setRequestOptions(boolean initRequest, int position) {
+        this.initRequest = initRequest;
+        this.position = position;
+    }
 
-                }
+    /**
+     * Sets the dataset of the request handled by this object, see WorkerDataset
+     *
+     * @param datasetId The id of the dataset
+     */
+    void setDataset(String datasetId) {
+        this.datasetId = WorkerDataset.checkId(datasetId);
+    }
+
+    /**
+     * Removes the dataset of the request handled by this object from this worker
+     *
+     * @return Returns true if the dataset was registered
+     */
+    boolean dropDataset() {
+        boolean removed = WorkerDataset.remove(datasetId);
+        if (checkpoint != null) {
+            checkpoint.delete(datasetId);
+        }
+        logger.info("Dropped the dataset " + datasetId + ", the registered datasets are " + WorkerDataset.ids());
+        return removed;
+    }
+
+    /**
+     * Sets the rows of the shard to compute for the request handled by this object, instead of the sub-rows of the
+     * cyclic shift method
+     *
+     * @param rowStart The first row, the rows wrap around to row 0 after the last row
+     * @param rowCount The number of rows, at most all rows of the shard
+     */
+    void setRows(int rowStart, int rowCount) {
+        if (rowStart < 0 || rowStart >= CodedSamplePerWorker || rowCount < 1 || rowCount > CodedSamplePerWorker) {
+            throw new ArithmeticException("The rows " + rowStart + " to " + (rowStart + rowCount - 1) + " are not in the shard!");
+        }
+        this.rowStart = rowStart;
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * Handles a batch request in the binary wire format. The frame is a matrix with one input vector per row, and the
+     * number of workers as control information in the last column. All vectors are multiplied in a single pass over
+     * the selected rows of the shard.
+     *
+     * @param vectsInBin Stream positioned at the start of the binary matrix frame of the input vectors
+     * @param numVect    Number of input vectors in the batch
+     * @return Returns the SendSize x numVect products in row-major order, or null if the request fails
+     */
+    TypeVectorDouble vectMatMultBatch(InputStream vectsInBin, int numVect) {
+        try {
 
-                //TypeVectorDouble vectFin = new TypeVectorDouble(SendSize, mat.matVectMult(vectIn));
-                int startInd = ((NumWorkers - RecThreshold + workerNum) % NumWorkers)*elastic_size;
-                //logger.info("The start ind in this worker is " + startInd);
+            if (numVect < 1 || numVect > MaxBatchSize) {
+                throw new ArithmeticException("The batch size " + numVect + " is not between 1 and " + MaxBatchSize + "!");
+            }
 
-                TypeVectorDouble vectFin = new TypeVectorDouble(SendSize, mat.matVectMult_selected(vectIn, startInd, SendSize));
-                vectResp =  CommAPI.stringURLEncode(vectFin.serialize(","));
-                logger.info("Time Taken to Complete Matrix Vector Product is " + (System.nanoTime()-matProdTimeStart));
+            WorkerDataset dataset = WorkerDataset.get(datasetId);
+            if (dataset == null || !dataset.isInitialized()) {
+                throw new IllegalStateException("The dataset " + datasetId + " has not been initialized!");
+            }
+            TypeDenseMatrixDouble vectsIn = new TypeDenseMatrixDouble(numVect, ReceiveSize + 1);
+
+            long matProdTimeStart = System.nanoTime();
+            vectsIn.deserializeBinary(vectsInBin);
+            int controlInfo = (int) vectsIn.get(0, ReceiveSize);
+            // The vectors are read in place, the control information is skipped through the stride
+            return computeProduct(dataset, vectsIn.toVect(), ReceiveSize + 1, numVect, controlInfo, matProdTimeStart);
+        }
+        catch (Exception e){
+            logger.error(e.toString());
+            e.printStackTrace();
+        }
+        return null;
+    }
 
-                //vectFin.writeVectToFile("/home/ubuntu/local_result.txt", "\n");
+    /**
+     * Maps the shard file that data_movement.sh has copied to this worker, so that the first round does not wait for
+     * the data to be loaded. The first request of the dataset still has to carry the generator matrix.
+     *
+     * @param workerIndex Index of the data folder Worker_<workerIndex>
+     * @return Returns true if a shard file was found and mapped
+     */
+    boolean startWorker(int workerIndex) {
+        try {
+            TypeRowMatrix mapped = mapShard(datasetId, workerIndex);
+            if (mapped == null) {
+                return false;
             }
+            WorkerDataset dataset = WorkerDataset.get(datasetId);
+            if (dataset == null || dataset.mat != mapped) {
+                WorkerDataset.register(new WorkerDataset(datasetId, workerIndex, null, mapped));
+            }
+            return true;
         }
         catch (Exception e){
             logger.error(e.toString());
             e.printStackTrace();
         }
-        return vectResp;
+        return false;
+    }
+
+    /**
+     * Method for restoring the datasets from their checkpoints when the worker starts, so that it serves them before
+     * the master has sent the generator matrix again
+     */
+    static void restoreDatasets() {
+        if (checkpoint == null) {
+            return;
+        }
+        for (WorkerCheckpoint.Entry entry : checkpoint.readAll()) {
+            try {
+                long restoreTimeStart = System.nanoTime();
+                TypeRowMatrix stored = entry.mat;
+                if (stored != null && (stored.num_row() != CodedSamplePerWorker || stored.num_col() != ReceiveSize)) {
+                    logger.info("The shard in the checkpoint of the dataset " + entry.id + " does not match in size with the coded data");
+                    stored = null;
+                }
+                WorkerDataset.register(loadDataset(entry.id, entry.workerNum, entry.generatorMatrix, stored));
+                logger.info("Restored the dataset " + entry.id + " with worker number " + entry.workerNum + " in " +
+                        (System.nanoTime() - restoreTimeStart));
+            } catch (IOException | RuntimeException e) {
+                logger.error("The dataset " + entry.id + " could not be restored: " + e);
+            }
+        }
     }
 
-    private void UpdateSettingsWhenNumMachinesChange() {
+    /*
+     * The dataset is built completely before it is registered, requests in flight keep the dataset they started with */
+    private void initData(TypeVectorDouble vectConcat) throws IOException {
+
+        TypeMatrixDouble GeneratorMatrix = new TypeMatrixDouble(NumWorkers_initial, RecThreshold, vectConcat);
+
+        int workerNum = (int) vectConcat.GetVect()[NumWorkers_initial*RecThreshold];
+        logger.info("This worker has worker number" + workerNum + " in the dataset " + datasetId);
+
+        // A dataset restored from its checkpoint is kept if the master repeats the same generator matrix and id
+        WorkerDataset current = WorkerDataset.get(datasetId);
+        if (current != null && current.isInitialized() && current.workerNum == workerNum &&
+                Arrays.deepEquals(current.generatorMatrix.GetMat(), GeneratorMatrix.GetMat())) {
+            logger.info("The dataset " + datasetId + " is already initialized with this generator matrix");
+            return;
+        }
+
+        WorkerDataset dataset = loadDataset(datasetId, workerNum, GeneratorMatrix, null);
+        WorkerDataset.register(dataset);
+        if (checkpoint != null) {
+            checkpoint.save(dataset);
+        }
+    }
+
+    /*
+     * The shard is mapped from the data directory if it is there, otherwise taken from the checkpoint, otherwise
+     * generated */
+    private static WorkerDataset loadDataset(String datasetId, int workerNum, TypeMatrixDouble GeneratorMatrix,
+                                             TypeRowMatrix checkpointed) throws IOException {
+
+        TypeRowMatrix mapped = mapShard(datasetId, workerNum);
+        if (mapped != null) {
+            return new WorkerDataset(datasetId, workerNum, GeneratorMatrix, mapped);
+        }
+        if (checkpointed != null) {
+            return new WorkerDataset(datasetId, workerNum, GeneratorMatrix, checkpointed);
+        }
+
+        if (FloatShard) {
+            TypeRowMatrix generated = TypeDenseMatrixFloat.generate_data(workerNum, GeneratorMatrix.GetMat(), CodedSamplePerWorker, ReceiveSize);
+            logger.info("The shard is stored in float32");
+            return new WorkerDataset(datasetId, workerNum, GeneratorMatrix, generated);
+        }
 
-        // Randomly generate the number of machines
-        SendSize = CodedSamplePerWorker/NumWorkers*RecThreshold;
-        elastic_size = CodedSamplePerWorker/NumWorkers;
+        // Generate the partial data
+        TypeDenseMatrixDouble generated = TypeDenseMatrixDouble.generate_data(workerNum, GeneratorMatrix.GetMat(), CodedSamplePerWorker, ReceiveSize);
+
+        if (WriteShard) {
+            File shardFile = WorkerDataset.shardFile(DataDir, datasetId, workerNum, ShardFileName);
+            if (shardFile.getParentFile().isDirectory() || shardFile.getParentFile().mkdirs()) {
+                TypeMappedMatrixDouble.writeShard(shardFile.getPath(), generated);
+                logger.info("Wrote the generated shard to " + shardFile.getPath());
+            }
+        }
+        return new WorkerDataset(datasetId, workerNum, GeneratorMatrix, generated);
+    }
+
+    /*
+     * Maps the shard file of the given worker of a dataset if it exists, or returns null. A shard that the dataset has
+     * mapped already is kept. */
+    private static synchronized TypeRowMatrix mapShard(String datasetId, int workerIndex) throws IOException {
+        File shardFile = WorkerDataset.shardFile(DataDir, datasetId, workerIndex, ShardFileName);
+        if (!shardFile.isFile()) {
+            return null;
+        }
+        WorkerDataset dataset = WorkerDataset.get(datasetId);
+        if (dataset != null && dataset.mat instanceof TypeMappedMatrixDouble &&
+                ((TypeMappedMatrixDouble) dataset.mat).getFilepath().equals(shardFile.getPath())) {
+            return dataset.mat;
+        }
+
+        long mapTimeStart = System.nanoTime();
+        TypeMappedMatrixDouble mapped = new TypeMappedMatrixDouble(shardFile.getPath());
+        if (mapped.num_row() != CodedSamplePerWorker || mapped.num_col() != ReceiveSize) {
+            throw new ArithmeticException("The shard file " + shardFile.getPath() + " does not match in size with the coded data!");
+        }
+        logger.info("Mapped the shard file " + shardFile.getPath() + " in " + (System.nanoTime()-mapTimeStart));
+        return mapped;
+    }
+
+    private TypeVectorDouble computeProduct(WorkerDataset dataset, TypeVectorDouble vectIn, long matProdTimeStart) {
+        return computeProduct(dataset, vectIn.GetVect(), ReceiveSize, 1, vectIn.GetControlInfo(), matProdTimeStart);
+    }
+
+    private TypeVectorDouble computeProduct(WorkerDataset dataset, double[] vects, int vectStride, int numVect, int controlInfo,
+                                            long matProdTimeStart) {
+
+        long computeTimeStart = System.nanoTime();
+        parseTime = computeTimeStart - matProdTimeStart;
+        parseHistogram.record(parseTime);
+
+        // Requests of several rounds can be in flight, so the sizes of this request follow its own control information
+        // instead of the settings of whichever request changed them last
+        int numWorkers = controlInfo;
+        int elasticSize = CodedSamplePerWorker/numWorkers;
+        int sendSize = rowCount >= 0 ? rowCount : elasticSize*RecThreshold;
+
+        //TypeVectorDouble vectFin = new TypeVectorDouble(SendSize, mat.matVectMult(vectIn));
+        // With dynamic membership the workers of a ring need not be 0 to numWorkers - 1, the sub-rows follow the
+        // position in the ring while the coded data follows the worker number
+        int ringPosition = position >= 0 ? position : dataset.workerNum;
+        int startInd = rowStart >= 0 ? rowStart : ((numWorkers - RecThreshold + ringPosition) % numWorkers)*elasticSize;
+        //logger.info("The start ind in this worker is " + startInd);
+
+        double[] prodVector = new double[sendSize * numVect];
+        if (numVect == 1) {
+            kernel.matVectMult_selected(dataset.mat, vects, startInd, sendSize, prodVector);
+        } else {
+            kernel.matMatMult_selected(dataset.mat, vects, vectStride, numVect, startInd, sendSize, prodVector);
+        }
+        TypeVectorDouble vectFin = new TypeVectorDouble(sendSize * numVect, prodVector);
+        computeTime = System.nanoTime() - computeTimeStart;
+        computeHistogram.record(computeTime);
+        logger.info("Time Taken to Complete Matrix Vector Product is " + (System.nanoTime()-matProdTimeStart));
+
+        //vectFin.writeVectToFile("/home/ubuntu/local_result.txt", "\n");
+        return vectFin;
+    }
+
+    /**
+     * Returns the nanoseconds spent parsing the input of the request handled by this object, or -1 if nothing was
+     * computed
+     */
+    long getParseTime() {
+        return parseTime;
+    }
 
+    /**
+     * Returns the nanoseconds spent computing the product of the request handled by this object, or -1 if nothing
+     * was computed
+     */
+    long getComputeTime() {
+        return computeTime;
     }
 }
@@ -0,0 +1,95 @@
+package mc.server.servlets;
+
+import mc.server.comm.CommAPI;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this worker registered with the master. <P> With -Dmc.elasticity=membership, as on the master, the worker sends
+ * a heartbeat with the address the master reaches it at every mc.heartbeatInterval milliseconds, the first heartbeat
+ * registers it, and it deregisters when the JVM shuts down. Otherwise the worker sends nothing. The address is
+ * mc.advertiseAddress, or the host name of this machine with the port the worker listens on. Every heartbeat also
+ * reports the initialized datasets, see WorkerDataset#summary, so that the master does not initialize a worker again
+ * that has restored its datasets from their checkpoints.
+ *
+ * @author Yaoqing Yang
+ */
+
+class MembershipClient {
+
+    final private static Logger logger = LogManager.getLogger(MembershipClient.class);
+
+    // The master only uses the registrations with dynamic membership, the heartbeats are off otherwise
+    final private static long HeartbeatInterval = "membership".equals(System.getProperty("mc.elasticity", "simulated"))
+            ? Long.getLong("mc.heartbeatInterval", 1000) : 0;
+
+    private static ScheduledExecutorService executor;
+
+    /**
+     * Method for starting the heartbeats, if they are enabled and not started yet
+     */
+    static synchronized void start() {
+        if (executor != null || HeartbeatInterval <= 0) {
+            return;
+        }
+
+        List<String> dns_arr_master = CommAPI.getEC2DNSList("master", ",");
+        if (dns_arr_master.isEmpty() || dns_arr_master.get(0).isEmpty()) {
+            return;
+        }
+        String master = dns_arr_master.get(0);
+        String address = advertiseAddress();
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "membership-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // The servlet is deployed before the server listens, so the first heartbeat waits one interval
+        executor.scheduleWithFixedDelay(() -> send(master, "heartbeat", address), HeartbeatInterval, HeartbeatInterval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> send(master, "deregister", address)));
+        logger.info("Sending heartbeats to " + master + " as " + address);
+    }
+
+    private static void send(String master, String type, String address) {
+        HashMap<String, Object> queryStringMap = new HashMap<>();
+        queryStringMap.put(type, address);
+        if (type.equals("heartbeat")) {
+            String datasets = WorkerDataset.summary();
+            if (!datasets.isEmpty()) {
+                queryStringMap.put("datasets", datasets);
+            }
+        }
+        try {
+            CommAPI.sendControlRequest("http", master, "/master", queryStringMap);
+        } catch (IOException e) {
+            // The master may not be up yet, the next heartbeat tries again
+            logger.debug("The " + type + " to " + master + " failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("The " + type + " to " + master + " failed: " + e);
+        }
+    }
+
+    private static String advertiseAddress() {
+        String address = System.getProperty("mc.advertiseAddress");
+        if (address != null) {
+            return address;
+        }
+        int port = Integer.getInteger("mc.port", 80);
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return port == 80 ? host : host + ":" + port;
+    }
+}
@@ -1,14 +1,21 @@
 package mc.server.servlets;
 
+import mc.server.comm.CommAPI;
+import mc.server.types.LatencyHistogram;
+import mc.server.types.TypeVectorDouble;
+
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.Map;
 
 /**
  * Defines a servlet at the node. <P> Defines the mapping between query object and the corresponding methods when the
- * request is routed to this servlet. Currently post requests are routed as get requests.
+ * request is routed to this servlet. Post requests with a binary body are streamed into the worker, other post requests
+ * are routed as get requests. The dataset query parameter selects the WorkerDataset a request belongs to.
  *
  * @author Malhar Chaudhari
  * @version 1.0
@@ -16,6 +23,19 @@ import java.util.Map;
 
 public class ServletWorker extends HttpServlet {
 
+    /**
+     * Restores the datasets from their checkpoints once the servlet is deployed, see WorkerCheckpoint, and then
+     * registers this worker with the master, see MembershipClient
+     */
+    @Override
+    public void init() {
+        AppWorker.restoreDatasets();
+        MembershipClient.start();
+    }
+
+    // Time to serialize the product vector and write it to the response, exposed on /metrics
+    private static final LatencyHistogram encodeHistogram = ServletMetrics.histogram("worker.encode");
+
     /**
      * Defines the mapping between parameter map and the methods to be called in the corresponding App file with the
      * keys in the parameter map as the argument inputs to the methods
@@ -31,35 +51,121 @@ public class ServletWorker extends HttpServlet {
             request.setCharacterEncoding("UTF-8");
             response.setCharacterEncoding("UTF-8");
 
-            PrintWriter printWriter = new PrintWriter(response.getOutputStream());
-
-            String prodVect = "";
+            TypeVectorDouble prodVect = null;
+            AppWorker appWorker = new AppWorker();
+            setRequestOptions(request, appWorker);
 
             Map<String, String[]> paramMap = request.getParameterMap();
             for (String param : paramMap.keySet()) {
                 if (param.equals("vectIn")) {
-                    AppWorker appWorker = new AppWorker();
                     prodVect = appWorker.vectMatMult(paramMap.get(param)[0]);
                 }
+                else if (param.equals("startWorker")) {
+                    appWorker.startWorker(Integer.parseInt(paramMap.get(param)[0]));
+                }
+                else if (param.equals("dropDataset")) {
+                    appWorker.dropDataset();
+                }
             }
 
-            printWriter.print(prodVect);
+            writeVect(request, response, prodVect, appWorker);
+        } catch (Exception ignored) {
+            ignored.printStackTrace();
+        }
+    }
 
+    /**
+     * Writes the product vector in the format negotiated through the Accept header of the request. The vector is
+     * serialized before anything is written, so that the parse, compute and serialize timings of the worker can be sent
+     * back in the headers of the response, see CommAPI#WORKER_COMPUTE_HEADER.
+     *
+     * @param request   The HttpServletRequest being answered
+     * @param response  The HttpServletResponse to which the vector is written
+     * @param prodVect  The product vector, or null if there is nothing to send back
+     * @param appWorker The worker object that handled the request
+     * @throws IOException if writing to the output stream fails
+     */
+    private void writeVect(HttpServletRequest request, HttpServletResponse response, TypeVectorDouble prodVect,
+                           AppWorker appWorker) throws IOException {
+        long encodeTimeStart = System.nanoTime();
+        if (CommAPI.acceptsBinary(request.getHeader("Accept"))) {
+            byte[] body = prodVect == null ? new byte[0] : prodVect.serializeBinary();
+            setTimingHeaders(response, prodVect, appWorker, System.nanoTime() - encodeTimeStart);
+            response.setContentType(CommAPI.BINARY_MEDIA_TYPE);
+            OutputStream outputStream = response.getOutputStream();
+            outputStream.write(body);
+            outputStream.flush();
+            outputStream.close();
+        }
+        else {
+            String body = prodVect == null ? "" : CommAPI.stringURLEncode(prodVect.serialize(","));
+            setTimingHeaders(response, prodVect, appWorker, System.nanoTime() - encodeTimeStart);
+            PrintWriter printWriter = new PrintWriter(response.getOutputStream());
+            printWriter.print(body);
             printWriter.flush();
             printWriter.close();
-        } catch (Exception ignored) {
-            ignored.printStackTrace();
+        }
+        if (prodVect != null) {
+            encodeHistogram.record(System.nanoTime() - encodeTimeStart);
+        }
+    }
+
+    /*
+     * The init and position query parameters, see AppWorker#setRequestOptions, the rows allocated by speed, see
+     * AppWorker#setRows, and the dataset, see AppWorker#setDataset */
+    private void setRequestOptions(HttpServletRequest request, AppWorker appWorker) {
+        String dataset = request.getParameter("dataset");
+        if (dataset != null) {
+            appWorker.setDataset(dataset);
+        }
+        String position = request.getParameter("position");
+        appWorker.setRequestOptions(request.getParameter("init") != null, position == null ? -1 : Integer.parseInt(position));
+        String rowStart = request.getParameter("rowStart");
+        String rowCount = request.getParameter("rowCount");
+        if (rowStart != null && rowCount != null) {
+            appWorker.setRows(Integer.parseInt(rowStart), Integer.parseInt(rowCount));
         }
     }
 
+    /*
+     * Only a computed product vector has timings to report */
+    private void setTimingHeaders(HttpServletResponse response, TypeVectorDouble prodVect, AppWorker appWorker, long serializeTime) {
+        if (prodVect == null) {
+            return;
+        }
+        response.setHeader(CommAPI.WORKER_PARSE_HEADER, Long.toString(appWorker.getParseTime()));
+        response.setHeader(CommAPI.WORKER_COMPUTE_HEADER, Long.toString(appWorker.getComputeTime()));
+        response.setHeader(CommAPI.WORKER_SERIALIZE_HEADER, Long.toString(serializeTime));
+    }
+
     /**
-     * Routes the received request to doGet method
+     * Streams a binary request body into the worker, so that the input vector is parsed while the bytes are still
+     * arriving. With the batch query parameter the body holds a batch of input vectors, one per row of a matrix frame.
+     * Other requests, including URL encoded form bodies, are routed to the doGet method.
      *
-     * @param request  Routes the request to the doGet methods
-     * @param response Routes the response via doGet methods
+     * @param request  The HttpServletRequest being sent to this servlet
+     * @param response The response to the received POST Request
      */
     @Override
     protected void doPost(final HttpServletRequest request, final HttpServletResponse response) {
-        doGet(request, response);
+        String contentType = request.getContentType();
+        if (contentType == null || !contentType.startsWith(CommAPI.BINARY_MEDIA_TYPE)) {
+            doGet(request, response);
+            return;
+        }
+
+        try {
+            AppWorker appWorker = new AppWorker();
+            setRequestOptions(request, appWorker);
+            // The batch query parameter announces a matrix frame with one input vector per row
+            String batch = request.getParameter("batch");
+            TypeVectorDouble prodVect = batch == null
+                    ? appWorker.vectMatMult(request.getInputStream())
+                    : appWorker.vectMatMultBatch(request.getInputStream(), Integer.parseInt(batch));
+
+            writeVect(request, response, prodVect, appWorker);
+        } catch (Exception ignored) {
+            ignored.printStackTrace();
+        }
     }
 }
@@ -0,0 +1,210 @@
+package mc.server.servlets;
+
+import mc.server.types.BinaryCodec;
+import mc.server.types.TypeDenseMatrixDouble;
+import mc.server.types.TypeMappedMatrixDouble;
+import mc.server.types.TypeMatrixDouble;
+import mc.server.types.TypeRowMatrix;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Binary checkpoint of the datasets of this worker, so that a restarted worker serves its datasets again without
+ * waiting for the master to send the generator matrix and without generating its shard again. <P> Every initialized
+ * dataset is kept in the file <id>.ckpt of the checkpoint directory: a little-endian int32 magic number, version, worker
+ * number and shard kind, the generator matrix as a matrix frame, see TypeMatrixDouble#serializeBinary, and for a
+ * generated shard the shard as a matrix frame, see TypeMappedMatrixDouble#writeShard. The shard of a restored dataset
+ * is mapped from the checkpoint in place. A shard that was mapped from the data directory, or that is stored in
+ * float32, is not copied into the checkpoint, it is mapped or generated again from the worker number and the generator
+ * matrix. <P> The checkpoints are written in the background, one after the other, into a temporary file that is then
+ * renamed, so that a worker that stops while writing keeps its previous checkpoint.
+ *
+ * @author Yaoqing Yang
+ */
+
+final class WorkerCheckpoint {
+
+    /**
+     * The content of one checkpoint file, the shard is null if it was not stored
+     */
+    static final class Entry {
+        final String id;
+        final int workerNum;
+        final TypeMatrixDouble generatorMatrix;
+        final TypeRowMatrix mat;
+
+        private Entry(String id, int workerNum, TypeMatrixDouble generatorMatrix, TypeRowMatrix mat) {
+            this.id = id;
+            this.workerNum = workerNum;
+            this.generatorMatrix = generatorMatrix;
+            this.mat = mat;
+        }
+    }
+
+    final private static Logger logger = LogManager.getLogger(WorkerCheckpoint.class);
+
+    private static final String Suffix = ".ckpt";
+    // "MCKP" in ASCII
+    private static final int Magic = 0x4d434b50;
+    private static final int Version = 1;
+    private static final int ShardNotStored = 0;
+    private static final int ShardStored = 1;
+    private static final int HeaderBytes = 4 * BinaryCodec.HEADER_BYTES;
+
+    private final File dir;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "worker-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for class WorkerCheckpoint.
+     *
+     * @param dir The checkpoint directory, created when the first checkpoint is written
+     */
+    WorkerCheckpoint(String dir) {
+        this.dir = new File(dir);
+    }
+
+    /**
+     * Method for writing the checkpoint of an initialized dataset in the background, replacing the checkpoint of the
+     * dataset with the same id
+     *
+     * @param dataset The dataset
+     */
+    void save(WorkerDataset dataset) {
+        this.writer.execute(() -> {
+            try {
+                long saveTimeStart = System.nanoTime();
+                write(dataset);
+                logger.info("Wrote the checkpoint of the dataset " + dataset.id + " in " + (System.nanoTime() - saveTimeStart));
+            } catch (IOException e) {
+                logger.error("The checkpoint of the dataset " + dataset.id + " could not be written: " + e);
+            }
+        });
+    }
+
+    /**
+     * Method for deleting the checkpoint of a dataset, after the checkpoints that are still being written
+     *
+     * @param id The id of the dataset
+     */
+    void delete(String id) {
+        this.writer.execute(() -> {
+            if (checkpointFile(id).delete()) {
+                logger.info("Deleted the checkpoint of the dataset " + id);
+            }
+        });
+    }
+
+    /**
+     * Method for reading all checkpoints of the checkpoint directory. A checkpoint that cannot be read is skipped.
+     *
+     * @return Returns the content of the checkpoints in the order of their ids
+     */
+    List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = this.dir.listFiles((parent, name) -> name.endsWith(Suffix));
+        if (files == null) {
+            return entries;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                entries.add(read(WorkerDataset.checkId(name.substring(0, name.length() - Suffix.length())), file));
+            } catch (IOException | RuntimeException e) {
+                logger.error("Skipped the checkpoint " + file.getPath() + ": " + e);
+            }
+        }
+        return entries;
+    }
+
+    private File checkpointFile(String id) {
+        return new File(this.dir, id + Suffix);
+    }
+
+    private void write(WorkerDataset dataset) throws IOException {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            throw new IOException("The checkpoint directory " + this.dir.getPath() + " cannot be created!");
+        }
+        File file = checkpointFile(dataset.id);
+        File tmpFile = new File(this.dir, dataset.id + Suffix + ".tmp");
+        boolean storeShard = dataset.mat instanceof TypeDenseMatrixDouble;
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw");
+             FileChannel channel = raf.getChannel()) {
+
+            channel.truncate(0);
+            ByteBuffer header = BinaryCodec.allocate(HeaderBytes);
+            header.putInt(Magic).putInt(Version).putInt(dataset.workerNum).putInt(storeShard ? ShardStored : ShardNotStored).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(dataset.generatorMatrix.serializeBinary()));
+            if (storeShard) {
+                TypeMappedMatrixDouble.writeShard(channel, (TypeDenseMatrixDouble) dataset.mat);
+            }
+            channel.force(false);
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Entry read(String id, File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+
+            ByteBuffer header = readFully(channel, 0, HeaderBytes + 2 * BinaryCodec.HEADER_BYTES);
+            if (header.getInt() != Magic || header.getInt() != Version) {
+                throw new IOException("The file is not a checkpoint of this version!");
+            }
+            int workerNum = header.getInt();
+            int shardKind = header.getInt();
+            int row = header.getInt();
+            int col = header.getInt();
+
+            // The generator matrix frame is read again as a whole, together with its header
+            long generatorBytes = 2L * BinaryCodec.HEADER_BYTES + (long) row * col * Double.BYTES;
+            if (row < 1 || col < 1 || HeaderBytes + generatorBytes > channel.size()) {
+                throw new IOException("The generator matrix of the checkpoint is cut off!");
+            }
+            TypeMatrixDouble generatorMatrix = new TypeMatrixDouble(row, col);
+            generatorMatrix.deserializeBinary(readFully(channel, HeaderBytes, (int) generatorBytes).array());
+
+            TypeRowMatrix mat = null;
+            if (shardKind == ShardStored) {
+                mat = new TypeMappedMatrixDouble(file.getPath(), HeaderBytes + generatorBytes);
+            }
+            return new Entry(id, workerNum, generatorMatrix, mat);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int numBytes) throws IOException {
+        ByteBuffer buf = BinaryCodec.allocate(numBytes);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("The checkpoint ended after " + buf.position() + " of " + numBytes + " bytes!");
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+}
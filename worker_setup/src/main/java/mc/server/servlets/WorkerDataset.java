@@ -0,0 +1,139 @@
+package mc.server.servlets;
+
+import mc.server.types.TypeMatrixDouble;
+import mc.server.types.TypeRowMatrix;
+
+import java.io.File;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * One dataset served by this worker, the coded shard of one job together with the worker number and the generator
+ * matrix it was coded with. <P> The datasets are kept in a registry by their id, so that several masters or jobs can
+ * share the workers by sending the id of their dataset with every request, see ServletWorker. A dataset is never
+ * modified once it is registered. A request looks its dataset up once and uses it until it has answered, so that
+ * initializing a dataset again only replaces it for the requests that arrive later. Requests without an id use the
+ * dataset DEFAULT_ID. The initialized datasets are reported to the master with every heartbeat, see
+ * WorkerDataset#summary, so that the master need not initialize a worker that has restored them from its checkpoint.
+ *
+ * @author Yaoqing Yang
+ */
+
+final class WorkerDataset {
+
+    static final String DEFAULT_ID = "default";
+    // The id is part of the path of the shard file, see WorkerDataset#shardFile
+    private static final Pattern IdPattern = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final ConcurrentHashMap<String, WorkerDataset> registry = new ConcurrentHashMap<>();
+
+    final String id;
+    final int workerNum;
+    // Null while the shard has only been mapped by startWorker and the generator matrix has not arrived yet
+    final TypeMatrixDouble generatorMatrix;
+    // See TypeMatrixDouble#fingerprint, 0 while the generator matrix has not arrived
+    final long generatorFingerprint;
+    // The coded shard, either one contiguous row-major block on the heap or a shard file mapped into memory
+    final TypeRowMatrix mat;
+
+    /**
+     * Constructor for class WorkerDataset.
+     *
+     * @param id              The id of the dataset
+     * @param workerNum       The worker number, i.e. the row of the generator matrix the shard is coded with
+     * @param generatorMatrix The generator matrix, or null if it has not arrived yet
+     * @param mat             The coded shard
+     */
+    WorkerDataset(String id, int workerNum, TypeMatrixDouble generatorMatrix, TypeRowMatrix mat) {
+        this.id = checkId(id);
+        this.workerNum = workerNum;
+        this.generatorMatrix = generatorMatrix;
+        this.generatorFingerprint = generatorMatrix == null ? 0 : generatorMatrix.fingerprint();
+        this.mat = mat;
+    }
+
+    /**
+     * Returns true once the generator matrix and the worker number have arrived, before that every request of the
+     * dataset is handled as the initial request
+     */
+    boolean isInitialized() {
+        return this.generatorMatrix != null;
+    }
+
+    /**
+     * Method for checking the id of a dataset
+     *
+     * @param id The id sent with a request
+     * @return Returns the id
+     */
+    static String checkId(String id) {
+        if (id == null || !IdPattern.matcher(id).matches()) {
+            throw new IllegalArgumentException("The dataset id " + id + " is not 1 to 64 letters, digits, _ or -!");
+        }
+        return id;
+    }
+
+    /**
+     * Returns the registered dataset with the given id, or null if there is none
+     */
+    static WorkerDataset get(String id) {
+        return registry.get(id);
+    }
+
+    /**
+     * Method for registering a dataset, replacing the dataset with the same id for the requests that arrive later
+     */
+    static void register(WorkerDataset dataset) {
+        registry.put(dataset.id, dataset);
+    }
+
+    /**
+     * Method for removing a dataset, its shard is freed once the requests in flight have answered
+     *
+     * @return Returns true if the dataset was registered
+     */
+    static boolean remove(String id) {
+        return registry.remove(id) != null;
+    }
+
+    /**
+     * Returns the ids of the registered datasets in alphabetical order
+     */
+    static Set<String> ids() {
+        return new TreeSet<>(registry.keySet());
+    }
+
+    /**
+     * Method for the summary of the initialized datasets that the heartbeats send to the master
+     *
+     * @return Returns id:workerNum:fingerprint of every initialized dataset, separated by commas, or an empty string
+     */
+    static String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (WorkerDataset dataset : registry.values()) {
+            if (dataset.isInitialized()) {
+                if (summary.length() > 0) {
+                    summary.append(',');
+                }
+                summary.append(dataset.id).append(':').append(dataset.workerNum).append(':').append(dataset.generatorFingerprint);
+            }
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Method for the shard file of a dataset. The shards of the default dataset are in the Worker_<workerIndex> folders
+     * that data_movement.sh copies into the data directory, the shards of other datasets in a folder named after the id.
+     *
+     * @param dataDir     The data directory of the worker
+     * @param id          The id of the dataset
+     * @param workerIndex The worker number
+     * @param fileName    The name of the shard file
+     * @return Returns the shard file, which need not exist
+     */
+    static File shardFile(String dataDir, String id, int workerIndex, String fileName) {
+        File datasetDir = DEFAULT_ID.equals(id) ? new File(dataDir) : new File(dataDir, checkId(id));
+        return new File(new File(datasetDir, "Worker_" + workerIndex), fileName);
+    }
+}
@@ -0,0 +1,154 @@
+package mc.server.types;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Defines a LatencyHistogram object. <P> Counts durations in nanoseconds in log-linear buckets, in the style of
+ * HdrHistogram: the values below 256 have a bucket each, and every further power of two is split into 128 buckets, so
+ * a percentile is reported within 1% of the recorded value. The buckets are fixed, so recording allocates nothing and
+ * never takes a lock, and the histogram can be read while other threads record into it.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class LatencyHistogram {
+
+    // Values below 2^ExactBits have a bucket each, every further octave has 2^(ExactBits - 1) buckets
+    private static final int ExactBits = 8;
+    private static final int ExactCount = 1 << ExactBits;
+    private static final int OctaveCount = ExactCount >> 1;
+    private static final int BucketCount = ExactCount + (63 - ExactBits) * OctaveCount;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BucketCount);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Method for recording one duration
+     *
+     * @param nanos The duration in nanoseconds, negative durations are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        this.counts.incrementAndGet(bucketIndex(value));
+        this.totalCount.incrementAndGet();
+        this.totalSum.addAndGet(value);
+        long max = this.maxValue.get();
+        while (value > max && !this.maxValue.compareAndSet(max, value)) {
+            max = this.maxValue.get();
+        }
+    }
+
+    /**
+     * Method for returning the number of recorded durations
+     */
+    public long getCount() {
+        return this.totalCount.get();
+    }
+
+    /**
+     * Method for returning the mean of the recorded durations in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = this.totalCount.get();
+        return count == 0 ? 0 : (double) this.totalSum.get() / count;
+    }
+
+    /**
+     * Method for returning the largest recorded duration in nanoseconds
+     */
+    public long getMax() {
+        return this.maxValue.get();
+    }
+
+    /**
+     * Method for the duration below which the given percentage of the recorded durations lie
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return Returns the highest value of the bucket that holds the percentile in nanoseconds, but at most the largest
+     * recorded duration, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Method for several percentiles at once, see LatencyHistogram#getValueAtPercentile. All percentiles are read from
+     * one copy of the buckets, so they stay ordered while other threads keep recording.
+     *
+     * @param percentiles The percentiles between 0 and 100
+     * @return Returns the value at every percentile in nanoseconds
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long max = this.maxValue.get();
+        long[] snapshot = new long[BucketCount];
+        long count = 0;
+        for (int i = 0; i < BucketCount; i++) {
+            snapshot[i] = this.counts.get(i);
+            count += snapshot[i];
+        }
+
+        long[] values = new long[percentiles.length];
+        if (count == 0) {
+            return values;
+        }
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(Math.min(percentiles[p], 100) / 100 * count));
+            long seen = 0;
+            int i = 0;
+            while (seen + snapshot[i] < rank) {
+                seen += snapshot[i];
+                i++;
+            }
+            // A value recorded after max was read may lie above it
+            values[p] = Math.max(Math.min(highestValue(i), max), lowestValue(i));
+        }
+        return values;
+    }
+
+    /**
+     * Method for clearing all recorded durations. Durations recorded while the histogram is cleared may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BucketCount; i++) {
+            this.counts.set(i, 0);
+        }
+        this.totalCount.set(0);
+        this.totalSum.set(0);
+        this.maxValue.set(0);
+    }
+
+    /*
+     * The bucket of a value: the value itself below ExactCount, otherwise the octave of its highest bit and the
+     * next ExactBits - 1 bits */
+    private static int bucketIndex(long value) {
+        if (value < ExactCount) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (ExactBits - 1);
+        return ExactCount + (shift - 1) * OctaveCount + (int) (value >>> shift) - OctaveCount;
+    }
+
+    /*
+     * The smallest value that falls into a bucket */
+    private static long lowestValue(int index) {
+        if (index < ExactCount) {
+            return index;
+        }
+        int shift = (index - ExactCount) / OctaveCount + 1;
+        return (long) ((index - ExactCount) % OctaveCount + OctaveCount) << shift;
+    }
+
+    /*
+     * The largest value that falls into a bucket */
+    private static long highestValue(int index) {
+        if (index < ExactCount) {
+            return index;
+        }
+        int shift = (index - ExactCount) / OctaveCount + 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+}
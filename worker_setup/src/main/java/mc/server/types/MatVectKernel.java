@@ -0,0 +1,138 @@
+package mc.server.types;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parallel matrix vector multiplication on selected rows of a TypeRowMatrix. <P> The selected row range is split into
+ * contiguous chunks that run on a ForkJoinPool. Every chunk reads its rows in place through TypeRowMatrix#rowDotProd and
+ * writes straight into the caller's product vector, so no row is copied and nothing is allocated per row. A batch of
+ * vectors is multiplied in the same single pass over the rows through TypeRowMatrix#rowDotProdBatch.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class MatVectKernel {
+
+    /*
+     * A chunk is not split further below this number of rows */
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for class MatVectKernel.
+     *
+     * @param parallelism Number of threads of the ForkJoinPool the rows are split across
+     */
+    public MatVectKernel(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Returns the number of threads the rows are split across
+     */
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Method for matrix vector multiplication on selected rows
+     *
+     * @param mat        The matrix
+     * @param vect       Vector with at least mat.num_col() elements
+     * @param startInd   The starting row index of the matrix-vector multiplication
+     * @param numRow     The number of rows that should be multiplied, wrapping around to row 0 after the last row
+     * @param prodVector Destination of the numRow products
+     */
+    public void matVectMult_selected(TypeRowMatrix mat, double[] vect, int startInd, int numRow, double[] prodVector) {
+        if (prodVector.length < numRow) {
+            throw new ArithmeticException("The product vector does not match in size with the selected rows!");
+        }
+        run(mat, vect, 0, 1, startInd, numRow, prodVector);
+    }
+
+    /**
+     * Method for multiplying selected rows with a batch of vectors in a single pass over the rows, see
+     * TypeRowMatrix#rowDotProdBatch
+     *
+     * @param mat        The matrix
+     * @param vects      The vectors, vector b starts at index b * vectStride
+     * @param vectStride Distance between the first elements of two consecutive vectors, at least mat.num_col()
+     * @param numVect    Number of vectors in the batch
+     * @param startInd   The starting row index of the matrix-vector multiplication
+     * @param numRow     The number of rows that should be multiplied, wrapping around to row 0 after the last row
+     * @param prodMatrix Destination of the numRow x numVect products in row-major order, the products of selected row
+     *                   i are at i * numVect to i * numVect + numVect - 1
+     */
+    public void matMatMult_selected(TypeRowMatrix mat, double[] vects, int vectStride, int numVect, int startInd, int numRow, double[] prodMatrix) {
+        if (prodMatrix.length < numRow * numVect) {
+            throw new ArithmeticException("The product matrix does not match in size with the selected rows!");
+        }
+        run(mat, vects, vectStride, numVect, startInd, numRow, prodMatrix);
+    }
+
+    private void run(TypeRowMatrix mat, double[] vects, int vectStride, int numVect, int startInd, int numRow, double[] prod) {
+        int rowsPerTask = Math.max(MIN_ROWS_PER_TASK, numRow / (4 * this.pool.getParallelism()));
+        if (numRow <= rowsPerTask) {
+            multiplyRows(mat, vects, vectStride, numVect, startInd, 0, numRow, prod);
+            return;
+        }
+        this.pool.invoke(new RowRangeTask(mat, vects, vectStride, numVect, startInd, 0, numRow, prod, rowsPerTask));
+    }
+
+    /*
+     * Multiplies the selected rows [from, to) and tracks the wraparound without a modulo per row */
+    private static void multiplyRows(TypeRowMatrix mat, double[] vects, int vectStride, int numVect, int startInd, int from, int to, double[] prod) {
+        int rowTotal = mat.num_row();
+        int mat_row_ind = (startInd + from) % rowTotal;
+
+        for (int i = from; i < to; i++) {
+            if (numVect == 1) {
+                prod[i] = mat.rowDotProd(mat_row_ind, vects);
+            } else {
+                mat.rowDotProdBatch(mat_row_ind, vects, vectStride, numVect, prod, i * numVect);
+            }
+            mat_row_ind += 1;
+            if (mat_row_ind == rowTotal) {
+                mat_row_ind = 0;
+            }
+        }
+    }
+
+    private static class RowRangeTask extends RecursiveAction {
+        private final TypeRowMatrix mat;
+        private final double[] vects;
+        private final int vectStride;
+        private final int numVect;
+        private final int startInd;
+        private final int from;
+        private final int to;
+        private final double[] prod;
+        private final int rowsPerTask;
+
+        RowRangeTask(TypeRowMatrix mat, double[] vects, int vectStride, int numVect, int startInd, int from, int to, double[] prod, int rowsPerTask) {
+            this.mat = mat;
+            this.vects = vects;
+            this.vectStride = vectStride;
+            this.numVect = numVect;
+            this.startInd = startInd;
+            this.from = from;
+            this.to = to;
+            this.prod = prod;
+            this.rowsPerTask = rowsPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.rowsPerTask) {
+                multiplyRows(this.mat, this.vects, this.vectStride, this.numVect, this.startInd, this.from, this.to, this.prod);
+                return;
+            }
+            int mid = (this.from + this.to) >>> 1;
+            invokeAll(new RowRangeTask(this.mat, this.vects, this.vectStride, this.numVect, this.startInd, this.from, mid, this.prod, this.rowsPerTask),
+                    new RowRangeTask(this.mat, this.vects, this.vectStride, this.numVect, this.startInd, mid, this.to, this.prod, this.rowsPerTask));
+        }
+    }
+}
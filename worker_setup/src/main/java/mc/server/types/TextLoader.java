@@ -0,0 +1,342 @@
+package mc.server.types;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel loader of the text files of the file constructors of TypeMatrixDouble, TypeMatrixInt, TypeVectorDouble and
+ * TypeVectorInt. <P> The file is split into byte ranges that end right after a newline, for a vector right after a
+ * separator of its first line. A first parallel pass maps every range and counts the rows, or the cells, that begin in
+ * it, so that every range knows the index of its first row. A second parallel pass parses every range straight into
+ * the destination array with DecimalCodec, without a String per line or per cell. The throughput of every load is
+ * logged. <P> The separators are those that DecimalCodec scans in place, any other separator is still split as a
+ * regular expression, one line after the other. Creating an object of this class is not allowed and should be used
+ * only as a static class methods.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public final class TextLoader {
+
+    final private static Logger logger = LogManager.getLogger(TextLoader.class);
+
+    // Number of threads of a load
+    private static final int Threads = Integer.getInteger("mc.loadThreads", Runtime.getRuntime().availableProcessors());
+    // Bounds of the byte ranges, about four per thread
+    private static final long MinChunkBytes = 1L << 20;
+    private static final long MaxChunkBytes = 64L << 20;
+    // Bytes read at a time while looking for the end of a byte range
+    private static final int ScanBytes = 1 << 16;
+
+    /*
+     * The bytes of a mapped range as characters */
+    private static final class AsciiChars implements CharSequence {
+        private final ByteBuffer buf;
+
+        AsciiChars(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int length() {
+            return this.buf.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.buf.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new StringBuilder(end - start).append(this, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+
+    /*
+     * To avoid instantiating an object of this class */
+    private TextLoader() {
+    }
+
+    /**
+     * Method for reading a double matrix from a text file with one row per line. Lines after the last row are ignored.
+     *
+     * @param filepath Path to the file
+     * @param colSep   The column separator
+     * @param mat      Destination of the matrix, all rows have the number of columns to read
+     * @throws IOException if the file cannot be read
+     */
+    public static void readMatrix(String filepath, String colSep, double[][] mat) throws IOException {
+        read(filepath, colSep, mat.length, mat.length == 0 ? 0 : mat[0].length, false,
+                (row, col, text, start, end) -> mat[row][col] = DecimalCodec.parseDouble(text, start, end));
+    }
+
+    /**
+     * Method for reading an int matrix from a text file with one row per line. Lines after the last row are ignored.
+     *
+     * @param filepath Path to the file
+     * @param colSep   The column separator
+     * @param mat      Destination of the matrix, all rows have the number of columns to read
+     * @throws IOException if the file cannot be read
+     */
+    public static void readMatrix(String filepath, String colSep, int[][] mat) throws IOException {
+        read(filepath, colSep, mat.length, mat.length == 0 ? 0 : mat[0].length, false,
+                (row, col, text, start, end) -> mat[row][col] = DecimalCodec.parseInt(text, start, end));
+    }
+
+    /**
+     * Method for reading a double vector from the first line of a text file
+     *
+     * @param filepath Path to the file
+     * @param sep      The element separator
+     * @param vect     Destination of the vector
+     * @throws IOException if the file cannot be read
+     */
+    public static void readVector(String filepath, String sep, double[] vect) throws IOException {
+        read(filepath, sep, 1, vect.length, true,
+                (row, col, text, start, end) -> vect[col] = DecimalCodec.parseDouble(text, start, end));
+    }
+
+    /**
+     * Method for reading an int vector from the first line of a text file
+     *
+     * @param filepath Path to the file
+     * @param sep      The element separator
+     * @param vect     Destination of the vector
+     * @throws IOException if the file cannot be read
+     */
+    public static void readVector(String filepath, String sep, int[] vect) throws IOException {
+        read(filepath, sep, 1, vect.length, true,
+                (row, col, text, start, end) -> vect[col] = DecimalCodec.parseInt(text, start, end));
+    }
+
+    private static void read(String filepath, String sep, int rowTotal, int colTotal, boolean vector, DecimalCodec.CellSink sink)
+            throws IOException {
+        long loadTimeStart = System.nanoTime();
+        int sepChar = DecimalCodec.separator(sep);
+        long bytes;
+        int threads = 1;
+        if (sepChar < 0 || sepChar == '\n') {
+            bytes = readLines(filepath, sep, rowTotal, colTotal, sink);
+        } else {
+            try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+                bytes = vector ? lineEnd(channel, 0, channel.size()) : channel.size();
+                List<ByteBuffer> chunks = mapChunks(channel, bytes, vector ? (byte) sepChar : (byte) '\n');
+                threads = Math.max(1, Math.min(Threads, chunks.size()));
+                ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                    Thread thread = new Thread(runnable, "text-loader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                try {
+                    if (vector) {
+                        readCells(pool, chunks, (char) sepChar, colTotal, sink, filepath);
+                    } else {
+                        readRows(pool, chunks, (char) sepChar, rowTotal, colTotal, sink, filepath);
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+            }
+        }
+        double loadMs = (System.nanoTime() - loadTimeStart) / 1e6;
+        logger.info(String.format("Loaded %s: %.1f MB in %.1f ms, %.1f MB/s with %d threads",
+                filepath, bytes / 1e6, loadMs, bytes / 1e3 / Math.max(loadMs, 1e-3), threads));
+    }
+
+    /*
+     * Rows of a matrix, every range begins with a line */
+    private static void readRows(ExecutorService pool, List<ByteBuffer> chunks, char sep, int rowTotal, int colTotal,
+                                 DecimalCodec.CellSink sink, String filepath) throws IOException {
+        List<Callable<Long>> counts = new ArrayList<>();
+        for (ByteBuffer chunk : chunks) {
+            counts.add(() -> (long) countLines(chunk));
+        }
+        long[] firstRows = firstIndices(invokeAll(pool, counts));
+
+        List<Callable<Long>> parses = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            long firstRow = firstRows[i];
+            if (firstRow >= rowTotal) {
+                break;
+            }
+            parses.add(() -> {
+                DecimalCodec.parseRows(new AsciiChars(chunk), 0, chunk.limit(), sep, '\n', (int) firstRow, rowTotal, colTotal,
+                        sink, filepath);
+                return 0L;
+            });
+        }
+        invokeAll(pool, parses);
+    }
+
+    /*
+     * Cells of a vector, every range begins after a separator of the first line */
+    private static void readCells(ExecutorService pool, List<ByteBuffer> chunks, char sep, int colTotal,
+                                  DecimalCodec.CellSink sink, String filepath) throws IOException {
+        List<Callable<Long>> counts = new ArrayList<>();
+        for (ByteBuffer chunk : chunks) {
+            counts.add(() -> (long) countCells(chunk, sep));
+        }
+        long[] firstCols = firstIndices(invokeAll(pool, counts));
+        if (firstCols[chunks.size()] < colTotal) {
+            throw new ArithmeticException("The first line of " + filepath + " has fewer than " + colTotal + " elements!");
+        }
+
+        List<Callable<Long>> parses = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            ByteBuffer chunk = chunks.get(i);
+            long firstCol = firstCols[i];
+            long numCols = Math.min(firstCols[i + 1], colTotal) - firstCol;
+            if (numCols <= 0) {
+                break;
+            }
+            parses.add(() -> {
+                DecimalCodec.CellSink shifted =
+                        (row, col, text, start, end) -> sink.put(row, (int) firstCol + col, text, start, end);
+                DecimalCodec.parseCells(new AsciiChars(chunk), 0, chunk.limit(), sep, '\n', 0, (int) numCols, shifted, filepath);
+                return 0L;
+            });
+        }
+        invokeAll(pool, parses);
+    }
+
+    /*
+     * The legacy path for separators that are regular expressions */
+    private static long readLines(String filepath, String sep, int rowTotal, int colTotal, DecimalCodec.CellSink sink)
+            throws IOException {
+        long bytes = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+            String rowLine;
+            for (int i = 0; i < rowTotal && (rowLine = reader.readLine()) != null; i++) {
+                bytes += rowLine.length() + 1;
+                String[] rowLineArr = rowLine.trim().split(sep);
+                for (int j = 0; j < colTotal; j++) {
+                    String cell = rowLineArr[j].trim();
+                    sink.put(i, j, cell, 0, cell.length());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /*
+     * Maps [0, size) in ranges that end right after a boundary byte, or at size */
+    private static List<ByteBuffer> mapChunks(FileChannel channel, long size, byte boundary) throws IOException {
+        long chunkBytes = Math.max(MinChunkBytes, Math.min(MaxChunkBytes, size / (4L * Threads)));
+        List<ByteBuffer> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkBytes >= size ? size : afterNext(channel, start + chunkBytes - 1, size, boundary);
+            chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /*
+     * Returns the position after the first boundary byte at or after pos, or size if there is none */
+    private static long afterNext(FileChannel channel, long pos, long size, byte boundary) throws IOException {
+        return Math.min(size, indexOf(channel, pos, size, boundary) + 1);
+    }
+
+    /*
+     * Returns the position of the first newline, or size if there is none */
+    private static long lineEnd(FileChannel channel, long pos, long size) throws IOException {
+        return indexOf(channel, pos, size, (byte) '\n');
+    }
+
+    private static long indexOf(FileChannel channel, long pos, long size, byte b) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(ScanBytes);
+        while (pos < size) {
+            scan.clear();
+            int numRead = channel.read(scan, pos);
+            if (numRead < 0) {
+                break;
+            }
+            for (int i = 0; i < numRead; i++) {
+                if (scan.get(i) == b) {
+                    return pos + i;
+                }
+            }
+            pos += numRead;
+        }
+        return size;
+    }
+
+    private static int countLines(ByteBuffer buf) {
+        int count = 0;
+        for (int i = 0, end = buf.limit(); i < end; i++) {
+            if (buf.get(i) == '\n') {
+                count++;
+            }
+        }
+        // A last line without a newline
+        if (buf.limit() > 0 && buf.get(buf.limit() - 1) != '\n') {
+            count++;
+        }
+        return count;
+    }
+
+    private static int countCells(ByteBuffer buf, char sep) {
+        int count = 0;
+        boolean inCell = false;
+        for (int i = 0, end = buf.limit(); i < end; i++) {
+            boolean cellByte = DecimalCodec.isCellChar((char) (buf.get(i) & 0xFF), sep, '\n');
+            if (cellByte && !inCell) {
+                count++;
+            }
+            inCell = cellByte;
+        }
+        return count;
+    }
+
+    /*
+     * Prefix sums of the counts, the last element is the total */
+    private static long[] firstIndices(List<Long> counts) {
+        long[] first = new long[counts.size() + 1];
+        for (int i = 0; i < counts.size(); i++) {
+            first[i + 1] = first[i] + counts.get(i);
+        }
+        return first;
+    }
+
+    private static List<Long> invokeAll(ExecutorService pool, List<Callable<Long>> tasks) throws IOException {
+        List<Long> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        return results;
+    }
+}
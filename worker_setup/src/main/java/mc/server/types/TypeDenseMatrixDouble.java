@@ -0,0 +1,355 @@
+package mc.server.types;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Defines a TypeDenseMatrixDouble object. <P> Stores the matrix in a single row-major double array instead of one array
+ * per row, so that a shard of the coded data is one contiguous block without a header per row. Row i starts at
+ * offset + i * stride of the backing array. Row and sub-row accessors return views of the backing array, and
+ * sub-matrices share the backing array with a stride, so none of them copies the data.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TypeDenseMatrixDouble implements TypeRowMatrix {
+
+    final double[] data;
+    final int offset;
+    final int stride;
+    private final int colTotal;
+    private final int rowTotal;
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Creates a TypeDenseMatrixDouble object with all values initialized
+     * to 0.0.
+     *
+     * @param row Number of rows in the matrix
+     * @param col Number of columns in the matrix
+     */
+    public TypeDenseMatrixDouble(int row, int col) {
+        this(row, col, new double[Math.multiplyExact(row, col)]);
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Wraps a row-major data vector without copying it.
+     *
+     * @param row    Number of rows in the matrix
+     * @param col    Number of columns in the matrix
+     * @param vectIn The row-major data vector, at least row * col long
+     */
+    public TypeDenseMatrixDouble(int row, int col, double[] vectIn) {
+        this(row, col, vectIn, 0, col);
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Wraps a region of a row-major backing array without copying it.
+     *
+     * @param row    Number of rows in the matrix
+     * @param col    Number of columns in the matrix
+     * @param data   The backing array
+     * @param offset Index in the backing array of the first element of the first row
+     * @param stride Distance in the backing array between the first elements of two consecutive rows
+     */
+    public TypeDenseMatrixDouble(int row, int col, double[] data, int offset, int stride) {
+        if (stride < col || (row > 0 && offset + (long) (row - 1) * stride + col > data.length)) {
+            throw new ArithmeticException("The matrix does not fit in the backing array!");
+        }
+        this.rowTotal = row;
+        this.colTotal = col;
+        this.data = data;
+        this.offset = offset;
+        this.stride = stride;
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixDouble. Copies a TypeMatrixDouble object into contiguous storage.
+     *
+     * @param matIn The matrix to be copied
+     */
+    public TypeDenseMatrixDouble(TypeMatrixDouble matIn) {
+        this(matIn.GetMat().length, matIn.GetMat().length == 0 ? 0 : matIn.GetMat()[0].length);
+        double[][] rows = matIn.GetMat();
+        for (int i = 0; i < this.rowTotal; i++) {
+            System.arraycopy(rows[i], 0, this.data, i * this.stride, this.colTotal);
+        }
+    }
+
+    /**
+     * Method for generating random data at the worker nodes
+     * Note that this is only for the purpose of simulation
+     * In reality, the data should be downloaded from some file systems or from the cloud
+     *
+     * @param workNum          The index of the worker
+     * @param generator_matrix The generator matrix obtained from the master node
+     * @param rowSize          The number of rows that needs to be generated
+     * @param colSize          The number of cols that needs to be generated
+     * @return Returns a TypeDenseMatrixDouble object that contains the generated data
+     */
+    public static TypeDenseMatrixDouble generate_data(int workNum, double[][] generator_matrix, int rowSize, int colSize) {
+
+        // generate the all-one data
+        double sum = 0;
+        for (int i=0; i<10; i++) { sum = sum + generator_matrix[workNum][i]; }
+
+        TypeDenseMatrixDouble mat = new TypeDenseMatrixDouble(rowSize, colSize);
+        java.util.Arrays.fill(mat.data, sum);
+
+        return mat;
+    }
+
+    /**
+     * Method for returning the number of rows
+     */
+    @Override
+    public int num_row() {
+        return this.rowTotal;
+    }
+
+    /**
+     * Method for returning the number of cols
+     */
+    @Override
+    public int num_col() {
+        return this.colTotal;
+    }
+
+    /**
+     * Returns the element in the given row and column
+     */
+    public double get(int row_ind, int col_ind) {
+        return this.data[this.offset + row_ind * this.stride + col_ind];
+    }
+
+    /**
+     * Method for getting a row of the matrix as a view of the backing array
+     *
+     * @param row_ind Index of the row
+     * @return Returns a TypeVectorDoubleView of the row, writes through to this matrix
+     */
+    public TypeVectorDoubleView GetRow(int row_ind) {
+        return sub_row(row_ind, 0, this.colTotal);
+    }
+
+    /**
+     * Method for getting a subrow of the matrix as a view of the backing array
+     *
+     * @param row_ind  Index of the row
+     * @param start_id Index of the first column of the subrow
+     * @param length   Number of elements in the subrow
+     * @return Returns a TypeVectorDoubleView of the subrow, writes through to this matrix
+     */
+    public TypeVectorDoubleView sub_row(int row_ind, int start_id, int length) {
+        if (start_id + length > this.colTotal) {
+            throw new ArithmeticException("The subvector went out of index range!");
+        }
+        return new TypeVectorDoubleView(this.data, this.offset + row_ind * this.stride + start_id, length, 1);
+    }
+
+    /**
+     * Method for getting consecutive rows of the matrix as a matrix that shares the backing array
+     *
+     * @param start_row Index of the first row
+     * @param numRow    Number of rows
+     * @return Returns a TypeDenseMatrixDouble view of the rows, writes through to this matrix
+     */
+    public TypeDenseMatrixDouble sub_rows(int start_row, int numRow) {
+        if (start_row + numRow > this.rowTotal) {
+            throw new ArithmeticException("The submatrix went out of index range!");
+        }
+        return new TypeDenseMatrixDouble(numRow, this.colTotal, this.data, this.offset + start_row * this.stride, this.stride);
+    }
+
+    /**
+     * Method for setting a particular row
+     */
+    public void set_row(int row_ind, TypeVectorDouble vec) {
+        System.arraycopy(vec.vect, 0, this.data, this.offset + row_ind * this.stride, this.colTotal);
+    }
+
+    /**
+     * Method for setting a particular row from a view, for example a row of another TypeDenseMatrixDouble
+     */
+    public void set_row(int row_ind, TypeVectorDoubleView vec) {
+        if (vec.length() != this.colTotal) {
+            throw new ArithmeticException("The matrix being set does not match in size with the input!");
+        }
+        vec.copyTo(this.data, this.offset + row_ind * this.stride);
+    }
+
+    /**
+     * Method for converting a matrix to a data vector. If the rows are stored back to back, the backing array itself
+     * is returned and shares its content with this matrix.
+     *
+     * @return Returns the row-major data of the matrix
+     */
+    public double[] toVect() {
+        int size = this.rowTotal * this.colTotal;
+        if (this.offset == 0 && this.stride == this.colTotal && this.data.length == size) {
+            return this.data;
+        }
+        double[] vect = new double[size];
+        for (int i = 0; i < this.rowTotal; i++) {
+            System.arraycopy(this.data, this.offset + i * this.stride, vect, i * this.colTotal, this.colTotal);
+        }
+        return vect;
+    }
+
+    /**
+     * Method for the dot product of one row with a vector. Uses four independent accumulators, so the summation order
+     * differs from TypeVectorDouble#vectDotProd in the last bits.
+     *
+     * @param row_ind Index of the row
+     * @param vect    Vector with at least num_col() elements
+     * @return The double value element as a result of the dot product
+     */
+    @Override
+    public double rowDotProd(int row_ind, double[] vect) {
+        double[] data = this.data;
+        int pos = this.offset + row_ind * this.stride;
+        int len = this.colTotal;
+        int unrolled = len & ~3;
+
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int j = 0;
+        for (; j < unrolled; j += 4) {
+            sum0 += data[pos + j] * vect[j];
+            sum1 += data[pos + j + 1] * vect[j + 1];
+            sum2 += data[pos + j + 2] * vect[j + 2];
+            sum3 += data[pos + j + 3] * vect[j + 3];
+        }
+        for (; j < len; j++) {
+            sum0 += data[pos + j] * vect[j];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Method for the dot products of one row with a batch of vectors in a single pass over the row, see
+     * TypeRowMatrix#rowDotProdBatch
+     */
+    @Override
+    public void rowDotProdBatch(int row_ind, double[] vects, int vectStride, int numVect, double[] prod, int prodPos) {
+        double[] data = this.data;
+        int pos = this.offset + row_ind * this.stride;
+        java.util.Arrays.fill(prod, prodPos, prodPos + numVect, 0.0);
+        for (int tile = 0; tile < this.colTotal; tile += BATCH_TILE_COLS) {
+            int tileEnd = Math.min(tile + BATCH_TILE_COLS, this.colTotal);
+            int unrolledEnd = tile + ((tileEnd - tile) & ~3);
+
+            for (int b = 0; b < numVect; b++) {
+                int vpos = b * vectStride;
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                int j = tile;
+                for (; j < unrolledEnd; j += 4) {
+                    sum0 += data[pos + j] * vects[vpos + j];
+                    sum1 += data[pos + j + 1] * vects[vpos + j + 1];
+                    sum2 += data[pos + j + 2] * vects[vpos + j + 2];
+                    sum3 += data[pos + j + 3] * vects[vpos + j + 3];
+                }
+                for (; j < tileEnd; j++) {
+                    sum0 += data[pos + j] * vects[vpos + j];
+                }
+                prod[prodPos + b] += (sum0 + sum1) + (sum2 + sum3);
+            }
+        }
+    }
+
+    /**
+     * Method for matrix vector multiplication
+     *
+     * @param vectIn Object of type TypeVectorDouble to be multiplied with this matrix
+     * @return Returns the product vector
+     */
+    public double[] matVectMult(TypeVectorDouble vectIn) {
+        return matVectMult_selected(vectIn, 0, this.rowTotal);
+    }
+
+    /**
+     * Method for matrix vector multiplication on selected rows. The rows are read in place from the backing array.
+     *
+     * @param vectIn   Object of type TypeVectorDouble to be multiplied with this matrix
+     * @param startInd The starting row index of the matrix-vector multiplication
+     * @param numRow   The number of rows that should be multiplied, wrapping around to row 0 after the last row
+     * @return prodVector
+     * matrix vector multiplication
+     */
+    public double[] matVectMult_selected(TypeVectorDouble vectIn, int startInd, int numRow) {
+
+        double[] prodVector = new double[numRow];
+        double[] vect = vectIn.vect;
+
+        for (int i = 0; i < numRow; i++) {
+
+            int pos = this.offset + ((startInd + i) % this.rowTotal) * this.stride;
+
+            double rowSum = 0;
+            for (int j = 0; j < this.colTotal; j++) {
+                rowSum += this.data[pos + j] * vect[j];
+            }
+            prodVector[i] = rowSum;
+
+        }
+
+        return prodVector;
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeDenseMatrixDouble
+     *
+     * @param matIn Length-prefixed little-endian binary frame, see BinaryCodec#putMatrix
+     */
+    public void deserializeBinary(byte[] matIn) {
+        ByteBuffer buf = BinaryCodec.wrap(matIn);
+        int[] shape = BinaryCodec.getShape(buf, this.rowTotal, this.colTotal, Double.BYTES);
+        int row = shape[0];
+        int col = shape[1];
+        if (col != this.colTotal) {
+            throw new ArithmeticException("The received matrix does not match in size with the destination!");
+        }
+        for (int i = 0; i < row; i++) {
+            buf.asDoubleBuffer().get(this.data, this.offset + i * this.stride, col);
+            buf.position(buf.position() + col * Double.BYTES);
+        }
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeDenseMatrixDouble while it is read from a stream
+     *
+     * @param matIn Stream positioned at the start of a length-prefixed little-endian binary frame
+     * @throws IOException if the stream ends before the frame is complete
+     */
+    public void deserializeBinary(InputStream matIn) throws IOException {
+        int row = BinaryCodec.readLength(matIn);
+        int col = BinaryCodec.readLength(matIn);
+        if (row != this.rowTotal || col != this.colTotal) {
+            throw new ArithmeticException("The received matrix does not match in size with the destination!");
+        }
+        if (this.stride == col) {
+            BinaryCodec.readDoubles(matIn, this.data, this.offset, row * col);
+            return;
+        }
+        for (int i = 0; i < row; i++) {
+            BinaryCodec.readDoubles(matIn, this.data, this.offset + i * this.stride, col);
+        }
+    }
+
+    /**
+     * Method for serializing object TypeDenseMatrixDouble to a binary frame, the same frame as
+     * TypeMatrixDouble#serializeBinary
+     *
+     * @return Returns a length-prefixed little-endian binary frame
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(2 * BinaryCodec.HEADER_BYTES + this.rowTotal * this.colTotal * Double.BYTES);
+        buf.putInt(this.rowTotal);
+        buf.putInt(this.colTotal);
+        for (int i = 0; i < this.rowTotal; i++) {
+            buf.asDoubleBuffer().put(this.data, this.offset + i * this.stride, this.colTotal);
+            buf.position(buf.position() + this.colTotal * Double.BYTES);
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,151 @@
+package mc.server.types;
+
+/**
+ * Defines a TypeDenseMatrixFloat object. <P> Stores the coded shard in single precision, as one contiguous row-major
+ * float array. The mat-vec product is bounded by memory bandwidth, so halving the bytes per element roughly doubles
+ * the rows per second. Every product is still accumulated in double, so the only error introduced is the rounding of
+ * each stored element to float.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TypeDenseMatrixFloat implements TypeRowMatrix {
+
+    final float[] data;
+    private final int colTotal;
+    private final int rowTotal;
+
+    /**
+     * Constructor for class TypeDenseMatrixFloat. Creates a TypeDenseMatrixFloat object with all values initialized
+     * to 0.0.
+     *
+     * @param row Number of rows in the matrix
+     * @param col Number of columns in the matrix
+     */
+    public TypeDenseMatrixFloat(int row, int col) {
+        this.rowTotal = row;
+        this.colTotal = col;
+        this.data = new float[Math.multiplyExact(row, col)];
+    }
+
+    /**
+     * Constructor for class TypeDenseMatrixFloat. Rounds every element of a TypeDenseMatrixDouble object to float.
+     *
+     * @param matIn The matrix to be copied
+     */
+    public TypeDenseMatrixFloat(TypeDenseMatrixDouble matIn) {
+        this(matIn.num_row(), matIn.num_col());
+        for (int i = 0; i < this.rowTotal; i++) {
+            int pos = matIn.offset + i * matIn.stride;
+            for (int j = 0; j < this.colTotal; j++) {
+                this.data[i * this.colTotal + j] = (float) matIn.data[pos + j];
+            }
+        }
+    }
+
+    /**
+     * Method for generating random data at the worker nodes, see TypeDenseMatrixDouble#generate_data
+     * Note that this is only for the purpose of simulation
+     *
+     * @param workNum          The index of the worker
+     * @param generator_matrix The generator matrix obtained from the master node
+     * @param rowSize          The number of rows that needs to be generated
+     * @param colSize          The number of cols that needs to be generated
+     * @return Returns a TypeDenseMatrixFloat object that contains the generated data
+     */
+    public static TypeDenseMatrixFloat generate_data(int workNum, double[][] generator_matrix, int rowSize, int colSize) {
+
+        // generate the all-one data
+        double sum = 0;
+        for (int i=0; i<10; i++) { sum = sum + generator_matrix[workNum][i]; }
+
+        TypeDenseMatrixFloat mat = new TypeDenseMatrixFloat(rowSize, colSize);
+        java.util.Arrays.fill(mat.data, (float) sum);
+
+        return mat;
+    }
+
+    /**
+     * Method for returning the number of rows
+     */
+    @Override
+    public int num_row() {
+        return this.rowTotal;
+    }
+
+    /**
+     * Method for returning the number of cols
+     */
+    @Override
+    public int num_col() {
+        return this.colTotal;
+    }
+
+    /**
+     * Returns the element in the given row and column
+     */
+    public float get(int row_ind, int col_ind) {
+        return this.data[row_ind * this.colTotal + col_ind];
+    }
+
+    /**
+     * Method for the dot product of one row with a vector. The elements are widened to double and accumulated in four
+     * independent double accumulators like TypeDenseMatrixDouble#rowDotProd.
+     *
+     * @param row_ind Index of the row
+     * @param vect    Vector with at least num_col() elements
+     * @return The double value element as a result of the dot product
+     */
+    @Override
+    public double rowDotProd(int row_ind, double[] vect) {
+        float[] data = this.data;
+        int pos = row_ind * this.colTotal;
+        int len = this.colTotal;
+        int unrolled = len & ~3;
+
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int j = 0;
+        for (; j < unrolled; j += 4) {
+            sum0 += data[pos + j] * vect[j];
+            sum1 += data[pos + j + 1] * vect[j + 1];
+            sum2 += data[pos + j + 2] * vect[j + 2];
+            sum3 += data[pos + j + 3] * vect[j + 3];
+        }
+        for (; j < len; j++) {
+            sum0 += data[pos + j] * vect[j];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Method for the dot products of one row with a batch of vectors in a single pass over the row, see
+     * TypeRowMatrix#rowDotProdBatch
+     */
+    @Override
+    public void rowDotProdBatch(int row_ind, double[] vects, int vectStride, int numVect, double[] prod, int prodPos) {
+        float[] data = this.data;
+        int pos = row_ind * this.colTotal;
+        java.util.Arrays.fill(prod, prodPos, prodPos + numVect, 0.0);
+        for (int tile = 0; tile < this.colTotal; tile += BATCH_TILE_COLS) {
+            int tileEnd = Math.min(tile + BATCH_TILE_COLS, this.colTotal);
+            int unrolledEnd = tile + ((tileEnd - tile) & ~3);
+
+            for (int b = 0; b < numVect; b++) {
+                int vpos = b * vectStride;
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                int j = tile;
+                for (; j < unrolledEnd; j += 4) {
+                    sum0 += data[pos + j] * vects[vpos + j];
+                    sum1 += data[pos + j + 1] * vects[vpos + j + 1];
+                    sum2 += data[pos + j + 2] * vects[vpos + j + 2];
+                    sum3 += data[pos + j + 3] * vects[vpos + j + 3];
+                }
+                for (; j < tileEnd; j++) {
+                    sum0 += data[pos + j] * vects[vpos + j];
+                }
+                prod[prodPos + b] += (sum0 + sum1) + (sum2 + sum3);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package mc.server.types;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Defines a TypeMappedMatrixDouble object. <P> A read-only row-major matrix memory-mapped from a shard file through
+ * FileChannel#map. The file holds the same frame as TypeMatrixDouble#serializeBinary: a little-endian int32 row count
+ * and int32 column count followed by the elements. The data lives in the page cache instead of the heap, so a shard
+ * can be larger than the heap, is never scanned by the garbage collector, and is available again right after a
+ * restart. A single mapping cannot exceed 2 GB, so larger shards are mapped in segments of whole rows. The frame need
+ * not start at the beginning of the file, e.g. a worker checkpoint keeps its generator matrix in front of the shard.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public class TypeMappedMatrixDouble implements TypeRowMatrix {
+
+    private static final long HEADER_BYTES = 2 * BinaryCodec.HEADER_BYTES;
+
+    private final DoubleBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int colTotal;
+    private final int rowTotal;
+    private final String filepath;
+
+    /**
+     * Constructor for class TypeMappedMatrixDouble. Maps the shard file at the specified filepath.
+     *
+     * @param filepath Path to the shard file
+     * @throws IOException if the file cannot be read or is shorter than its header announces
+     */
+    public TypeMappedMatrixDouble(String filepath) throws IOException {
+        this(filepath, 0);
+    }
+
+    /**
+     * Constructor for class TypeMappedMatrixDouble. Maps the frame that starts at the given offset of the shard file.
+     *
+     * @param filepath Path to the shard file
+     * @param offset   Position of the frame in the file
+     * @throws IOException if the file cannot be read or is shorter than the header of the frame announces
+     */
+    public TypeMappedMatrixDouble(String filepath, long offset) throws IOException {
+        this.filepath = filepath;
+
+        try (RandomAccessFile file = new RandomAccessFile(filepath, "r");
+             FileChannel channel = file.getChannel()) {
+
+            ByteBuffer header = ByteBuffer.allocate((int) HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header, offset + header.position()) < 0) {
+                    throw new IOException("The shard file " + filepath + " ended before its header was read!");
+                }
+            }
+            this.rowTotal = header.getInt(0);
+            this.colTotal = header.getInt(BinaryCodec.HEADER_BYTES);
+
+            long rowBytes = (long) this.colTotal * Double.BYTES;
+            if (offset + HEADER_BYTES + this.rowTotal * rowBytes > channel.size()) {
+                throw new IOException("The shard file " + filepath + " is shorter than its header announces!");
+            }
+
+            this.rowsPerSegment = (int) Math.max(1, Math.min(this.rowTotal, Integer.MAX_VALUE / Math.max(rowBytes, 1)));
+            int numSegments = this.rowTotal == 0 ? 0 : (this.rowTotal + this.rowsPerSegment - 1) / this.rowsPerSegment;
+            this.segments = new DoubleBuffer[numSegments];
+
+            // The mappings stay valid after the channel is closed
+            for (int seg = 0; seg < numSegments; seg++) {
+                int segRows = Math.min(this.rowsPerSegment, this.rowTotal - seg * this.rowsPerSegment);
+                this.segments[seg] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset + HEADER_BYTES + seg * this.rowsPerSegment * rowBytes, segRows * rowBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            }
+        }
+    }
+
+    /**
+     * Method for writing a matrix to a shard file that can be mapped by TypeMappedMatrixDouble
+     *
+     * @param filepath Path to the shard file, overwritten if it exists
+     * @param mat      The matrix to be written
+     * @throws IOException if writing to file fails
+     */
+    public static void writeShard(String filepath, TypeDenseMatrixDouble mat) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filepath, "rw");
+             FileChannel channel = file.getChannel()) {
+
+            channel.truncate(0);
+            writeShard(channel, mat);
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Method for writing a matrix as a frame at the position of a channel, the frame can be mapped by
+     * TypeMappedMatrixDouble with that position as offset
+     *
+     * @param channel The channel, positioned where the frame starts
+     * @param mat     The matrix to be written
+     * @throws IOException if writing to the channel fails
+     */
+    public static void writeShard(FileChannel channel, TypeDenseMatrixDouble mat) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate((int) HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(mat.num_row()).putInt(mat.num_col()).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        ByteBuffer row = ByteBuffer.allocateDirect(mat.num_col() * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < mat.num_row(); i++) {
+            row.clear();
+            row.asDoubleBuffer().put(mat.data, mat.offset + i * mat.stride, mat.num_col());
+            while (row.hasRemaining()) {
+                channel.write(row);
+            }
+        }
+    }
+
+    /**
+     * Returns the path to the mapped shard file
+     */
+    public String getFilepath() {
+        return this.filepath;
+    }
+
+    /**
+     * Method for returning the number of rows
+     */
+    @Override
+    public int num_row() {
+        return this.rowTotal;
+    }
+
+    /**
+     * Method for returning the number of cols
+     */
+    @Override
+    public int num_col() {
+        return this.colTotal;
+    }
+
+    /**
+     * Returns the element in the given row and column
+     */
+    public double get(int row_ind, int col_ind) {
+        return this.segments[row_ind / this.rowsPerSegment].get((row_ind % this.rowsPerSegment) * this.colTotal + col_ind);
+    }
+
+    /**
+     * Method for the dot product of one row with a vector, read in place from the mapped file. Uses four independent
+     * accumulators like TypeDenseMatrixDouble#rowDotProd.
+     *
+     * @param row_ind Index of the row
+     * @param vect    Vector with at least num_col() elements
+     * @return The double value element as a result of the dot product
+     */
+    @Override
+    public double rowDotProd(int row_ind, double[] vect) {
+        DoubleBuffer data = this.segments[row_ind / this.rowsPerSegment];
+        int pos = (row_ind % this.rowsPerSegment) * this.colTotal;
+        int len = this.colTotal;
+        int unrolled = len & ~3;
+
+        double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+        int j = 0;
+        for (; j < unrolled; j += 4) {
+            sum0 += data.get(pos + j) * vect[j];
+            sum1 += data.get(pos + j + 1) * vect[j + 1];
+            sum2 += data.get(pos + j + 2) * vect[j + 2];
+            sum3 += data.get(pos + j + 3) * vect[j + 3];
+        }
+        for (; j < len; j++) {
+            sum0 += data.get(pos + j) * vect[j];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Method for the dot products of one row with a batch of vectors in a single pass over the row, see
+     * TypeRowMatrix#rowDotProdBatch
+     */
+    @Override
+    public void rowDotProdBatch(int row_ind, double[] vects, int vectStride, int numVect, double[] prod, int prodPos) {
+        DoubleBuffer data = this.segments[row_ind / this.rowsPerSegment];
+        int pos = (row_ind % this.rowsPerSegment) * this.colTotal;
+        java.util.Arrays.fill(prod, prodPos, prodPos + numVect, 0.0);
+        for (int tile = 0; tile < this.colTotal; tile += BATCH_TILE_COLS) {
+            int tileEnd = Math.min(tile + BATCH_TILE_COLS, this.colTotal);
+            int unrolledEnd = tile + ((tileEnd - tile) & ~3);
+
+            for (int b = 0; b < numVect; b++) {
+                int vpos = b * vectStride;
+                double sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+                int j = tile;
+                for (; j < unrolledEnd; j += 4) {
+                    sum0 += data.get(pos + j) * vects[vpos + j];
+                    sum1 += data.get(pos + j + 1) * vects[vpos + j + 1];
+                    sum2 += data.get(pos + j + 2) * vects[vpos + j + 2];
+                    sum3 += data.get(pos + j + 3) * vects[vpos + j + 3];
+                }
+                for (; j < tileEnd; j++) {
+                    sum0 += data.get(pos + j) * vects[vpos + j];
+                }
+                prod[prodPos + b] += (sum0 + sum1) + (sum2 + sum3);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package mc.server.types;
+
+/**
+ * Defines a row-major matrix that can be multiplied row by row. <P> Implemented by the storages of the coded shard, so
+ * that MatVectKernel can stream the rows of any of them in place.
+ *
+ * @author Yaoqing Yang
+ * @version 1.0
+ */
+
+public interface TypeRowMatrix {
+
+    /**
+     * Number of columns of a row that are multiplied with every vector of a batch before moving on, small enough for
+     * the tile of the row and of the vectors to stay in the L1 cache
+     */
+    int BATCH_TILE_COLS = 512;
+
+    /**
+     * Method for returning the number of rows
+     */
+    int num_row();
+
+    /**
+     * Method for returning the number of cols
+     */
+    int num_col();
+
+    /**
+     * Method for the dot product of one row with a vector, read in place from the storage
+     *
+     * @param row_ind Index of the row
+     * @param vect    Vector with at least num_col() elements
+     * @return The double value element as a result of the dot product
+     */
+    double rowDotProd(int row_ind, double[] vect);
+
+    /**
+     * Method for the dot products of one row with a batch of vectors in a single pass over the row. The row is read
+     * in tiles of BATCH_TILE_COLS columns, and every tile is multiplied with all vectors while it is in the cache.
+     *
+     * @param row_ind    Index of the row
+     * @param vects      The vectors, vector b starts at index b * vectStride
+     * @param vectStride Distance between the first elements of two consecutive vectors, at least num_col()
+     * @param numVect    Number of vectors in the batch
+     * @param prod       Destination of the dot products
+     * @param prodPos    Index in prod of the dot product with the first vector, the others follow it
+     */
+    void rowDotProdBatch(int row_ind, double[] vects, int vectStride, int numVect, double[] prod, int prodPos);
+}
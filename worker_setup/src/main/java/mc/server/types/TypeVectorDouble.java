@@ -1,6 +1,7 @@
 package mc.server.types;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -65,7 +66,7 @@ public class TypeVectorDouble {
 
     /**
      * Constructor for class TypeVectorDouble. Creates a TypeVectorDouble object with values read from the specified
-     * filepath.
+     * filepath in parallel, see TextLoader.
      *
      * @param row      Number of elements in the vector
      * @param filepath Path to the file from which the vector is to be read
@@ -76,18 +77,7 @@ public class TypeVectorDouble {
         this.vect = new double[row];
 
         try {
-            BufferedReader brVect = new BufferedReader(new FileReader(filepath));
-            String rowLine;
-
-            rowLine = brVect.readLine();
-            String rowLineArr[] = rowLine.trim().split(sep);
-
-            for (int i = 0; i < row; i++) {
-                this.vect[i] = Double.parseDouble(rowLineArr[i]);
-            }
-
-            brVect.close();
-
+            TextLoader.readVector(filepath, sep, this.vect);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -117,11 +107,8 @@ public class TypeVectorDouble {
      * @param sep    Character separator used to separate vector elements
      */
     public void deserialize(String vectIn, String sep) {
-        String[] vectInArr = vectIn.trim().split(sep);
-
-        for (int i = 0; i < this.rowTotal; i++) {
-            this.vect[i] = Double.parseDouble(vectInArr[i]);
-        }
+        DecimalCodec.parseVector(vectIn, sep, this.rowTotal,
+                (row, col, text, start, end) -> this.vect[col] = DecimalCodec.parseDouble(text, start, end));
     }
 
     /**
@@ -132,13 +119,13 @@ public class TypeVectorDouble {
      * @param sep    Character separator used to separate vector elements
      */
     public void deserializeWithControlInfo(String vectIn, String sep) {
-        String[] vectInArr = vectIn.trim().split(sep);
-
-        for (int i = 0; i < this.rowTotal; i++) {
-            this.vect[i] = Double.parseDouble(vectInArr[i]);
-        }
-
-        this.ControlInfo = (int)Double.parseDouble(vectInArr[this.rowTotal]);
+        DecimalCodec.parseVector(vectIn, sep, this.rowTotal + 1, (row, col, text, start, end) -> {
+            if (col < this.rowTotal) {
+                this.vect[col] = DecimalCodec.parseDouble(text, start, end);
+            } else {
+                this.ControlInfo = (int) DecimalCodec.parseDouble(text, start, end);
+            }
+        });
     }
 
     /**
@@ -148,16 +135,86 @@ public class TypeVectorDouble {
      * @return Returns a string serialized using the given separators
      */
     public String serialize(String sep) {
-        StringBuilder vectBuilder = new StringBuilder();
+        byte[] vectText = new byte[this.rowTotal * (DecimalCodec.MAX_DOUBLE_CHARS + sep.length())];
+        int pos = 0;
 
         for (int i = 0; i < this.rowTotal; i++) {
-            vectBuilder.append(this.vect[i]).append(sep);
+            pos = DecimalCodec.putDouble(vectText, pos, this.vect[i]);
+            pos = DecimalCodec.putText(vectText, pos, sep);
         }
 
-        return vectBuilder.toString().trim();
+        return DecimalCodec.toTrimmedString(vectText, pos);
     }
 
 
+    /**
+     * Method to deserialize a binary frame to an object of type TypeVectorDouble
+     *
+     * @param vectIn Length-prefixed little-endian binary frame, see BinaryCodec#getVector
+     */
+    public void deserializeBinary(byte[] vectIn) {
+        BinaryCodec.getVector(BinaryCodec.wrap(vectIn), this.vect);
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeVectorDouble while it is read from a stream
+     *
+     * @param vectIn Stream positioned at the start of a length-prefixed little-endian binary frame
+     * @throws IOException if the stream ends before the frame is complete
+     */
+    public void deserializeBinary(InputStream vectIn) throws IOException {
+        int length = BinaryCodec.readLength(vectIn);
+        if (length > this.rowTotal) {
+            throw new ArithmeticException("The vector input size does not match!");
+        }
+        BinaryCodec.readDoubles(vectIn, this.vect, 0, length);
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeVectorDouble while it is read from a stream
+     * The last double is reserved for control information
+     *
+     * @param vectIn Stream positioned at the start of a length-prefixed little-endian binary frame
+     * @throws IOException if the stream ends before the frame is complete
+     */
+    public void deserializeBinaryWithControlInfo(InputStream vectIn) throws IOException {
+        if (BinaryCodec.readLength(vectIn) != this.rowTotal + 1) {
+            throw new ArithmeticException("The vector input size does not match!");
+        }
+        BinaryCodec.readDoubles(vectIn, this.vect, 0, this.rowTotal);
+
+        double[] controlInfo = new double[1];
+        BinaryCodec.readDoubles(vectIn, controlInfo, 0, 1);
+        this.ControlInfo = (int) controlInfo[0];
+    }
+
+    /**
+     * Method for serializing object TypeVectorDouble to a binary frame
+     *
+     * @return Returns a length-prefixed little-endian binary frame, see BinaryCodec#putVector
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(BinaryCodec.HEADER_BYTES + this.rowTotal * Double.BYTES);
+        BinaryCodec.putVector(buf, this.vect, this.rowTotal);
+        return buf.array();
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeVectorDouble
+     * The last double is reserved for control information
+     *
+     * @param vectIn Length-prefixed little-endian binary frame, see BinaryCodec#getVector
+     */
+    public void deserializeBinaryWithControlInfo(byte[] vectIn) {
+        ByteBuffer buf = BinaryCodec.wrap(vectIn);
+        if (BinaryCodec.getLength(buf, this.rowTotal + 1, Double.BYTES) != this.rowTotal + 1) {
+            throw new ArithmeticException("The vector input size does not match!");
+        }
+        buf.asDoubleBuffer().get(this.vect, 0, this.rowTotal);
+
+        this.ControlInfo = (int) buf.getDouble(BinaryCodec.HEADER_BYTES + this.rowTotal * Double.BYTES);
+    }
+
     /**
      * Method to write an object of type TypeVectorDouble to specified file
      *
@@ -1,6 +1,7 @@
 package mc.server.types;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ThreadLocalRandom;
 
 /**
@@ -61,7 +62,7 @@ public class TypeVectorInt {
 
     /**
      * Constructor for class TypeVectorInt. Creates a TypeVectorInt object with values read from the specified
-     * filepath.
+     * filepath in parallel, see TextLoader.
      *
      * @param row      Number of elements in the vector
      * @param filepath Path to the file from which the vector is to be read
@@ -72,18 +73,7 @@ public class TypeVectorInt {
         this.vect = new int[row];
 
         try {
-            BufferedReader brVect = new BufferedReader(new FileReader(filepath));
-            String rowLine;
-
-            rowLine = brVect.readLine();
-            String rowLineArr[] = rowLine.trim().split(sep);
-
-            for (int i = 0; i < row; i++) {
-                this.vect[i] = Integer.parseInt(rowLineArr[i]);
-            }
-
-            brVect.close();
-
+            TextLoader.readVector(filepath, sep, this.vect);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -135,11 +125,8 @@ public class TypeVectorInt {
      * @param sep    Character separator used to separate vector elements
      */
     public void deserialize(String vectIn, String sep) {
-        String[] vectInArr = vectIn.trim().split(sep);
-
-        for (int i = 0; i < this.rowTotal; i++) {
-            this.vect[i] = Integer.parseInt(vectInArr[i]);
-        }
+        DecimalCodec.parseVector(vectIn, sep, this.rowTotal,
+                (row, col, text, start, end) -> this.vect[col] = DecimalCodec.parseInt(text, start, end));
     }
 
     /**
@@ -149,13 +136,35 @@ public class TypeVectorInt {
      * @return Returns a string serialized using the given separators
      */
     public String serialize(String sep) {
-        StringBuilder vectBuilder = new StringBuilder();
+        byte[] vectText = new byte[this.rowTotal * (DecimalCodec.MAX_INT_CHARS + sep.length())];
+        int pos = 0;
 
         for (int i = 0; i < this.rowTotal; i++) {
-            vectBuilder.append(this.vect[i]).append(sep);
+            pos = DecimalCodec.putInt(vectText, pos, this.vect[i]);
+            pos = DecimalCodec.putText(vectText, pos, sep);
         }
 
-        return vectBuilder.toString().trim();
+        return DecimalCodec.toTrimmedString(vectText, pos);
+    }
+
+    /**
+     * Method to deserialize a binary frame to an object of type TypeVectorInt
+     *
+     * @param vectIn Length-prefixed little-endian binary frame, see BinaryCodec#getVector
+     */
+    public void deserializeBinary(byte[] vectIn) {
+        BinaryCodec.getVector(BinaryCodec.wrap(vectIn), this.vect);
+    }
+
+    /**
+     * Method for serializing object TypeVectorInt to a binary frame
+     *
+     * @return Returns a length-prefixed little-endian binary frame, see BinaryCodec#putVector
+     */
+    public byte[] serializeBinary() {
+        ByteBuffer buf = BinaryCodec.allocate(BinaryCodec.HEADER_BYTES + this.rowTotal * Integer.BYTES);
+        BinaryCodec.putVector(buf, this.vect, this.rowTotal);
+        return buf.array();
     }
 
     /**